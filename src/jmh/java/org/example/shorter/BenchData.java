@@ -0,0 +1,76 @@
+package org.example.shorter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/** Temporary databases and bulk seeding shared by the benchmarks. */
+final class BenchData {
+  private BenchData() {}
+
+  static Path tempDb() throws IOException {
+    Path dir = Files.createTempDirectory("link-bench");
+    return dir.resolve("bench.db");
+  }
+
+  static void deleteQuietly(Path db) {
+    try {
+      for (String suffix : new String[] {"", "-wal", "-shm"}) {
+        Files.deleteIfExists(Path.of(db + suffix));
+      }
+      Files.deleteIfExists(db.getParent());
+    } catch (IOException ignored) {
+    }
+  }
+
+  static void deleteTree(Path dir) {
+    try (Stream<Path> files = Files.walk(dir)) {
+      for (Path f : files.sorted(Comparator.reverseOrder()).toList()) {
+        Files.deleteIfExists(f);
+      }
+    } catch (IOException ignored) {
+    }
+  }
+
+  static String code(String prefix, int i) {
+    return prefix + Integer.toString(i, 36);
+  }
+
+  /**
+   * Inserts {@code count} rows in a single transaction, in the layout {@code insert} writes. The
+   * repository must already have created the schema; seeding through {@code insert} would dominate
+   * setup time for large tables.
+   */
+  static void seed(
+      Path db, String user, String codePrefix, int count, long expiresAtMs, int maxClicks)
+      throws SQLException {
+    String sql =
+        "INSERT INTO links(user_uuid, code, original_url, created_at_ms, expires_at_ms,"
+            + " max_clicks, clicks, active, url_hash, url_blob) VALUES(?,?,'',?,?,?,0,1,?,?)";
+    try (Connection c = DriverManager.getConnection("jdbc:sqlite:" + db);
+        PreparedStatement ps = c.prepareStatement(sql)) {
+      c.setAutoCommit(false);
+      long now = System.currentTimeMillis();
+      for (int i = 0; i < count; i++) {
+        ps.setString(1, user);
+        ps.setString(2, code(codePrefix, i));
+        String url = "https://example.com/path/" + i + "?utm_source=bench";
+        ps.setLong(3, now);
+        ps.setLong(4, expiresAtMs);
+        ps.setInt(5, maxClicks);
+        ps.setLong(6, UrlCanonicalizer.hash(url));
+        ps.setBytes(7, UrlCodec.encode(url));
+        ps.addBatch();
+        if (i % 10_000 == 9_999) ps.executeBatch();
+      }
+      ps.executeBatch();
+      c.commit();
+    }
+  }
+}
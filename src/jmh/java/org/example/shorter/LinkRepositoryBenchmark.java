@@ -0,0 +1,130 @@
+package org.example.shorter;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** Repository hot paths: contended clicks, per-user listing and expiry cleanup. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LinkRepositoryBenchmark {
+
+  @State(Scope.Benchmark)
+  public static class Clicks {
+    Path db;
+    LinkRepository repo;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+      db = BenchData.tempDb();
+      repo = new LinkRepository(db.toString());
+      BenchData.seed(db, "bench", "hot", 1, Long.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+      repo.close();
+      BenchData.deleteQuietly(db);
+    }
+  }
+
+  @State(Scope.Benchmark)
+  public static class Listing {
+    @Param({"10", "1000", "100000"})
+    public int linksPerUser;
+
+    Path db;
+    LinkRepository repo;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+      db = BenchData.tempDb();
+      repo = new LinkRepository(db.toString());
+      BenchData.seed(db, "target", "t", linksPerUser, Long.MAX_VALUE, 5);
+      // unrelated users, so the query has to select rather than scan everything it finds
+      BenchData.seed(db, "other", "o", 100_000, Long.MAX_VALUE, 5);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+      repo.close();
+      BenchData.deleteQuietly(db);
+    }
+  }
+
+  @State(Scope.Benchmark)
+  public static class Expiry {
+    @Param({"100000"})
+    public int expiredRows;
+
+    @Param({"1000000"})
+    public int liveRows;
+
+    Path db;
+    LinkRepository repo;
+    int round;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+      db = BenchData.tempDb();
+      repo = new LinkRepository(db.toString());
+      BenchData.seed(db, "live", "l", liveRows, Long.MAX_VALUE, 5);
+    }
+
+    @Setup(Level.Iteration)
+    public void addExpired() throws Exception {
+      BenchData.seed(db, "dead", "d" + (round++) + "_", expiredRows, 1, 5);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+      repo.close();
+      BenchData.deleteQuietly(db);
+    }
+  }
+
+  @Benchmark
+  @Threads(8)
+  public Object consumeClickContended(Clicks s) {
+    return s.repo.consumeClick("hot0", System.currentTimeMillis());
+  }
+
+  @Benchmark
+  public void listByUser(Listing s, Blackhole bh) {
+    List<Link> links = s.repo.listByUser("target");
+    bh.consume(links);
+  }
+
+  @Benchmark
+  public void listFirstPage(Listing s, Blackhole bh) {
+    s.repo.forEachByUser(
+        "target", LinkStore.ListFilter.ALL, 0, 0, LinkService.DEFAULT_PAGE_SIZE, bh::consume);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.SingleShotTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  @Warmup(iterations = 1)
+  @Measurement(iterations = 5)
+  public int deleteExpired(Expiry s) {
+    return s.repo.deleteExpired(System.currentTimeMillis());
+  }
+}
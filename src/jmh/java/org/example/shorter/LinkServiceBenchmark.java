@@ -0,0 +1,123 @@
+package org.example.shorter;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** create() and open() through the full service stack on a temporary database. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LinkServiceBenchmark {
+  private static final int COLD_CODES = 50_000;
+  private static final List<String> BATCH =
+      IntStream.range(0, 1000)
+          .mapToObj(i -> "https://example.com/campaign/" + i + "?utm_source=bench")
+          .toList();
+
+  @Param({"sync", "buffered", "coalesced"})
+  public String clickMode;
+
+  private Path db;
+  private LinkRepository repo;
+  private LinkService service;
+  private UUID user;
+  private int iteration;
+  private volatile String hotCode;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    db = BenchData.tempDb();
+    repo = new LinkRepository(db.toString());
+    // cold codes outnumber the cache, so most cold opens miss it
+    BenchData.seed(db, "bench", "c", COLD_CODES, Long.MAX_VALUE, Integer.MAX_VALUE);
+    service =
+        new LinkService(
+            repo,
+            Duration.ofDays(1),
+            5,
+            CodeGenerator.random(8),
+            false,
+            new LinkCache(1_000),
+            switch (clickMode) {
+              case "buffered" -> new BufferedClickAccounting(repo, 1_000, 10_000);
+              case "coalesced" -> ClickAccounting.coalesced(repo);
+              default -> ClickAccounting.sync(repo);
+            });
+    user = UUID.randomUUID();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    service.close();
+    repo.close();
+    BenchData.deleteQuietly(db);
+  }
+
+  /**
+   * A fresh hot link per iteration, inserted directly so its limit is beyond what create() accepts:
+   * the open benchmarks must never reach the cheap LIMIT_REACHED path.
+   */
+  @Setup(Level.Iteration)
+  public void newHotLink() {
+    Link l = new Link();
+    l.userUuid = user.toString();
+    l.code = "hot" + iteration++;
+    l.originalUrl = "https://example.com/hot";
+    l.createdAtMs = System.currentTimeMillis();
+    l.expiresAtMs = Long.MAX_VALUE;
+    l.maxClicks = Integer.MAX_VALUE;
+    l.active = 1;
+    repo.insert(l);
+    hotCode = l.code;
+  }
+
+  @Benchmark
+  public Link create() {
+    return service.create(user, "https://example.com/landing?utm_source=bench", 5);
+  }
+
+  /** 1000 URLs per call; divide the score by 1000 for the per-link cost. */
+  @Benchmark
+  public List<LinkService.BatchResult> createBatch1k() {
+    return service.createBatch(user, BATCH, 5);
+  }
+
+  @Benchmark
+  public String openHot() {
+    return service.open(hotCode);
+  }
+
+  /** A viral code: many threads open it at the same time. */
+  @Benchmark
+  @Threads(32)
+  public String openHotContended() {
+    return service.open(hotCode);
+  }
+
+  @Benchmark
+  public String openCold() {
+    return service.open(BenchData.code("c", ThreadLocalRandom.current().nextInt(COLD_CODES)));
+  }
+}
@@ -0,0 +1,97 @@
+package org.example.shorter;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** The same LinkStore operations on each storage engine. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StorageEngineBenchmark {
+  private static final int CODES = 100_000;
+
+  @Param({"sqlite", "sharded", "log", "memory"})
+  public String engine;
+
+  private Path dir;
+  private LinkStore store;
+  private int created;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    dir = Files.createTempDirectory("link-bench");
+    store =
+        switch (engine) {
+          case "log" -> new LogLinkStore(dir.resolve("log"));
+          case "memory" -> new InMemoryLinkStore();
+          case "sharded" ->
+              new ShardedLinkStore(dir.resolve("bench.db").toString(), 4, DbConfig.defaults());
+          default -> new LinkRepository(dir.resolve("bench.db").toString());
+        };
+    List<Link> batch = new ArrayList<>();
+    for (int i = 0; i < CODES; i++) {
+      batch.add(link(BenchData.code("c", i)));
+      if (batch.size() == 1000) {
+        store.insertBatch(batch);
+        batch.clear();
+      }
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    store.close();
+    BenchData.deleteTree(dir);
+  }
+
+  private static Link link(String code) {
+    Link l = new Link();
+    l.userUuid = "bench";
+    l.code = code;
+    l.originalUrl = "https://example.com/path/" + code + "?utm_source=bench";
+    l.createdAtMs = System.currentTimeMillis();
+    l.expiresAtMs = Long.MAX_VALUE;
+    l.maxClicks = Integer.MAX_VALUE;
+    l.active = 1;
+    return l;
+  }
+
+  private static String randomCode() {
+    return BenchData.code("c", ThreadLocalRandom.current().nextInt(CODES));
+  }
+
+  @Benchmark
+  public Object consume() {
+    return store.consume(randomCode(), System.currentTimeMillis());
+  }
+
+  @Benchmark
+  public Object findByCode() {
+    return store.findByCode(randomCode());
+  }
+
+  @Benchmark
+  public boolean insert() {
+    return store.tryInsert(link(BenchData.code("n", created++)));
+  }
+}
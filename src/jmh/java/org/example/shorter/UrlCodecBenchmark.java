@@ -0,0 +1,151 @@
+package org.example.shorter;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of the URL codec on tracking links, and the space it saves. Setup prints bytes per URL and
+ * bytes per row of a SQLite file, plain TEXT against the encoded BLOB.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UrlCodecBenchmark {
+  private static final int URLS = 50_000;
+  private static final String[] HOSTS = {
+    "https://www.example.com", "https://shop.example.org", "http://news.example.net"
+  };
+  private static final String[] SOURCES = {"newsletter", "google", "facebook", "partner_42"};
+
+  private String[] urls;
+  private byte[][] encoded;
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    Random rnd = new Random(42);
+    urls = new String[URLS];
+    encoded = new byte[URLS][];
+    long plain = 0;
+    long packed = 0;
+    for (int i = 0; i < URLS; i++) {
+      urls[i] =
+          HOSTS[rnd.nextInt(HOSTS.length)]
+              + "/products/"
+              + (100_000 + rnd.nextInt(900_000))
+              + "?utm_source="
+              + SOURCES[rnd.nextInt(SOURCES.length)]
+              + "&utm_medium=email&utm_campaign=spring_sale_"
+              + rnd.nextInt(50)
+              + "&gclid="
+              + Long.toString(rnd.nextLong() & Long.MAX_VALUE, 36);
+      encoded[i] = UrlCodec.encode(urls[i]);
+      plain += urls[i].getBytes(StandardCharsets.UTF_8).length;
+      packed += encoded[i].length;
+    }
+    System.out.printf(
+        "%nurl bytes per link: plain %.1f, encoded %.1f%n",
+        (double) plain / URLS, (double) packed / URLS);
+    System.out.printf(
+        "db bytes per link: TEXT %.1f, BLOB %.1f%n", textDbBytesPerLink(), blobDbBytesPerLink());
+  }
+
+  @Benchmark
+  public byte[] encode() {
+    return UrlCodec.encode(urls[next++ % URLS]);
+  }
+
+  @Benchmark
+  public String decode() {
+    return UrlCodec.decode(encoded[next++ % URLS]);
+  }
+
+  /**
+   * Rows as they were before the codec: the URL as TEXT and a NULL blob. They are only measured,
+   * never read back, so the missing blob is the point of the baseline rather than a stale row.
+   */
+  private double textDbBytesPerLink() throws Exception {
+    Path db = BenchData.tempDb();
+    try {
+      new LinkRepository(db.toString()).close();
+      try (Connection c = DriverManager.getConnection("jdbc:sqlite:" + db)) {
+        c.setAutoCommit(false);
+        PreparedStatement ps =
+            c.prepareStatement(
+                "INSERT INTO links(user_uuid, code, original_url, created_at_ms, expires_at_ms,"
+                    + " max_clicks, clicks, active, url_hash, url_blob)"
+                    + " VALUES('u',?,?,0,0,1,0,1,?,NULL)");
+        for (int i = 0; i < URLS; i++) {
+          ps.setString(1, BenchData.code("c", i));
+          ps.setString(2, urls[i]);
+          ps.setLong(3, UrlCanonicalizer.hash(urls[i]));
+          ps.addBatch();
+        }
+        ps.executeBatch();
+        c.commit();
+      }
+      return fileBytes(db) / URLS;
+    } finally {
+      BenchData.deleteQuietly(db);
+    }
+  }
+
+  private double blobDbBytesPerLink() throws Exception {
+    Path db = BenchData.tempDb();
+    try {
+      LinkRepository repo = new LinkRepository(db.toString());
+      List<Link> batch = new ArrayList<>();
+      for (int i = 0; i < URLS; i++) {
+        Link l = new Link();
+        l.userUuid = "u";
+        l.code = BenchData.code("c", i);
+        l.originalUrl = urls[i];
+        l.maxClicks = 1;
+        l.active = 1;
+        batch.add(l);
+      }
+      repo.insertBatch(batch);
+      repo.close();
+      return fileBytes(db) / URLS;
+    } finally {
+      BenchData.deleteQuietly(db);
+    }
+  }
+
+  private static double fileBytes(Path db) throws Exception {
+    try (Connection c = DriverManager.getConnection("jdbc:sqlite:" + db);
+        Statement st = c.createStatement()) {
+      st.executeQuery("PRAGMA wal_checkpoint(TRUNCATE)").close();
+      st.execute("VACUUM");
+      try (ResultSet rs =
+          st.executeQuery(
+              "SELECT page_count * page_size FROM pragma_page_count(), pragma_page_size()")) {
+        rs.next();
+        return rs.getLong(1);
+      }
+    }
+  }
+}
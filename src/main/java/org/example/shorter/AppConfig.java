@@ -5,10 +5,42 @@ import java.time.Duration;
 public class AppConfig {
   public final Duration ttl;
   public final Duration cleanupPeriod;
+  public final int cleanupBatch;
+  public final int cleanupBatchMax;
+  public final long cleanupChunkTargetMs;
+  public final long cleanupPauseMs;
+  public final boolean expiryIndex;
   public final String dbPath;
+  public final String storageEngine;
+  public final String snapshotPath;
+  public final long snapshotSeconds;
+  public final String logDir;
+  public final long logSegmentBytes;
+  public final long logCompactSeconds;
   public final int defaultLimit;
   public final int codeLength;
+  public final String codeStrategy;
+  public final long codeBloomExpected;
+  public final long codeSequenceKey;
+  public final int codeSequenceBlock;
   public final boolean openBrowser;
+  public final DbConfig db;
+  public final int cacheSize;
+  public final String clickMode;
+  public final long clickFlushMs;
+  public final int clickFlushThreshold;
+  public final String mode;
+  public final int httpPort;
+  public final int httpThreads;
+  public final String metricsDumpPath;
+  public final long metricsDumpSeconds;
+  public final int storageShards;
+  public final String analyticsDbPath;
+  public final int analyticsRingSize;
+  public final long analyticsFlushMs;
+  public final long analyticsRetentionHours;
+  public final boolean createDedup;
+  public final int urlValidationCache;
 
   public AppConfig(
       Duration ttl,
@@ -16,12 +48,80 @@ public class AppConfig {
       String dbPath,
       int defaultLimit,
       int codeLength,
-      boolean openBrowser) {
+      boolean openBrowser,
+      DbConfig db,
+      int cacheSize,
+      String clickMode,
+      long clickFlushMs,
+      int clickFlushThreshold,
+      String mode,
+      int httpPort,
+      int httpThreads,
+      int cleanupBatch,
+      int cleanupBatchMax,
+      long cleanupChunkTargetMs,
+      long cleanupPauseMs,
+      boolean expiryIndex,
+      String codeStrategy,
+      long codeBloomExpected,
+      long codeSequenceKey,
+      int codeSequenceBlock,
+      String storageEngine,
+      String snapshotPath,
+      long snapshotSeconds,
+      String logDir,
+      long logSegmentBytes,
+      long logCompactSeconds,
+      String metricsDumpPath,
+      long metricsDumpSeconds,
+      int storageShards,
+      String analyticsDbPath,
+      int analyticsRingSize,
+      long analyticsFlushMs,
+      long analyticsRetentionHours,
+      boolean createDedup,
+      int urlValidationCache) {
     this.ttl = ttl;
     this.cleanupPeriod = cleanupPeriod;
     this.dbPath = dbPath;
     this.defaultLimit = defaultLimit;
     this.codeLength = codeLength;
     this.openBrowser = openBrowser;
+    this.db = db;
+    this.cacheSize = cacheSize;
+    this.clickMode = clickMode;
+    this.clickFlushMs = clickFlushMs;
+    this.clickFlushThreshold = clickFlushThreshold;
+    this.mode = mode;
+    this.httpPort = httpPort;
+    this.httpThreads = httpThreads;
+    this.cleanupBatch = cleanupBatch;
+    this.cleanupBatchMax = cleanupBatchMax;
+    this.cleanupChunkTargetMs = cleanupChunkTargetMs;
+    this.cleanupPauseMs = cleanupPauseMs;
+    this.expiryIndex = expiryIndex;
+    this.codeStrategy = codeStrategy;
+    this.codeBloomExpected = codeBloomExpected;
+    this.codeSequenceKey = codeSequenceKey;
+    this.codeSequenceBlock = codeSequenceBlock;
+    this.storageEngine = storageEngine;
+    this.snapshotPath = snapshotPath;
+    this.snapshotSeconds = snapshotSeconds;
+    this.logDir = logDir;
+    this.logSegmentBytes = logSegmentBytes;
+    this.logCompactSeconds = logCompactSeconds;
+    this.metricsDumpPath = metricsDumpPath;
+    this.metricsDumpSeconds = metricsDumpSeconds;
+    this.storageShards = storageShards;
+    this.analyticsDbPath = analyticsDbPath;
+    this.analyticsRingSize = analyticsRingSize;
+    this.analyticsFlushMs = analyticsFlushMs;
+    this.analyticsRetentionHours = analyticsRetentionHours;
+    this.createDedup = createDedup;
+    this.urlValidationCache = urlValidationCache;
+  }
+
+  public boolean isHttpMode() {
+    return "http".equalsIgnoreCase(mode);
   }
 }
@@ -0,0 +1,239 @@
+package org.example.shorter;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Non-blocking facade over {@link LinkService} for event-loop servers. Reads (open, info, list) run
+ * on a bounded pool; writes go through a bounded queue to one writer thread, which is then the only
+ * caller of the SQLite write lock. Creates queued together for the same owner and limit are
+ * coalesced into one {@link LinkService#createBatch} transaction. When a queue is full the call
+ * fails fast with {@link RejectedExecutionException} instead of blocking the caller.
+ *
+ * <p>Opens are reads here: cache hits and buffered clicks never reach the writer, and a storage
+ * click is a single short statement that the connection pool already serialises.
+ *
+ * <p>Futures complete on the common pool, so dependent stages never run on the service threads.
+ */
+public class AsyncLinkService implements AutoCloseable {
+  private static final LongAdder REJECTED =
+      Metrics.counter(
+          "shortener_async_rejected_total", "Async calls refused because a queue was full");
+
+  private final LinkService service;
+  private final ThreadPoolExecutor readers;
+  private final BlockingQueue<WriteOp> writes;
+  private final int maxCoalesce;
+  private final Thread writer;
+  private volatile boolean closed;
+
+  public AsyncLinkService(LinkService service) {
+    this(service, Math.max(2, Runtime.getRuntime().availableProcessors()), 1024, 1024, 256);
+  }
+
+  public AsyncLinkService(
+      LinkService service, int readThreads, int readQueue, int writeQueue, int maxCoalesce) {
+    this.service = service;
+    this.readers =
+        new ThreadPoolExecutor(
+            readThreads,
+            readThreads,
+            0,
+            TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(readQueue),
+            Threads.daemon("async-read"),
+            new ThreadPoolExecutor.AbortPolicy());
+    this.writes = new ArrayBlockingQueue<>(writeQueue);
+    this.maxCoalesce = maxCoalesce;
+    this.writer = Threads.daemon("async-write").newThread(this::writeLoop);
+    writer.start();
+    Metrics.gauge(
+        "shortener_async_read_queue",
+        "Reads waiting for a thread",
+        () -> readers.getQueue().size());
+    Metrics.gauge("shortener_async_write_queue", "Writes waiting for the writer", writes::size);
+  }
+
+  public CompletableFuture<Link> create(UUID userId, String url, Integer limitOrNull) {
+    return submitWrite(new CreateOp(userId, url, limitOrNull));
+  }
+
+  public CompletableFuture<String> setLimit(UUID userId, String code, int newLimit) {
+    return submitWrite(new CallOp<>(() -> service.setLimit(userId, code, newLimit)));
+  }
+
+  public CompletableFuture<String> delete(UUID userId, String code) {
+    return submitWrite(new CallOp<>(() -> service.delete(userId, code)));
+  }
+
+  public CompletableFuture<OpenResult> open(String code) {
+    return submitRead(() -> service.redirect(code));
+  }
+
+  public CompletableFuture<String> info(UUID userId, String code) {
+    return submitRead(() -> service.info(userId, code));
+  }
+
+  public CompletableFuture<String> list(
+      UUID userId, LinkStore.ListFilter filter, long afterId, int limit) {
+    return submitRead(
+        () -> {
+          StringBuilder sb = new StringBuilder();
+          service.list(userId, filter, afterId, limit, sb);
+          return sb.toString();
+        });
+  }
+
+  private <T> CompletableFuture<T> submitRead(Supplier<T> work) {
+    if (closed) return rejected("service is closed");
+    try {
+      return handOff(CompletableFuture.supplyAsync(work, readers));
+    } catch (RejectedExecutionException e) {
+      REJECTED.increment();
+      return CompletableFuture.failedFuture(e);
+    }
+  }
+
+  private <T> CompletableFuture<T> submitWrite(WriteOp op) {
+    if (closed) return rejected("service is closed");
+    if (!writes.offer(op)) {
+      REJECTED.increment();
+      return rejected("write queue is full");
+    }
+    // close() may have run since the check, and the writer may be gone: whoever takes the op out
+    // of the queue owns it, so an op still queued is failed here
+    if (closed && writes.remove(op)) return rejected("service is closed");
+    @SuppressWarnings("unchecked")
+    CompletableFuture<T> result = (CompletableFuture<T>) op.result;
+    return handOff(result);
+  }
+
+  private static <T> CompletableFuture<T> rejected(String why) {
+    return CompletableFuture.failedFuture(new RejectedExecutionException(why));
+  }
+
+  private static <T> CompletableFuture<T> handOff(CompletableFuture<T> f) {
+    return f.thenApplyAsync(Function.identity());
+  }
+
+  // --- writer ---
+
+  private abstract static class WriteOp {
+    final CompletableFuture<Object> result = new CompletableFuture<>();
+  }
+
+  private static final class CreateOp extends WriteOp {
+    final UUID userId;
+    final String url;
+    final Integer limit;
+
+    CreateOp(UUID userId, String url, Integer limit) {
+      this.userId = userId;
+      this.url = url;
+      this.limit = limit;
+    }
+  }
+
+  private static final class CallOp<T> extends WriteOp {
+    final Supplier<T> work;
+
+    CallOp(Supplier<T> work) {
+      this.work = work;
+    }
+  }
+
+  private static final WriteOp STOP = new WriteOp() {};
+
+  private void writeLoop() {
+    List<WriteOp> batch = new ArrayList<>();
+    boolean stop = false;
+    while (!stop) {
+      try {
+        batch.add(writes.take());
+      } catch (InterruptedException e) {
+        break;
+      }
+      writes.drainTo(batch, maxCoalesce - 1);
+      stop = batch.remove(STOP);
+      runBatch(batch);
+      batch.clear();
+    }
+    // writes that raced with close()
+    writes.drainTo(batch);
+    for (WriteOp op : batch) {
+      op.result.completeExceptionally(new RejectedExecutionException("service is closed"));
+    }
+  }
+
+  /** Runs ops in queue order; only a run of creates between other writes is grouped. */
+  private void runBatch(List<WriteOp> batch) {
+    Map<List<Object>, List<CreateOp>> creates = new LinkedHashMap<>();
+    for (WriteOp op : batch) {
+      if (op instanceof CreateOp c) {
+        creates
+            .computeIfAbsent(List.of(c.userId, Objects.toString(c.limit)), k -> new ArrayList<>())
+            .add(c);
+        continue;
+      }
+      for (List<CreateOp> group : creates.values()) createGroup(group);
+      creates.clear();
+      try {
+        op.result.complete(((CallOp<?>) op).work.get());
+      } catch (RuntimeException e) {
+        op.result.completeExceptionally(e);
+      }
+    }
+    for (List<CreateOp> group : creates.values()) createGroup(group);
+  }
+
+  private void createGroup(List<CreateOp> group) {
+    List<String> urls = new ArrayList<>(group.size());
+    for (CreateOp c : group) urls.add(c.url);
+    try {
+      List<LinkService.BatchResult> results =
+          service.createBatch(group.get(0).userId, urls, group.get(0).limit);
+      for (LinkService.BatchResult r : results) {
+        CreateOp c = group.get(r.index);
+        if (r.isOk()) c.result.complete(r.link);
+        else c.result.completeExceptionally(createError(r.error));
+      }
+    } catch (RuntimeException e) {
+      for (CreateOp c : group) c.result.completeExceptionally(e);
+    }
+  }
+
+  /** The exception the synchronous {@link LinkService#create} throws for this batch error. */
+  private static RuntimeException createError(String error) {
+    return LinkService.NO_UNIQUE_CODE.equals(error)
+        ? new IllegalStateException(error)
+        : new IllegalArgumentException(error);
+  }
+
+  /** Stops taking work, finishes what is queued and waits for the threads. */
+  @Override
+  public void close() {
+    if (closed) return;
+    closed = true;
+    readers.shutdown();
+    try {
+      writes.put(STOP);
+      writer.join(TimeUnit.SECONDS.toMillis(10));
+      readers.awaitTermination(10, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
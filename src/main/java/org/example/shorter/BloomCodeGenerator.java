@@ -0,0 +1,80 @@
+package org.example.shorter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Random codes pre-filtered by a Bloom filter of every code in the table. A candidate the filter
+ * has seen is regenerated in memory, so an insert only collides on a code written by another
+ * process. Codes are added to the filter when they are handed out.
+ */
+public class BloomCodeGenerator implements CodeGenerator {
+  private static final int MAX_TRIES = 64;
+
+  private final CodeGenerator random;
+  private final AtomicLongArray bits;
+  private final long bitCount;
+  private final int hashes;
+
+  public BloomCodeGenerator(int codeLength, long expectedCodes) {
+    this.random = CodeGenerator.random(codeLength);
+    // ~1% false positives: 9.6 bits and 7 hashes per element
+    long n = Math.max(1024, expectedCodes);
+    long words = Math.min(Integer.MAX_VALUE - 8, (n * 10 + 63) / 64);
+    this.bits = new AtomicLongArray((int) words);
+    this.bitCount = words * 64;
+    this.hashes = 7;
+  }
+
+  public static BloomCodeGenerator load(LinkStore repo, int codeLength, long expectedCodes) {
+    BloomCodeGenerator g = new BloomCodeGenerator(codeLength, expectedCodes);
+    repo.forEachExpiry((code, expiresAtMs) -> g.add(code));
+    return g;
+  }
+
+  @Override
+  public String next() {
+    String code = random.next();
+    for (int i = 1; i < MAX_TRIES && mightContain(code); i++) code = random.next();
+    add(code);
+    return code;
+  }
+
+  public void add(String code) {
+    long h1 = hash(code, 0x9E3779B97F4A7C15L);
+    long h2 = hash(code, 0xC2B2AE3D27D4EB4FL) | 1;
+    for (int i = 0; i < hashes; i++) {
+      long bit = Math.floorMod(h1 + i * h2, bitCount);
+      int word = (int) (bit >>> 6);
+      long mask = 1L << (bit & 63);
+      long cur;
+      while (((cur = bits.get(word)) & mask) == 0 && !bits.compareAndSet(word, cur, cur | mask)) {
+        // retry until the bit is set
+      }
+    }
+  }
+
+  public boolean mightContain(String code) {
+    long h1 = hash(code, 0x9E3779B97F4A7C15L);
+    long h2 = hash(code, 0xC2B2AE3D27D4EB4FL) | 1;
+    for (int i = 0; i < hashes; i++) {
+      long bit = Math.floorMod(h1 + i * h2, bitCount);
+      if ((bits.get((int) (bit >>> 6)) & (1L << (bit & 63))) == 0) return false;
+    }
+    return true;
+  }
+
+  private static long hash(String s, long seed) {
+    long h = seed;
+    for (byte b : s.getBytes(StandardCharsets.UTF_8)) {
+      h ^= b;
+      h *= 0x100000001B3L;
+    }
+    // final avalanche (splitmix64)
+    h ^= h >>> 30;
+    h *= 0xBF58476D1CE4E5B9L;
+    h ^= h >>> 27;
+    h *= 0x94D049BB133111EBL;
+    return h ^ (h >>> 31);
+  }
+}
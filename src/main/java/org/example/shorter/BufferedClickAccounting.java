@@ -0,0 +1,235 @@
+package org.example.shorter;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write-behind click accounting. The quota decision is made in memory on a per-code atomic counter
+ * loaded from the repository, so {@code maxClicks} is still enforced exactly within this process.
+ * Accumulated deltas are written back in one batched transaction every {@code flushMs} or once
+ * {@code flushThreshold} clicks are pending, and on {@link #close()}. Clicks counted after the
+ * final flush are written through.
+ */
+public class BufferedClickAccounting implements ClickAccounting {
+  private static final int RETIRED = Integer.MIN_VALUE;
+
+  private final LinkStore repo;
+  private final int flushThreshold;
+  private final ConcurrentHashMap<String, Counter> counters = new ConcurrentHashMap<>();
+  private final AtomicInteger pending = new AtomicInteger();
+  private final AtomicLong retirements = new AtomicLong();
+  private final AtomicBoolean flushQueued = new AtomicBoolean();
+  private final Object flushLock = new Object();
+  private final ScheduledExecutorService flusher;
+  private volatile boolean closed;
+
+  public BufferedClickAccounting(LinkStore repo, long flushMs, int flushThreshold) {
+    this.repo = repo;
+    this.flushThreshold = Math.max(1, flushThreshold);
+    this.flusher =
+        Executors.newSingleThreadScheduledExecutor(
+            r -> {
+              Thread t = new Thread(r);
+              t.setDaemon(true);
+              t.setName("click-flush-thread");
+              return t;
+            });
+    long ms = Math.max(1, flushMs);
+    flusher.scheduleAtFixedRate(this::flushQuietly, ms, ms, TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public OpenResult consume(String code, long nowMs) {
+    while (true) {
+      Counter c = counters.get(code);
+      if (c == null) c = load(code);
+      if (c == null) return OpenResult.NOT_FOUND;
+      if (c.base.expiresAtMs() <= nowMs) return OpenResult.of(OpenResult.Status.EXPIRED, c.base);
+
+      int n = c.clicks.get();
+      if (n == RETIRED) {
+        awaitFlush();
+        continue;
+      }
+      if (n >= c.base.maxClicks() || !c.base.isActive()) {
+        return OpenResult.of(OpenResult.Status.LIMIT_REACHED, c.snapshot(n));
+      }
+      if (c.clicks.compareAndSet(n, n + 1)) {
+        int queued = pending.incrementAndGet();
+        if (closed) {
+          // the final flush may already have run
+          flushQuietly();
+        } else if (queued >= flushThreshold && flushQueued.compareAndSet(false, true)) {
+          queueFlush();
+        }
+        PackedLink after = c.snapshot(n + 1);
+        return OpenResult.of(
+            after.isActive() ? OpenResult.Status.OK : OpenResult.Status.LAST_CLICK, after);
+      }
+    }
+  }
+
+  /**
+   * Reads the row outside the map, so a slow storage read never holds the bin lock shared with
+   * other codes, then publishes the counter unless one appeared meanwhile. A retirement during the
+   * read may have written back clicks the row does not show yet, so the read is then repeated.
+   */
+  private Counter load(String code) {
+    while (true) {
+      long seen = retirements.get();
+      Optional<LinkView> stored = repo.view(code);
+      if (stored.isEmpty()) return null;
+      Counter loaded = new Counter(code, stored.get());
+      Counter c =
+          counters.compute(
+              code, (k, cur) -> cur != null ? cur : retirements.get() == seen ? loaded : null);
+      if (c != null) return c;
+    }
+  }
+
+  @Override
+  public LinkView view(LinkView stored) {
+    Counter c = counters.get(stored.code());
+    if (c == null) return stored;
+    int n = c.clicks.get();
+    return n == RETIRED ? stored : c.snapshot(n);
+  }
+
+  @Override
+  public void forget(String code) {
+    synchronized (flushLock) {
+      Counter c = counters.get(code);
+      if (c != null) retire(List.of(c));
+    }
+  }
+
+  @Override
+  public void flush() {
+    synchronized (flushLock) {
+      flushQueued.set(false);
+      Map<String, Integer> deltas = new LinkedHashMap<>();
+      List<Counter> flushed = new ArrayList<>();
+      List<Counter> idle = new ArrayList<>();
+      for (Counter c : counters.values()) {
+        int n = c.clicks.get();
+        if (n == RETIRED) continue;
+        if (n > c.flushed) {
+          deltas.put(c.code, n - c.flushed);
+          c.toFlush = n;
+          c.idleFlushes = 0;
+          flushed.add(c);
+        } else if (++c.idleFlushes > 1) {
+          idle.add(c);
+        }
+      }
+      write(deltas);
+      for (Counter c : flushed) c.flushed = c.toFlush;
+
+      // counters untouched for a full interval are dropped to bound memory
+      retire(idle);
+    }
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    flusher.shutdown();
+    try {
+      flusher.awaitTermination(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    flush();
+  }
+
+  public int pendingClicks() {
+    return Math.max(0, pending.get());
+  }
+
+  /**
+   * Writes back and removes counters. Concurrent consumers that see {@code RETIRED} block on the
+   * flush lock until the row is up to date, then reload it; on a failed write the counters are
+   * restored so no click is lost.
+   */
+  private void retire(List<Counter> retiring) {
+    if (retiring.isEmpty()) return;
+    int[] last = new int[retiring.size()];
+    Map<String, Integer> deltas = new LinkedHashMap<>();
+    for (int i = 0; i < last.length; i++) {
+      Counter c = retiring.get(i);
+      last[i] = c.clicks.getAndSet(RETIRED);
+      if (last[i] > c.flushed) deltas.put(c.code, last[i] - c.flushed);
+    }
+    try {
+      write(deltas);
+    } catch (RuntimeException e) {
+      for (int i = 0; i < last.length; i++) retiring.get(i).clicks.set(last[i]);
+      throw e;
+    }
+    retirements.incrementAndGet();
+    for (Counter c : retiring) counters.remove(c.code, c);
+  }
+
+  private void awaitFlush() {
+    synchronized (flushLock) {
+      // nothing to do: the retiring flush holds the lock until the counter is written back
+    }
+  }
+
+  private void write(Map<String, Integer> deltas) {
+    if (deltas.isEmpty()) return;
+    repo.addClicks(deltas);
+    int total = 0;
+    for (int d : deltas.values()) total += d;
+    pending.addAndGet(-total);
+  }
+
+  private void queueFlush() {
+    try {
+      flusher.execute(this::flushQuietly);
+    } catch (RejectedExecutionException e) {
+      // closing: nobody else will write these clicks
+      flushQueued.set(false);
+      flushQuietly();
+    }
+  }
+
+  private void flushQuietly() {
+    try {
+      flush();
+    } catch (Exception e) {
+      System.out.println("[click-flush] " + e.getMessage());
+    }
+  }
+
+  private static final class Counter {
+    final String code;
+    final PackedLink base;
+    final AtomicInteger clicks;
+    int flushed;
+    int toFlush;
+    int idleFlushes;
+
+    Counter(String code, LinkView base) {
+      this.code = code;
+      this.base = PackedLink.of(base);
+      this.clicks = new AtomicInteger(base.clicks());
+      this.flushed = base.clicks();
+    }
+
+    PackedLink snapshot(int n) {
+      return base.withClicks(n, n < base.maxClicks() && base.isActive());
+    }
+  }
+}
@@ -0,0 +1,31 @@
+package org.example.shorter;
+
+/** Decides whether a click may be consumed and records it. */
+public interface ClickAccounting extends AutoCloseable {
+
+  /** Consumes one click; the status is decided together with the click. */
+  OpenResult consume(String code, long nowMs);
+
+  /** Folds clicks that are not yet persisted into a link read from the store. */
+  default LinkView view(LinkView stored) {
+    return stored;
+  }
+
+  /** Drops in-memory state for a code after its row was changed or deleted. */
+  default void forget(String code) {}
+
+  default void flush() {}
+
+  @Override
+  default void close() {
+    flush();
+  }
+
+  static ClickAccounting sync(LinkStore repo) {
+    return repo::consume;
+  }
+
+  static ClickAccounting coalesced(LinkStore repo) {
+    return new CoalescingClickAccounting(repo);
+  }
+}
@@ -0,0 +1,222 @@
+package org.example.shorter;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Click event pipeline. Redirects publish (code, timestamp) into a {@link ClickEventRing} and
+ * return; a background thread drains the ring every {@code flushMs}, appends the raw events to
+ * {@code click_events} and folds them into per-code, per-minute counts in {@code click_rollups},
+ * all in one transaction per batch. Statistics are answered from the rollups only. The tables live
+ * in their own SQLite file so analytics writes never wait for the links writer.
+ */
+public class ClickAnalytics implements LinkListener, AutoCloseable {
+  private static final int BATCH = 4096;
+  private static final long MINUTE_MS = 60_000;
+  private static final long PRUNE_EVERY_MS = 60 * MINUTE_MS;
+
+  private static final LongAdder DROPPED =
+      Metrics.counter(
+          "shortener_click_events_dropped_total", "Click events lost because the ring was full");
+  private static final LongAdder WRITTEN =
+      Metrics.counter("shortener_click_events_written_total", "Click events stored");
+  private static final LatencyHistogram FLUSH_LATENCY =
+      Metrics.histogram("shortener_click_events_flush_seconds", "Latency of one event batch");
+
+  private final ClickEventRing ring;
+  private final ConnectionPool pool;
+  private final long retentionMs;
+  private final ScheduledExecutorService consumer;
+
+  // consumer-side batch, reused between flushes
+  private final String[] batchCodes = new String[BATCH];
+  private final long[] batchTimes = new long[BATCH];
+  private int batchSize;
+  private long lastPruneMs;
+
+  public ClickAnalytics(String dbPath, int ringSize, long flushMs, long retentionHours) {
+    this.ring = new ClickEventRing(ringSize);
+    this.pool = new ConnectionPool("jdbc:sqlite:" + dbPath, DbConfig.defaults());
+    this.retentionMs = TimeUnit.HOURS.toMillis(retentionHours);
+    try {
+      SchemaMigrations.migrate(pool, SchemaMigrations.ANALYTICS);
+    } catch (SQLException e) {
+      throw new RuntimeException("Analytics DB init error: " + e.getMessage(), e);
+    }
+    Metrics.gauge(
+        "shortener_click_events_backlog", "Click events waiting in the ring", ring::backlog);
+    if (flushMs > 0) {
+      consumer = Executors.newSingleThreadScheduledExecutor(Threads.daemon("click-events"));
+      consumer.scheduleWithFixedDelay(
+          () -> {
+            try {
+              flush();
+            } catch (RuntimeException e) {
+              System.out.println("[analytics] " + e.getMessage());
+            }
+          },
+          flushMs,
+          flushMs,
+          TimeUnit.MILLISECONDS);
+    } else {
+      consumer = null;
+    }
+  }
+
+  @Override
+  public void clicked(String code, long atMs) {
+    if (!ring.offer(code, atMs)) DROPPED.increment();
+  }
+
+  /** Writes every event published so far; returns how many were stored. */
+  public synchronized int flush() {
+    int total = 0;
+    while (true) {
+      batchSize = 0;
+      ring.drain(this::add, BATCH);
+      if (batchSize == 0) break;
+      long t0 = System.nanoTime();
+      try {
+        write();
+      } catch (RuntimeException e) {
+        DROPPED.add(batchSize);
+        throw e;
+      }
+      FLUSH_LATENCY.recordSince(t0);
+      WRITTEN.add(batchSize);
+      total += batchSize;
+    }
+    prune(System.currentTimeMillis());
+    return total;
+  }
+
+  /** All clicks ever recorded for a code. */
+  public long totalClicks(String code) {
+    try {
+      return pool.read(
+          c -> {
+            PreparedStatement ps =
+                c.prepare("SELECT COALESCE(SUM(clicks), 0) FROM click_rollups WHERE code = ?");
+            ps.setString(1, code);
+            try (ResultSet rs = ps.executeQuery()) {
+              return rs.next() ? rs.getLong(1) : 0L;
+            }
+          });
+    } catch (SQLException e) {
+      throw new RuntimeException("Analytics query error: " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Clicks per minute since {@code fromMs}, keyed by the start of the minute; empty minutes absent.
+   */
+  public NavigableMap<Long, Long> perMinute(String code, long fromMs) {
+    try {
+      return pool.read(
+          c -> {
+            PreparedStatement ps =
+                c.prepare(
+                    "SELECT minute, clicks FROM click_rollups WHERE code = ? AND minute >= ?"
+                        + " ORDER BY minute");
+            ps.setString(1, code);
+            ps.setLong(2, fromMs / MINUTE_MS);
+            NavigableMap<Long, Long> out = new TreeMap<>();
+            try (ResultSet rs = ps.executeQuery()) {
+              while (rs.next()) out.put(rs.getLong(1) * MINUTE_MS, rs.getLong(2));
+            }
+            return out;
+          });
+    } catch (SQLException e) {
+      throw new RuntimeException("Analytics query error: " + e.getMessage(), e);
+    }
+  }
+
+  private void add(String code, long atMs) {
+    batchCodes[batchSize] = code;
+    batchTimes[batchSize] = atMs;
+    batchSize++;
+  }
+
+  private void write() {
+    Map<String, Map<Long, Integer>> rollup = new HashMap<>();
+    for (int i = 0; i < batchSize; i++) {
+      rollup
+          .computeIfAbsent(batchCodes[i], k -> new HashMap<>())
+          .merge(batchTimes[i] / MINUTE_MS, 1, Integer::sum);
+    }
+    try {
+      pool.transaction(
+          c -> {
+            PreparedStatement events =
+                c.prepare("INSERT INTO click_events(at_ms, code) VALUES(?,?)");
+            for (int i = 0; i < batchSize; i++) {
+              events.setLong(1, batchTimes[i]);
+              events.setString(2, batchCodes[i]);
+              events.addBatch();
+            }
+            events.executeBatch();
+
+            PreparedStatement counts =
+                c.prepare(
+                    """
+                    INSERT INTO click_rollups(code, minute, clicks) VALUES(?,?,?)
+                    ON CONFLICT(code, minute) DO UPDATE SET clicks = clicks + excluded.clicks
+                    """);
+            for (Map.Entry<String, Map<Long, Integer>> e : rollup.entrySet()) {
+              for (Map.Entry<Long, Integer> m : e.getValue().entrySet()) {
+                counts.setString(1, e.getKey());
+                counts.setLong(2, m.getKey());
+                counts.setInt(3, m.getValue());
+                counts.addBatch();
+              }
+            }
+            counts.executeBatch();
+            return null;
+          });
+    } catch (SQLException e) {
+      throw new RuntimeException("Analytics write error: " + e.getMessage(), e);
+    } finally {
+      Arrays.fill(batchCodes, 0, batchSize, null);
+    }
+  }
+
+  // raw events are kept for retentionMs; rollups are small and kept for good
+  private void prune(long nowMs) {
+    if (retentionMs <= 0 || nowMs - lastPruneMs < PRUNE_EVERY_MS) return;
+    lastPruneMs = nowMs;
+    try {
+      pool.write(
+          c -> {
+            PreparedStatement ps = c.prepare("DELETE FROM click_events WHERE at_ms < ?");
+            ps.setLong(1, nowMs - retentionMs);
+            return ps.executeUpdate();
+          });
+    } catch (SQLException e) {
+      throw new RuntimeException("Analytics prune error: " + e.getMessage(), e);
+    }
+  }
+
+  @Override
+  public void close() {
+    if (consumer != null) {
+      consumer.shutdown();
+      try {
+        consumer.awaitTermination(5, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    flush();
+    pool.close();
+  }
+}
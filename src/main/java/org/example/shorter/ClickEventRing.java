@@ -0,0 +1,82 @@
+package org.example.shorter;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded lock-free queue of click events (code, timestamp) for many producers and one consumer.
+ * Each slot carries a sequence number: a producer claims a position with one CAS, fills the slot
+ * and publishes it by advancing the slot's sequence; the consumer frees the slot by moving the
+ * sequence a lap ahead. {@link #offer} never blocks; when the consumer falls a whole ring behind,
+ * events are dropped and counted.
+ */
+final class ClickEventRing {
+
+  interface Sink {
+    void accept(String code, long atMs);
+  }
+
+  private final int mask;
+  private final String[] codes;
+  private final long[] times;
+  private final AtomicLongArray sequence;
+  private final AtomicLong tail = new AtomicLong();
+  private volatile long head; // written by the consumer thread only
+
+  ClickEventRing(int capacity) {
+    int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+    this.mask = size - 1;
+    this.codes = new String[size];
+    this.times = new long[size];
+    this.sequence = new AtomicLongArray(size);
+    for (int i = 0; i < size; i++) sequence.set(i, i);
+  }
+
+  int capacity() {
+    return mask + 1;
+  }
+
+  /** Publishes an event; false if the ring is full. */
+  boolean offer(String code, long atMs) {
+    long t = tail.get();
+    while (true) {
+      int i = (int) t & mask;
+      long diff = sequence.get(i) - t;
+      if (diff == 0) {
+        if (tail.compareAndSet(t, t + 1)) {
+          codes[i] = code;
+          times[i] = atMs;
+          sequence.lazySet(i, t + 1);
+          return true;
+        }
+        t = tail.get();
+      } else if (diff < 0) {
+        return false;
+      } else {
+        t = tail.get();
+      }
+    }
+  }
+
+  /** Hands up to {@code max} published events to {@code sink}; consumer thread only. */
+  int drain(Sink sink, int max) {
+    int n = 0;
+    while (n < max) {
+      int i = (int) head & mask;
+      if (sequence.get(i) != head + 1) break;
+      String code = codes[i];
+      long atMs = times[i];
+      codes[i] = null;
+      sequence.lazySet(i, head + mask + 1);
+      head++;
+      n++;
+      sink.accept(code, atMs);
+    }
+    return n;
+  }
+
+  /** Events published but not yet drained (approximate while producers are running). */
+  long backlog() {
+    return Math.max(0, tail.get() - head);
+  }
+}
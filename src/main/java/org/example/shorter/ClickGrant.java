@@ -0,0 +1,16 @@
+package org.example.shorter;
+
+/**
+ * Outcome of taking several clicks of one code at once: how many were granted, and the result of
+ * the last granted click (OK or LAST_CLICK, with the state after it) or, when none was, the
+ * rejection.
+ */
+public final class ClickGrant {
+  public final int granted;
+  public final OpenResult result;
+
+  public ClickGrant(int granted, OpenResult result) {
+    this.granted = granted;
+    this.result = result;
+  }
+}
@@ -0,0 +1,112 @@
+package org.example.shorter;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Single-flight click accounting. Concurrent opens of one code queue up behind a leader; the leader
+ * takes everything queued so far to storage as one {@link LinkStore#consumeClicks} call and hands
+ * each caller its own outcome, in arrival order, so {@code maxClicks} is still exact. Callers
+ * arriving meanwhile form the next batch, whose first caller leads it. A hot code therefore costs
+ * one row update per storage round trip instead of one per open.
+ */
+public class CoalescingClickAccounting implements ClickAccounting {
+  private static final Object LEAD = new Object();
+  private static final LongAdder COALESCED =
+      Metrics.counter(
+          "shortener_click_coalesced_total", "Opens answered by another caller's storage call");
+
+  private final LinkStore repo;
+  private final ConcurrentHashMap<String, Lane> lanes = new ConcurrentHashMap<>();
+
+  /** Callers of one code waiting for a result; guarded by its own monitor. */
+  private static final class Lane {
+    final ArrayDeque<CompletableFuture<Object>> waiting = new ArrayDeque<>();
+    boolean running;
+    boolean retired;
+  }
+
+  public CoalescingClickAccounting(LinkStore repo) {
+    this.repo = repo;
+  }
+
+  @Override
+  public OpenResult consume(String code, long nowMs) {
+    CompletableFuture<Object> mine = new CompletableFuture<>();
+    Lane lane;
+    boolean leader;
+    while (true) {
+      lane = lanes.computeIfAbsent(code, k -> new Lane());
+      synchronized (lane) {
+        if (lane.retired) continue;
+        lane.waiting.add(mine);
+        leader = !lane.running;
+        lane.running = true;
+      }
+      break;
+    }
+    if (!leader) {
+      Object r;
+      try {
+        r = mine.join();
+      } catch (CompletionException e) {
+        if (e.getCause() instanceof RuntimeException cause) throw cause;
+        throw e;
+      }
+      if (r != LEAD) return (OpenResult) r;
+    }
+    return lead(code, lane, nowMs, mine);
+  }
+
+  private OpenResult lead(String code, Lane lane, long nowMs, CompletableFuture<Object> mine) {
+    List<CompletableFuture<Object>> batch;
+    synchronized (lane) {
+      batch = new ArrayList<>(lane.waiting);
+      lane.waiting.clear();
+    }
+    try {
+      ClickGrant g = repo.consumeClicks(code, nowMs, batch.size());
+      COALESCED.add(batch.size() - 1);
+      OpenResult own = null;
+      for (int i = 0; i < batch.size(); i++) {
+        OpenResult r = resultOf(g, i);
+        if (batch.get(i) == mine) own = r;
+        else batch.get(i).complete(r);
+      }
+      return own;
+    } catch (RuntimeException e) {
+      for (CompletableFuture<Object> f : batch) if (f != mine) f.completeExceptionally(e);
+      throw e;
+    } finally {
+      handOff(code, lane);
+    }
+  }
+
+  /**
+   * Outcome of the {@code i}-th caller of a batch: the first {@code granted} callers get clicks.
+   */
+  private static OpenResult resultOf(ClickGrant g, int i) {
+    if (i < g.granted - 1) return OpenResult.of(OpenResult.Status.OK, g.result.link);
+    if (i == g.granted - 1) return g.result;
+    if (g.granted == 0) return g.result;
+    return OpenResult.of(OpenResult.Status.LIMIT_REACHED, g.result.link);
+  }
+
+  private void handOff(String code, Lane lane) {
+    synchronized (lane) {
+      CompletableFuture<Object> next = lane.waiting.peek();
+      if (next != null) {
+        next.complete(LEAD);
+        return;
+      }
+      lane.running = false;
+      lane.retired = true;
+      lanes.remove(code, lane);
+    }
+  }
+}
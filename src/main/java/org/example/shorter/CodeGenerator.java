@@ -0,0 +1,26 @@
+package org.example.shorter;
+
+import com.aventrix.jnanoid.jnanoid.NanoIdUtils;
+
+/** Source of short codes for new links; selected by {@code code.strategy}. */
+public interface CodeGenerator {
+
+  String next();
+
+  /** Random NanoID codes; collisions are detected by the insert. */
+  static CodeGenerator random(int length) {
+    return () ->
+        NanoIdUtils.randomNanoId(
+            NanoIdUtils.DEFAULT_NUMBER_GENERATOR, NanoIdUtils.DEFAULT_ALPHABET, length);
+  }
+
+  static CodeGenerator create(AppConfig cfg, LinkStore repo) {
+    return switch (cfg.codeStrategy.toLowerCase()) {
+      case "bloom" -> BloomCodeGenerator.load(repo, cfg.codeLength, cfg.codeBloomExpected);
+      case "sequence" ->
+          new SequenceCodeGenerator(
+              repo, cfg.codeLength, cfg.codeSequenceKey, cfg.codeSequenceBlock);
+      default -> random(cfg.codeLength);
+    };
+  }
+}
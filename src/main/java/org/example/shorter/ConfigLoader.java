@@ -22,13 +22,100 @@ public class ConfigLoader {
     int codeLength = intProp(p, "code.length", 8);
     boolean openBrowser = boolProp(p, "browser.open", true);
 
+    DbConfig dbDefaults = DbConfig.defaults();
+    DbConfig db =
+        new DbConfig(
+            intProp(p, "db.pool.readers", dbDefaults.readers),
+            intProp(p, "db.pool.statement.cache", dbDefaults.statementCacheSize),
+            longProp(p, "db.pool.acquire.timeout.ms", dbDefaults.acquireTimeoutMs),
+            enumProp(
+                p,
+                "db.journal.mode",
+                dbDefaults.journalMode,
+                "DELETE",
+                "TRUNCATE",
+                "PERSIST",
+                "MEMORY",
+                "WAL",
+                "OFF"),
+            enumProp(p, "db.synchronous", dbDefaults.synchronous, "OFF", "NORMAL", "FULL", "EXTRA"),
+            longProp(p, "db.mmap.size", dbDefaults.mmapSizeBytes),
+            intProp(p, "db.cache.kb", dbDefaults.cacheSizeKb),
+            intProp(p, "db.busy.timeout.ms", dbDefaults.busyTimeoutMs),
+            enumProp(p, "db.temp.store", dbDefaults.tempStore, "DEFAULT", "FILE", "MEMORY"),
+            intProp(p, "db.wal.autocheckpoint", dbDefaults.walAutocheckpointPages));
+
+    int cacheSize = intProp(p, "cache.size", 10_000);
+    String clickMode = strProp(p, "click.mode", "sync");
+    long clickFlushMs = longProp(p, "click.flush.ms", 1000);
+    int clickFlushThreshold = intProp(p, "click.flush.threshold", 1000);
+    String mode = strProp(p, "app.mode", "console");
+    int httpPort = intProp(p, "http.port", 8080);
+    int httpThreads = intProp(p, "http.threads", 64);
+    int cleanupBatch = intProp(p, "cleanup.batch.size", 1000);
+    int cleanupBatchMax = intProp(p, "cleanup.batch.max", 10_000);
+    long cleanupChunkTargetMs = longProp(p, "cleanup.chunk.target.ms", 5);
+    long cleanupPauseMs = longProp(p, "cleanup.pause.ms", 20);
+    boolean expiryIndex = boolProp(p, "cleanup.expiry.index", true);
+    String codeStrategy = strProp(p, "code.strategy", "random");
+    long codeBloomExpected = longProp(p, "code.bloom.expected", 1_000_000);
+    long codeSequenceKey = longProp(p, "code.sequence.key", 0x5DEECE66DL);
+    int codeSequenceBlock = intProp(p, "code.sequence.block", 1000);
+    String storageEngine = strProp(p, "storage.engine", "sqlite");
+    String snapshotPath = strProp(p, "storage.snapshot.path", "");
+    long snapshotSeconds = longProp(p, "storage.snapshot.seconds", 0);
+    String logDir = strProp(p, "storage.log.dir", "shortener-log");
+    long logSegmentBytes = longProp(p, "storage.log.segment.bytes", 64L << 20);
+    long logCompactSeconds = longProp(p, "storage.log.compact.seconds", 60);
+    String metricsDumpPath = strProp(p, "metrics.dump.path", "");
+    long metricsDumpSeconds = longProp(p, "metrics.dump.seconds", 15);
+    int storageShards = intProp(p, "storage.shards", 4);
+    String analyticsDbPath = strProp(p, "analytics.db.path", "");
+    int analyticsRingSize = intProp(p, "analytics.ring.size", 65_536);
+    long analyticsFlushMs = longProp(p, "analytics.flush.ms", 1000);
+    long analyticsRetentionHours = longProp(p, "analytics.events.retention.hours", 168);
+    boolean createDedup = boolProp(p, "create.dedup", false);
+    int urlValidationCache = intProp(p, "url.validation.cache", 10_000);
+
     return new AppConfig(
         Duration.ofMinutes(ttlMinutes),
         Duration.ofSeconds(cleanupSeconds),
         dbPath,
         defaultLimit,
         codeLength,
-        openBrowser);
+        openBrowser,
+        db,
+        cacheSize,
+        clickMode,
+        clickFlushMs,
+        clickFlushThreshold,
+        mode,
+        httpPort,
+        httpThreads,
+        cleanupBatch,
+        cleanupBatchMax,
+        cleanupChunkTargetMs,
+        cleanupPauseMs,
+        expiryIndex,
+        codeStrategy,
+        codeBloomExpected,
+        codeSequenceKey,
+        codeSequenceBlock,
+        storageEngine,
+        snapshotPath,
+        snapshotSeconds,
+        logDir,
+        logSegmentBytes,
+        logCompactSeconds,
+        metricsDumpPath,
+        metricsDumpSeconds,
+        storageShards,
+        analyticsDbPath,
+        analyticsRingSize,
+        analyticsFlushMs,
+        analyticsRetentionHours,
+        createDedup,
+        urlValidationCache);
   }
 
   private static String strProp(Properties p, String key, String def) {
@@ -36,6 +123,15 @@ public class ConfigLoader {
     return (v == null || v.isBlank()) ? def : v.trim();
   }
 
+  // values end up inside PRAGMA statements, so only known keywords are accepted
+  private static String enumProp(Properties p, String key, String def, String... allowed) {
+    String v = strProp(p, key, def).toUpperCase();
+    for (String a : allowed) {
+      if (a.equals(v)) return v;
+    }
+    return def;
+  }
+
   private static long longProp(Properties p, String key, long def) {
     try {
       return Long.parseLong(strProp(p, key, String.valueOf(def)));
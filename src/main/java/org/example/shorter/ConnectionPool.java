@@ -0,0 +1,194 @@
+package org.example.shorter;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded set of open SQLite connections: one writer (SQLite allows a single writer per file) and
+ * several readers. Connections stay open for the lifetime of the pool.
+ */
+public class ConnectionPool implements AutoCloseable {
+
+  @FunctionalInterface
+  public interface SqlWork<T> {
+    T run(PooledConnection c) throws SQLException;
+  }
+
+  private static final LatencyHistogram READER_WAIT =
+      Metrics.histogram(
+          "shortener_db_wait_seconds", "conn=\"reader\"", "Time spent waiting for a connection");
+  private static final LatencyHistogram WRITER_WAIT =
+      Metrics.histogram(
+          "shortener_db_wait_seconds", "conn=\"writer\"", "Time spent waiting for a connection");
+
+  private final String jdbcUrl;
+  private final DbConfig cfg;
+  private final ReentrantLock writerLock = new ReentrantLock(true);
+  private final BlockingQueue<PooledConnection> readers;
+  private final List<PooledConnection> all = new ArrayList<>();
+  private PooledConnection writer;
+  private volatile boolean closed;
+
+  public ConnectionPool(String jdbcUrl, DbConfig cfg) {
+    this.jdbcUrl = jdbcUrl;
+    this.cfg = cfg;
+    this.readers = new ArrayBlockingQueue<>(Math.max(1, cfg.readers));
+    try {
+      writer = open();
+      try (Statement st = writer.connection().createStatement()) {
+        // journal mode is persistent in the file; set it once on the writer
+        st.execute("PRAGMA journal_mode = " + cfg.journalMode);
+      }
+      for (int i = 0; i < cfg.readers; i++) readers.add(open());
+    } catch (SQLException e) {
+      close();
+      throw new RuntimeException("DB pool error: " + e.getMessage(), e);
+    }
+  }
+
+  private PooledConnection open() throws SQLException {
+    Connection c = DriverManager.getConnection(jdbcUrl);
+    try (Statement st = c.createStatement()) {
+      st.execute("PRAGMA busy_timeout = " + cfg.busyTimeoutMs);
+      st.execute("PRAGMA synchronous = " + cfg.synchronous);
+      st.execute("PRAGMA cache_size = " + (-cfg.cacheSizeKb));
+      st.execute("PRAGMA mmap_size = " + cfg.mmapSizeBytes);
+      st.execute("PRAGMA temp_store = " + cfg.tempStore);
+      st.execute("PRAGMA wal_autocheckpoint = " + cfg.walAutocheckpointPages);
+    } catch (SQLException e) {
+      c.close();
+      throw e;
+    }
+    PooledConnection pc = new PooledConnection(c, cfg.statementCacheSize);
+    synchronized (all) {
+      all.add(pc);
+    }
+    return pc;
+  }
+
+  public <T> T read(SqlWork<T> work) throws SQLException {
+    if (cfg.readers <= 0) return write(work);
+    PooledConnection c = acquireReader();
+    try {
+      return work.run(c);
+    } finally {
+      releaseReader(c);
+    }
+  }
+
+  public <T> T write(SqlWork<T> work) throws SQLException {
+    acquireWriter();
+    try {
+      return work.run(writer);
+    } finally {
+      writerLock.unlock();
+    }
+  }
+
+  /** Runs {@code work} on the writer inside a transaction, rolling back on any failure. */
+  public <T> T transaction(SqlWork<T> work) throws SQLException {
+    return write(
+        c -> {
+          Connection raw = c.connection();
+          raw.setAutoCommit(false);
+          try {
+            T out = work.run(c);
+            raw.commit();
+            return out;
+          } catch (SQLException | RuntimeException e) {
+            raw.rollback();
+            throw e;
+          } finally {
+            raw.setAutoCommit(true);
+          }
+        });
+  }
+
+  private void acquireWriter() throws SQLException {
+    long t0 = System.nanoTime();
+    try {
+      boolean locked = writerLock.tryLock(cfg.acquireTimeoutMs, TimeUnit.MILLISECONDS);
+      WRITER_WAIT.recordSince(t0);
+      if (!locked) {
+        throw new SQLException("writer connection not available in " + cfg.acquireTimeoutMs + "ms");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SQLException("interrupted while waiting for writer connection", e);
+    }
+    if (closed) {
+      writerLock.unlock();
+      throw new SQLException("pool is closed");
+    }
+    if (writer.isClosed()) {
+      try {
+        writer = open();
+      } catch (SQLException e) {
+        writerLock.unlock();
+        throw e;
+      }
+    }
+  }
+
+  private PooledConnection acquireReader() throws SQLException {
+    PooledConnection c;
+    long t0 = System.nanoTime();
+    try {
+      c = readers.poll(cfg.acquireTimeoutMs, TimeUnit.MILLISECONDS);
+      READER_WAIT.recordSince(t0);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SQLException("interrupted while waiting for reader connection", e);
+    }
+    if (c == null) {
+      throw new SQLException("reader connection not available in " + cfg.acquireTimeoutMs + "ms");
+    }
+    if (closed) {
+      readers.offer(c);
+      throw new SQLException("pool is closed");
+    }
+    if (c.isClosed()) {
+      try {
+        c = open();
+      } catch (SQLException e) {
+        readers.offer(c);
+        throw e;
+      }
+    }
+    return c;
+  }
+
+  private void releaseReader(PooledConnection c) {
+    readers.offer(c);
+  }
+
+  @Override
+  public void close() {
+    if (!closed && writer != null && cfg.isWal()) {
+      // fold the WAL back into the main file so a clean shutdown leaves a single file
+      try {
+        write(
+            c -> {
+              try (Statement st = c.connection().createStatement()) {
+                st.execute("PRAGMA wal_checkpoint(TRUNCATE)");
+              }
+              return null;
+            });
+      } catch (SQLException | RuntimeException ignored) {
+      }
+    }
+    closed = true;
+    synchronized (all) {
+      for (PooledConnection c : all) c.close();
+      all.clear();
+    }
+  }
+}
@@ -0,0 +1,61 @@
+package org.example.shorter;
+
+public class DbConfig {
+  public final int readers;
+  public final int statementCacheSize;
+  public final long acquireTimeoutMs;
+
+  // storage tuning, applied as PRAGMAs to every pooled connection
+  public final String journalMode;
+  public final String synchronous;
+  public final long mmapSizeBytes;
+  public final int cacheSizeKb;
+  public final int busyTimeoutMs;
+  public final String tempStore;
+  public final int walAutocheckpointPages;
+
+  public DbConfig(
+      int readers,
+      int statementCacheSize,
+      long acquireTimeoutMs,
+      String journalMode,
+      String synchronous,
+      long mmapSizeBytes,
+      int cacheSizeKb,
+      int busyTimeoutMs,
+      String tempStore,
+      int walAutocheckpointPages) {
+    this.readers = readers;
+    this.statementCacheSize = statementCacheSize;
+    this.acquireTimeoutMs = acquireTimeoutMs;
+    this.journalMode = journalMode;
+    this.synchronous = synchronous;
+    this.mmapSizeBytes = mmapSizeBytes;
+    this.cacheSizeKb = cacheSizeKb;
+    this.busyTimeoutMs = busyTimeoutMs;
+    this.tempStore = tempStore;
+    this.walAutocheckpointPages = walAutocheckpointPages;
+  }
+
+  public DbConfig(int readers, int statementCacheSize, long acquireTimeoutMs) {
+    this(
+        readers,
+        statementCacheSize,
+        acquireTimeoutMs,
+        "WAL",
+        "NORMAL",
+        256L * 1024 * 1024,
+        16 * 1024,
+        5000,
+        "MEMORY",
+        1000);
+  }
+
+  public static DbConfig defaults() {
+    return new DbConfig(4, 32, 5000);
+  }
+
+  public boolean isWal() {
+    return "WAL".equalsIgnoreCase(journalMode);
+  }
+}
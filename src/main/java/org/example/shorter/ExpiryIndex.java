@@ -0,0 +1,118 @@
+package org.example.shorter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * In-memory index of link expiry times, ordered by {@code expiresAtMs}. Loaded once from the
+ * repository and kept in sync by {@link LinkService} create/delete, so the cleanup thread can reap
+ * exactly the codes that are due instead of scanning the links table.
+ *
+ * <p>Listener calls run after the store write and are not ordered with it, so the index can go
+ * stale when a code is deleted and created again concurrently. A delete therefore re-reads the
+ * store before giving up the entry, and the sweeper re-schedules due codes the store kept.
+ */
+public class ExpiryIndex implements LinkListener {
+
+  private static final class Entry implements Comparable<Entry> {
+    final long expiresAtMs;
+    final String code;
+
+    Entry(long expiresAtMs, String code) {
+      this.expiresAtMs = expiresAtMs;
+      this.code = code;
+    }
+
+    @Override
+    public int compareTo(Entry o) {
+      int c = Long.compare(expiresAtMs, o.expiresAtMs);
+      return c != 0 ? c : code.compareTo(o.code);
+    }
+  }
+
+  private final ConcurrentSkipListSet<Entry> byExpiry = new ConcurrentSkipListSet<>();
+  private final ConcurrentHashMap<String, Long> byCode = new ConcurrentHashMap<>();
+  private final LinkStore repo;
+
+  public ExpiryIndex() {
+    this(null);
+  }
+
+  public ExpiryIndex(LinkStore repo) {
+    this.repo = repo;
+  }
+
+  public static ExpiryIndex load(LinkStore repo) {
+    ExpiryIndex index = new ExpiryIndex(repo);
+    repo.forEachExpiry(index::add);
+    return index;
+  }
+
+  public void add(String code, long expiresAtMs) {
+    Long previous = byCode.put(code, expiresAtMs);
+    if (previous != null) byExpiry.remove(new Entry(previous, code));
+    byExpiry.add(new Entry(expiresAtMs, code));
+  }
+
+  public void remove(String code) {
+    Long previous = byCode.remove(code);
+    if (previous != null) byExpiry.remove(new Entry(previous, code));
+  }
+
+  /** Removes and returns up to {@code max} codes whose expiry is at or before {@code nowMs}. */
+  public List<String> pollDue(long nowMs, int max) {
+    List<String> out = new ArrayList<>();
+    while (out.size() < max) {
+      Entry first = firstOrNull();
+      if (first == null || first.expiresAtMs > nowMs) break;
+      if (byExpiry.remove(first)) {
+        byCode.remove(first.code, first.expiresAtMs);
+        out.add(first.code);
+      }
+    }
+    return out;
+  }
+
+  /** Number of codes due by {@code nowMs}, counting no further than {@code max}. */
+  public long countDue(long nowMs, long max) {
+    long n = 0;
+    for (Entry e : byExpiry) {
+      if (n >= max || e.expiresAtMs > nowMs) break;
+      n++;
+    }
+    return n;
+  }
+
+  /** Earliest expiry in the index, or {@link Long#MAX_VALUE} when it is empty. */
+  public long nextDueMs() {
+    Entry first = firstOrNull();
+    return first == null ? Long.MAX_VALUE : first.expiresAtMs;
+  }
+
+  public int size() {
+    return byCode.size();
+  }
+
+  @Override
+  public void created(Link link) {
+    add(link.code, link.expiresAtMs);
+  }
+
+  @Override
+  public void deleted(String code) {
+    remove(code);
+    // a create of the same code may have been indexed just before this removal
+    if (repo != null) repo.view(code).ifPresent(l -> add(code, l.expiresAtMs()));
+  }
+
+  private Entry firstOrNull() {
+    try {
+      return byExpiry.first();
+    } catch (NoSuchElementException e) {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,194 @@
+package org.example.shorter;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Incremental expiry cleanup. Each run deletes expired rows in bounded chunks and pauses between
+ * them so redirects can take the write lock. The chunk size adapts so a single chunk stays near
+ * {@code targetChunkMs}; with a large backlog the pause is shortened to catch up faster.
+ */
+public class ExpirySweeper {
+  static final int MIN_BATCH = 16;
+  static final long FALLBACK_PERIOD_MS = 10 * 60_000;
+  private static final long MIN_DELAY_MS = 50;
+  private static final LatencyHistogram DELETE_LATENCY =
+      Metrics.histogram("shortener_delete_expired_seconds", "Latency of one expiry delete chunk");
+
+  private final LinkStore repo;
+  private final ExpiryIndex index;
+  private final int maxBatch;
+  private final long targetChunkMs;
+  private final long pauseMs;
+  private final Consumer<List<String>> onDeleted;
+
+  private volatile int batchSize;
+  private long nextFallbackMs;
+  private final AtomicLong backlog = new AtomicLong();
+  private final AtomicLong lastRunDeleted = new AtomicLong();
+  private final AtomicLong totalDeleted = new AtomicLong();
+  private final AtomicLong runs = new AtomicLong();
+
+  public ExpirySweeper(
+      LinkStore repo,
+      int initialBatch,
+      int maxBatch,
+      long targetChunkMs,
+      long pauseMs,
+      Consumer<List<String>> onDeleted) {
+    this(repo, null, initialBatch, maxBatch, targetChunkMs, pauseMs, onDeleted);
+  }
+
+  /**
+   * With an {@link ExpiryIndex} the due codes come from memory and are deleted by code; without one
+   * each chunk selects expired ids through the {@code expires_at_ms} index. Rows written behind the
+   * index's back are reaped by an indexed pass every {@link #FALLBACK_PERIOD_MS}.
+   */
+  public ExpirySweeper(
+      LinkStore repo,
+      ExpiryIndex index,
+      int initialBatch,
+      int maxBatch,
+      long targetChunkMs,
+      long pauseMs,
+      Consumer<List<String>> onDeleted) {
+    this.repo = repo;
+    this.index = index;
+    this.maxBatch = Math.max(MIN_BATCH, maxBatch);
+    this.batchSize = Math.max(MIN_BATCH, Math.min(initialBatch, this.maxBatch));
+    this.targetChunkMs = Math.max(1, targetChunkMs);
+    this.pauseMs = Math.max(0, pauseMs);
+    this.onDeleted = onDeleted;
+  }
+
+  /** Deletes everything that expired by {@code nowMs}; returns the number of rows removed. */
+  public int runOnce(long nowMs) {
+    int deleted = drain(nowMs, index != null);
+    if (index != null && nowMs >= nextFallbackMs && !Thread.currentThread().isInterrupted()) {
+      nextFallbackMs = nowMs + FALLBACK_PERIOD_MS;
+      deleted += drain(nowMs, false);
+    }
+
+    // the backlog keeps the last count: an interrupted run leaves work due
+    lastRunDeleted.set(deleted);
+    totalDeleted.addAndGet(deleted);
+    runs.incrementAndGet();
+    return deleted;
+  }
+
+  private int drain(long nowMs, boolean fromIndex) {
+    // only the pause needs the size of a large backlog, so the index count stops there
+    long countCap = 10L * maxBatch + 1;
+    long remaining = fromIndex ? index.countDue(nowMs, countCap) : repo.countExpired(nowMs);
+    backlog.set(remaining);
+    int deleted = 0;
+
+    while (remaining > 0 && !Thread.currentThread().isInterrupted()) {
+      int batch = batchSize;
+      long t0 = System.nanoTime();
+      int taken;
+      List<String> codes;
+      if (fromIndex) {
+        List<String> due = index.pollDue(nowMs, batch);
+        taken = due.size();
+        codes = deleteDue(due, nowMs);
+      } else {
+        codes = repo.deleteExpiredBatch(nowMs, batch);
+        taken = codes.size();
+      }
+      long tookNanos = System.nanoTime() - t0;
+      DELETE_LATENCY.record(tookNanos);
+      long tookMs = tookNanos / 1_000_000;
+
+      deleted += codes.size();
+      remaining = Math.max(0, remaining - taken);
+      if (fromIndex && remaining == 0 && taken == batch)
+        remaining = index.countDue(nowMs, countCap);
+      backlog.set(remaining);
+      if (!codes.isEmpty()) onDeleted.accept(codes);
+      if (taken < batch) break;
+
+      adapt(tookMs);
+      pause(remaining);
+    }
+    return deleted;
+  }
+
+  private List<String> deleteDue(List<String> due, long nowMs) {
+    if (due.isEmpty()) return due;
+    try {
+      // the expiry guard keeps a stale entry from deleting a code that was since reused
+      List<String> deleted = repo.deleteExpiredByCodes(due, nowMs);
+      if (deleted.size() < due.size()) requeueKept(due, deleted, nowMs);
+      return deleted;
+    } catch (RuntimeException e) {
+      // keep them due so the next run retries
+      for (String code : due) index.add(code, nowMs);
+      throw e;
+    }
+  }
+
+  /** Puts codes the guard kept back into the index at the expiry the store holds now. */
+  private void requeueKept(List<String> due, List<String> deleted, long nowMs) {
+    Set<String> gone = new HashSet<>(deleted);
+    for (String code : due) {
+      if (gone.contains(code)) continue;
+      repo.view(code)
+          .filter(l -> l.expiresAtMs() > nowMs)
+          .ifPresent(l -> index.add(code, l.expiresAtMs()));
+    }
+  }
+
+  /** When the next run should start: the earliest due link, capped by {@code periodMs}. */
+  public long nextRunDelayMs(long nowMs, long periodMs) {
+    if (index == null) return periodMs;
+    long next = index.nextDueMs();
+    if (next == Long.MAX_VALUE) return periodMs;
+    return Math.max(MIN_DELAY_MS, Math.min(periodMs, next - nowMs + 1));
+  }
+
+  private void adapt(long tookMs) {
+    if (tookMs > targetChunkMs) {
+      batchSize = Math.max(MIN_BATCH, batchSize / 2);
+    } else if (tookMs * 2 < targetChunkMs) {
+      batchSize = Math.min(maxBatch, batchSize * 2);
+    }
+  }
+
+  private void pause(long remaining) {
+    // a backlog of many chunks shortens the pause so cleanup keeps up with mass expiry
+    long ms = remaining > 10L * batchSize ? pauseMs / 4 : pauseMs;
+    if (ms <= 0) {
+      Thread.yield();
+      return;
+    }
+    try {
+      Thread.sleep(ms);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  public long backlog() {
+    return backlog.get();
+  }
+
+  public long lastRunDeleted() {
+    return lastRunDeleted.get();
+  }
+
+  public long totalDeleted() {
+    return totalDeleted.get();
+  }
+
+  public long runs() {
+    return runs.get();
+  }
+
+  public int batchSize() {
+    return batchSize;
+  }
+}
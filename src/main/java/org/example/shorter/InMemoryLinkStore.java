@@ -0,0 +1,424 @@
+package org.example.shorter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Zero-I/O storage engine on concurrent maps. Each code maps to an immutable {@link PackedLink}
+ * that is replaced atomically through {@code compute}, which gives per-code atomic click state; a
+ * per-user skip list keeps {@code listByUser} ordered by id, and a second one per (user, canonical
+ * URL hash) serves create dedup. With a snapshot path the contents are loaded at startup and
+ * written back on close (and every {@code snapshotSeconds}).
+ */
+public class InMemoryLinkStore implements LinkStore {
+  private static final int SNAPSHOT_MAGIC = 0x4C4E4B53; // "LNKS"
+  private static final int SNAPSHOT_VERSION = 1;
+
+  private final ConcurrentHashMap<String, PackedLink> byCode = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<String, ConcurrentSkipListMap<Long, String>> byUser =
+      new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<String, ConcurrentSkipListMap<Long, String>> byUrl =
+      new ConcurrentHashMap<>();
+  private final AtomicLong ids = new AtomicLong();
+  private final AtomicLong sequence = new AtomicLong();
+  private final Path snapshot;
+  private final ScheduledExecutorService snapshotter;
+
+  public InMemoryLinkStore() {
+    this(null, 0);
+  }
+
+  public InMemoryLinkStore(Path snapshot, long snapshotSeconds) {
+    this.snapshot = snapshot;
+    if (snapshot != null && Files.exists(snapshot)) load(snapshot);
+    if (snapshot != null && snapshotSeconds > 0) {
+      snapshotter = Executors.newSingleThreadScheduledExecutor(Threads.daemon("snapshot"));
+      snapshotter.scheduleAtFixedRate(
+          () -> {
+            try {
+              snapshot();
+            } catch (UncheckedIOException e) {
+              System.out.println("[snapshot] " + e.getMessage());
+            }
+          },
+          snapshotSeconds,
+          snapshotSeconds,
+          TimeUnit.SECONDS);
+    } else {
+      snapshotter = null;
+    }
+  }
+
+  @Override
+  public Link insert(Link l) {
+    if (!tryInsert(l)) throw new RuntimeException("Memory insert error: code already exists");
+    return l;
+  }
+
+  @Override
+  public boolean tryInsert(Link l) {
+    long previous = l.id;
+    l.id = ids.incrementAndGet();
+    if (byCode.putIfAbsent(l.code, PackedLink.of(l)) != null) {
+      l.id = previous;
+      return false;
+    }
+    index(l);
+    return true;
+  }
+
+  @Override
+  public boolean[] insertBatch(List<Link> links) {
+    boolean[] inserted = new boolean[links.size()];
+    for (int i = 0; i < inserted.length; i++) inserted[i] = tryInsert(links.get(i));
+    return inserted;
+  }
+
+  @Override
+  public Set<String> existingCodes(Collection<String> codes) {
+    Set<String> out = new HashSet<>();
+    for (String code : codes) if (byCode.containsKey(code)) out.add(code);
+    return out;
+  }
+
+  @Override
+  public long leaseCodeBlock(int size) {
+    return sequence.getAndAdd(size);
+  }
+
+  @Override
+  public Optional<Link> findByCode(String code) {
+    PackedLink l = byCode.get(code);
+    return l == null ? Optional.empty() : Optional.of(l.toLink());
+  }
+
+  @Override
+  public Optional<LinkView> view(String code) {
+    return Optional.ofNullable(byCode.get(code));
+  }
+
+  @Override
+  public void forEachByUser(
+      String userUuid,
+      ListFilter filter,
+      long nowMs,
+      long afterId,
+      int limit,
+      Consumer<? super LinkView> sink) {
+    ConcurrentSkipListMap<Long, String> codes = byUser.get(userUuid);
+    if (codes == null || limit <= 0) return;
+    var page = afterId > 0 ? codes.headMap(afterId, false) : codes;
+    int n = 0;
+    for (String code : page.descendingMap().values()) {
+      PackedLink l = byCode.get(code);
+      if (l == null || !filter.matches(l, nowMs)) continue;
+      sink.accept(l);
+      if (++n == limit) return;
+    }
+  }
+
+  @Override
+  public Map<String, Link> findLiveByUrls(
+      String userUuid, Collection<String> canonicalUrls, int maxClicks, long nowMs) {
+    Map<String, Link> out = new HashMap<>();
+    for (String canonical : canonicalUrls) {
+      ConcurrentSkipListMap<Long, String> codes =
+          byUrl.get(urlKey(userUuid, UrlCanonicalizer.hash(canonical)));
+      if (codes == null) continue;
+      for (String code : codes.descendingMap().values()) {
+        PackedLink l = byCode.get(code);
+        if (l == null || !l.isOwnedBy(userUuid) || l.maxClicks() != maxClicks) continue;
+        if (!ListFilter.ACTIVE.matches(l, nowMs)) continue;
+        // newest first: keep the first match
+        if (UrlCanonicalizer.canonical(l.originalUrl()).equals(canonical)) {
+          out.put(canonical, l.toLink());
+          break;
+        }
+      }
+    }
+    return out;
+  }
+
+  @Override
+  public long maxId() {
+    return ids.get();
+  }
+
+  @Override
+  public boolean supportsRangeReads() {
+    return false;
+  }
+
+  @Override
+  public void forEachInIdRange(long afterId, long toId, Consumer<? super LinkView> sink) {
+    for (PackedLink l : byCode.values()) if (l.id() > afterId && l.id() <= toId) sink.accept(l);
+  }
+
+  @Override
+  public boolean deleteByCodeAndUser(String code, String userUuid) {
+    boolean[] deleted = new boolean[1];
+    byCode.computeIfPresent(
+        code,
+        (k, l) -> {
+          if (!l.isOwnedBy(userUuid)) return l;
+          deleted[0] = true;
+          unindex(l);
+          return null;
+        });
+    return deleted[0];
+  }
+
+  @Override
+  public boolean updateLimit(String code, String userUuid, int newLimit) {
+    boolean[] updated = new boolean[1];
+    byCode.computeIfPresent(
+        code,
+        (k, l) -> {
+          if (!l.isOwnedBy(userUuid)) return l;
+          updated[0] = true;
+          return l.withMaxClicks(newLimit);
+        });
+    return updated[0];
+  }
+
+  @Override
+  public int deleteExpired(long nowMs) {
+    int deleted = 0;
+    for (Map.Entry<String, PackedLink> e : byCode.entrySet()) {
+      if (e.getValue().expiresAtMs() <= nowMs && removeExpired(e.getKey(), nowMs)) deleted++;
+    }
+    return deleted;
+  }
+
+  @Override
+  public List<String> deleteExpiredBatch(long nowMs, int limit) {
+    List<Map.Entry<String, PackedLink>> due = new ArrayList<>();
+    for (Map.Entry<String, PackedLink> e : byCode.entrySet()) {
+      if (e.getValue().expiresAtMs() <= nowMs) due.add(e);
+    }
+    due.sort(Comparator.comparingLong(e -> e.getValue().expiresAtMs()));
+    List<String> out = new ArrayList<>();
+    for (Map.Entry<String, PackedLink> e : due) {
+      if (out.size() >= limit) break;
+      if (removeExpired(e.getKey(), nowMs)) out.add(e.getKey());
+    }
+    return out;
+  }
+
+  @Override
+  public List<String> deleteByCodes(List<String> codes) {
+    List<String> out = new ArrayList<>();
+    for (String code : codes) {
+      PackedLink l = byCode.remove(code);
+      if (l != null) {
+        unindex(l);
+        out.add(code);
+      }
+    }
+    return out;
+  }
+
+  @Override
+  public List<String> deleteExpiredByCodes(List<String> codes, long nowMs) {
+    List<String> out = new ArrayList<>();
+    for (String code : codes) if (removeExpired(code, nowMs)) out.add(code);
+    return out;
+  }
+
+  @Override
+  public void forEachExpiry(BiConsumer<String, Long> sink) {
+    for (Map.Entry<String, PackedLink> e : byCode.entrySet()) {
+      sink.accept(e.getKey(), e.getValue().expiresAtMs());
+    }
+  }
+
+  @Override
+  public long countExpired(long nowMs) {
+    long n = 0;
+    for (PackedLink l : byCode.values()) if (l.expiresAtMs() <= nowMs) n++;
+    return n;
+  }
+
+  @Override
+  public OpenResult consume(String code, long nowMs) {
+    OpenResult[] out = {OpenResult.NOT_FOUND};
+    byCode.computeIfPresent(
+        code,
+        (k, l) -> {
+          int n = l.clicks();
+          if (l.expiresAtMs() <= nowMs) {
+            out[0] = OpenResult.of(OpenResult.Status.EXPIRED, l);
+            return l;
+          }
+          if (!l.isActive() || n >= l.maxClicks()) {
+            out[0] = OpenResult.of(OpenResult.Status.LIMIT_REACHED, l);
+            return l;
+          }
+          PackedLink u = l.withClicks(n + 1, n + 1 < l.maxClicks());
+          out[0] =
+              OpenResult.of(u.isActive() ? OpenResult.Status.OK : OpenResult.Status.LAST_CLICK, u);
+          return u;
+        });
+    return out[0];
+  }
+
+  @Override
+  public void addClicks(Map<String, Integer> deltas) {
+    for (Map.Entry<String, Integer> e : deltas.entrySet()) {
+      int d = e.getValue();
+      byCode.computeIfPresent(
+          e.getKey(),
+          (k, l) -> {
+            int n = l.clicks() + d;
+            return l.withClicks(n, l.isActive() && n < l.maxClicks());
+          });
+    }
+  }
+
+  public int size() {
+    return byCode.size();
+  }
+
+  @Override
+  public void close() {
+    if (snapshotter != null) snapshotter.shutdown();
+    if (snapshot != null) snapshot();
+  }
+
+  /** Writes all links to the snapshot file (via a temp file and an atomic rename). */
+  public synchronized void snapshot() {
+    if (snapshot == null) return;
+    Path tmp = snapshot.resolveSibling(snapshot.getFileName() + ".tmp");
+    try (DataOutputStream out =
+        new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+      out.writeInt(SNAPSHOT_MAGIC);
+      out.writeInt(SNAPSHOT_VERSION);
+      out.writeLong(ids.get());
+      out.writeLong(sequence.get());
+      for (PackedLink l : byCode.values()) {
+        out.writeBoolean(true);
+        out.writeLong(l.id());
+        writeString(out, l.userUuid());
+        writeString(out, l.code());
+        writeString(out, l.originalUrl());
+        out.writeLong(l.createdAtMs());
+        out.writeLong(l.expiresAtMs());
+        out.writeInt(l.maxClicks());
+        out.writeInt(l.clicks());
+        out.writeByte(l.isActive() ? 1 : 0);
+      }
+      out.writeBoolean(false);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Snapshot write error: " + e.getMessage(), e);
+    }
+    try {
+      Files.move(
+          tmp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Snapshot write error: " + e.getMessage(), e);
+    }
+  }
+
+  private void load(Path file) {
+    try (DataInputStream in =
+        new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+      if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+        throw new IOException("not a link snapshot: " + file);
+      }
+      ids.set(in.readLong());
+      sequence.set(in.readLong());
+      while (in.readBoolean()) {
+        Link l = new Link();
+        l.id = in.readLong();
+        l.userUuid = readString(in);
+        l.code = readString(in);
+        l.originalUrl = readString(in);
+        l.createdAtMs = in.readLong();
+        l.expiresAtMs = in.readLong();
+        l.maxClicks = in.readInt();
+        l.clicks = in.readInt();
+        l.active = in.readByte();
+        byCode.put(l.code, PackedLink.of(l));
+        index(l);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Snapshot read error: " + e.getMessage(), e);
+    }
+  }
+
+  private boolean removeExpired(String code, long nowMs) {
+    boolean[] removed = new boolean[1];
+    byCode.computeIfPresent(
+        code,
+        (k, l) -> {
+          if (l.expiresAtMs() > nowMs) return l;
+          removed[0] = true;
+          unindex(l);
+          return null;
+        });
+    return removed[0];
+  }
+
+  private void index(Link l) {
+    byUser.computeIfAbsent(l.userUuid, k -> new ConcurrentSkipListMap<>()).put(l.id, l.code);
+    byUrl.compute(
+        urlKey(l.userUuid, UrlCanonicalizer.hash(l.originalUrl)),
+        (k, codes) -> {
+          if (codes == null) codes = new ConcurrentSkipListMap<>();
+          codes.put(l.id, l.code);
+          return codes;
+        });
+  }
+
+  private void unindex(PackedLink l) {
+    ConcurrentSkipListMap<Long, String> codes = byUser.get(l.userUuid());
+    if (codes != null) codes.remove(l.id());
+    byUrl.computeIfPresent(
+        urlKey(l.userUuid(), UrlCanonicalizer.hash(l.originalUrl())),
+        (k, same) -> {
+          same.remove(l.id());
+          return same.isEmpty() ? null : same;
+        });
+  }
+
+  private static String urlKey(String userUuid, long urlHash) {
+    return userUuid + '#' + Long.toHexString(urlHash);
+  }
+
+  private static void writeString(DataOutputStream out, String s) throws IOException {
+    byte[] b = s.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(b.length);
+    out.write(b);
+  }
+
+  private static String readString(DataInputStream in) throws IOException {
+    byte[] b = new byte[in.readInt()];
+    in.readFully(b);
+    return new String(b, StandardCharsets.UTF_8);
+  }
+}
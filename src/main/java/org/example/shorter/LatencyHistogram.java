@@ -0,0 +1,75 @@
+package org.example.shorter;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free log-linear latency histogram in nanoseconds, in the style of HdrHistogram: each power
+ * of two is split into 32 linear sub-buckets, so any recorded value is reported within ~3% and
+ * recording is one array increment. Covers the full positive {@code long} range.
+ */
+public final class LatencyHistogram {
+  private static final int SUB_BITS = 5;
+  private static final int SUB_COUNT = 1 << SUB_BITS;
+  private static final int BUCKETS = (64 - SUB_BITS) * SUB_COUNT;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final LongAdder count = new LongAdder();
+  private final LongAdder sum = new LongAdder();
+  private final AtomicLong max = new AtomicLong();
+
+  public void record(long nanos) {
+    long v = Math.max(0, nanos);
+    counts.incrementAndGet(index(v));
+    count.increment();
+    sum.add(v);
+    max.accumulateAndGet(v, Math::max);
+  }
+
+  /** Records the time elapsed since {@code startNanos} (a {@link System#nanoTime()} reading). */
+  public void recordSince(long startNanos) {
+    record(System.nanoTime() - startNanos);
+  }
+
+  public long count() {
+    return count.sum();
+  }
+
+  public long sumNanos() {
+    return sum.sum();
+  }
+
+  public long maxNanos() {
+    return max.get();
+  }
+
+  /** Upper bound of the bucket holding the given quantile (0..1); 0 when nothing was recorded. */
+  public long quantileNanos(double q) {
+    long total = 0;
+    long[] snapshot = new long[BUCKETS];
+    for (int i = 0; i < BUCKETS; i++) total += snapshot[i] = counts.get(i);
+    if (total == 0) return 0;
+    long rank = Math.max(1, (long) Math.ceil(q * total));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += snapshot[i];
+      if (seen >= rank) return Math.min(upperBound(i), max.get());
+    }
+    return max.get();
+  }
+
+  static int index(long v) {
+    int msb = 63 - Long.numberOfLeadingZeros(v);
+    if (msb < SUB_BITS) return (int) v;
+    int shift = msb - SUB_BITS;
+    return ((shift + 1) << SUB_BITS) + (int) ((v >>> shift) - SUB_COUNT);
+  }
+
+  static long upperBound(int index) {
+    if (index < SUB_COUNT) return index;
+    int shift = (index >>> SUB_BITS) - 1;
+    long lower = (long) (SUB_COUNT + (index & (SUB_COUNT - 1))) << shift;
+    return lower + (1L << shift) - 1;
+  }
+}
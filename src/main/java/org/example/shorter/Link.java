@@ -1,6 +1,6 @@
 package org.example.shorter;
 
-public class Link {
+public class Link implements LinkView {
   public long id;
   public String userUuid;
   public String code;
@@ -11,7 +11,53 @@ public class Link {
   public int clicks;
   public int active; // 1/0
 
+  @Override
+  public long id() {
+    return id;
+  }
+
+  @Override
+  public String userUuid() {
+    return userUuid;
+  }
+
+  @Override
+  public String code() {
+    return code;
+  }
+
+  @Override
+  public String originalUrl() {
+    return originalUrl;
+  }
+
+  @Override
+  public long createdAtMs() {
+    return createdAtMs;
+  }
+
+  @Override
+  public long expiresAtMs() {
+    return expiresAtMs;
+  }
+
+  @Override
+  public int maxClicks() {
+    return maxClicks;
+  }
+
+  @Override
+  public int clicks() {
+    return clicks;
+  }
+
+  @Override
   public boolean isActive() {
     return active == 1;
   }
+
+  @Override
+  public Link toLink() {
+    return this;
+  }
 }
@@ -0,0 +1,366 @@
+package org.example.shorter;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Streaming export and import of all links, as NDJSON (one Gson-encoded link per line) or as a
+ * length-prefixed binary file. Exports split the id space into ranges that are read and encoded in
+ * parallel and written in order; stores without range reads are exported in one sequential pass.
+ * Imports decode and insert batches in parallel. Only the chunks in flight are held in memory, so
+ * the table size does not matter.
+ *
+ * <p>Binary layout: magic "LNKX", version, then records of {@code int length, body} and a trailer
+ * of {@code int -1, long rowCount} so a truncated file is detected.
+ */
+public final class LinkArchive {
+  public enum Format {
+    NDJSON,
+    BINARY;
+
+    /** NDJSON for .ndjson/.jsonl/.json files, binary otherwise. */
+    public static Format forFile(Path file) {
+      String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+      return name.endsWith(".ndjson") || name.endsWith(".jsonl") || name.endsWith(".json")
+          ? NDJSON
+          : BINARY;
+    }
+  }
+
+  public static final class ImportResult {
+    public final long read;
+    public final long inserted;
+
+    ImportResult(long read, long inserted) {
+      this.read = read;
+      this.inserted = inserted;
+    }
+  }
+
+  private static final int MAGIC = 0x4C4E4B58; // "LNKX"
+  private static final int VERSION = 1;
+  private static final int END = -1;
+  private static final long MIN_CHUNK_IDS = 16_384;
+  private static final long MAX_CHUNKS = 512;
+  private static final int IMPORT_BATCH = 2_000;
+
+  private static final Gson GSON = new Gson();
+
+  private LinkArchive() {}
+
+  /** Writes every link of {@code store} to {@code file} (atomically) and returns the row count. */
+  public static long export(LinkStore store, Path file, Format format, int threads) {
+    long maxId = store.maxId();
+    long span = Math.max(MIN_CHUNK_IDS, maxId / MAX_CHUNKS + 1);
+    Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+    ExecutorService pool = Executors.newFixedThreadPool(threads, Threads.daemon("export"));
+    long rows = 0;
+    boolean complete = false;
+    try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16)) {
+      DataOutputStream data = new DataOutputStream(out);
+      if (format == Format.BINARY) {
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+      }
+      if (store.supportsRangeReads()) {
+        ArrayDeque<Future<Chunk>> inFlight = new ArrayDeque<>();
+        for (long from = 0; from < maxId; from += span) {
+          long after = from;
+          long to = Math.min(from + span, maxId);
+          inFlight.add(pool.submit(() -> encodeRange(store, after, to, format)));
+          if (inFlight.size() > threads) rows += inFlight.poll().get().writeTo(out);
+        }
+        while (!inFlight.isEmpty()) rows += inFlight.poll().get().writeTo(out);
+      } else {
+        // every range would be a full scan: read the store once, straight into the file
+        rows = writeRange(store, 0, maxId, format, out);
+      }
+      if (format == Format.BINARY) {
+        data.writeInt(END);
+        data.writeLong(rows);
+      }
+      complete = true;
+    } catch (IOException e) {
+      throw new UncheckedIOException("Export error: " + e.getMessage(), e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException r) throw r;
+      throw new IllegalStateException("Export error: " + e.getCause().getMessage(), e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Export interrupted", e);
+    } finally {
+      pool.shutdownNow();
+      if (!complete) deleteQuietly(tmp);
+    }
+    try {
+      Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Export error: " + e.getMessage(), e);
+    }
+    return rows;
+  }
+
+  /**
+   * Inserts the links of an export into {@code store}. The format is recognised from the file; rows
+   * whose code already exists are skipped, ids are assigned by the target store. Every inserted
+   * link is passed to {@code listener}.
+   */
+  public static ImportResult importFrom(
+      LinkStore store, Path file, int threads, LinkListener listener) {
+    ExecutorService pool = Executors.newFixedThreadPool(threads, Threads.daemon("import"));
+    // bounds the batches read ahead of the inserting workers
+    Semaphore window = new Semaphore(threads * 2);
+    AtomicLong inserted = new AtomicLong();
+    List<Future<?>> pending = new ArrayList<>();
+    long read = 0;
+    try (InputStream in = new BufferedInputStream(Files.newInputStream(file), 1 << 16)) {
+      in.mark(4);
+      byte[] head = in.readNBytes(4);
+      in.reset();
+      boolean binary = head.length == 4 && ByteBuffer.wrap(head).getInt() == MAGIC;
+      Batches batches = binary ? new BinaryBatches(in) : new JsonBatches(in);
+      List<Object> batch;
+      while (!(batch = batches.next()).isEmpty()) {
+        read += batch.size();
+        window.acquire();
+        List<Object> rows = batch;
+        pending.add(
+            pool.submit(
+                () -> {
+                  try {
+                    List<Link> links = new ArrayList<>(rows.size());
+                    for (Object row : rows) links.add(batches.decode(row));
+                    boolean[] ok = store.insertBatch(links);
+                    for (int i = 0; i < ok.length; i++) {
+                      if (!ok[i]) continue;
+                      inserted.incrementAndGet();
+                      listener.created(links.get(i));
+                    }
+                  } finally {
+                    window.release();
+                  }
+                  return null;
+                }));
+        // surfaces a failed batch early instead of reading the rest of the file
+        for (var it = pending.iterator(); it.hasNext(); ) {
+          Future<?> f = it.next();
+          if (!f.isDone()) continue;
+          f.get();
+          it.remove();
+        }
+      }
+      for (Future<?> f : pending) f.get();
+    } catch (EOFException e) {
+      throw new IllegalArgumentException("Truncated export file: " + file, e);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Import error: " + e.getMessage(), e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException r) throw r;
+      throw new IllegalStateException("Import error: " + e.getCause().getMessage(), e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Import interrupted", e);
+    } finally {
+      pool.shutdownNow();
+    }
+    return new ImportResult(read, inserted.get());
+  }
+
+  private static void deleteQuietly(Path file) {
+    try {
+      Files.deleteIfExists(file);
+    } catch (IOException ignored) {
+    }
+  }
+
+  private static final class Chunk {
+    final byte[] bytes;
+    final int rows;
+
+    Chunk(byte[] bytes, int rows) {
+      this.bytes = bytes;
+      this.rows = rows;
+    }
+
+    int writeTo(OutputStream out) throws IOException {
+      out.write(bytes);
+      return rows;
+    }
+  }
+
+  private static Chunk encodeRange(LinkStore store, long afterId, long toId, Format format) {
+    ByteArrayOutputStream buf = new ByteArrayOutputStream(1 << 16);
+    long rows = writeRange(store, afterId, toId, format, buf);
+    return new Chunk(buf.toByteArray(), (int) rows);
+  }
+
+  private static long writeRange(
+      LinkStore store, long afterId, long toId, Format format, OutputStream sink) {
+    DataOutputStream out = new DataOutputStream(sink);
+    ByteArrayOutputStream record = new ByteArrayOutputStream(256);
+    DataOutputStream body = new DataOutputStream(record);
+    long[] rows = {0};
+    store.forEachInIdRange(
+        afterId,
+        toId,
+        l -> {
+          try {
+            if (format == Format.NDJSON) {
+              out.write(GSON.toJson(l.toLink()).getBytes(StandardCharsets.UTF_8));
+              out.write('\n');
+            } else {
+              record.reset();
+              writeBody(body, l);
+              out.writeInt(record.size());
+              record.writeTo(out);
+            }
+            rows[0]++;
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        });
+    return rows[0];
+  }
+
+  private static void writeBody(DataOutputStream out, LinkView l) throws IOException {
+    out.writeLong(l.id());
+    writeString(out, l.userUuid());
+    writeString(out, l.code());
+    writeString(out, l.originalUrl());
+    out.writeLong(l.createdAtMs());
+    out.writeLong(l.expiresAtMs());
+    out.writeInt(l.maxClicks());
+    out.writeInt(l.clicks());
+    out.writeByte(l.isActive() ? 1 : 0);
+  }
+
+  private static Link readBody(byte[] body) throws IOException {
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+    Link l = new Link();
+    l.id = in.readLong();
+    l.userUuid = readString(in);
+    l.code = readString(in);
+    l.originalUrl = readString(in);
+    l.createdAtMs = in.readLong();
+    l.expiresAtMs = in.readLong();
+    l.maxClicks = in.readInt();
+    l.clicks = in.readInt();
+    l.active = in.readByte();
+    return l;
+  }
+
+  private static void writeString(DataOutputStream out, String s) throws IOException {
+    byte[] b = s.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(b.length);
+    out.write(b);
+  }
+
+  private static String readString(DataInputStream in) throws IOException {
+    byte[] b = new byte[in.readInt()];
+    in.readFully(b);
+    return new String(b, StandardCharsets.UTF_8);
+  }
+
+  /** Splits the input into raw rows on the reading thread; decoding runs on the workers. */
+  private interface Batches {
+    /** The next rows, empty at the end of the input. */
+    List<Object> next() throws IOException;
+
+    Link decode(Object row) throws IOException;
+  }
+
+  private static final class BinaryBatches implements Batches {
+    private final DataInputStream in;
+    private long rows;
+    private boolean done;
+
+    BinaryBatches(InputStream in) throws IOException {
+      this.in = new DataInputStream(in);
+      if (this.in.readInt() != MAGIC || this.in.readInt() != VERSION) {
+        throw new IOException("unsupported export version");
+      }
+    }
+
+    @Override
+    public List<Object> next() throws IOException {
+      List<Object> out = new ArrayList<>();
+      while (!done && out.size() < IMPORT_BATCH) {
+        int len = in.readInt();
+        if (len == END) {
+          if (in.readLong() != rows) throw new IOException("row count does not match trailer");
+          done = true;
+          break;
+        }
+        byte[] body = new byte[len];
+        in.readFully(body);
+        out.add(body);
+        rows++;
+      }
+      return out;
+    }
+
+    @Override
+    public Link decode(Object row) throws IOException {
+      return readBody((byte[]) row);
+    }
+  }
+
+  private static final class JsonBatches implements Batches {
+    private final BufferedReader in;
+
+    JsonBatches(InputStream in) {
+      this.in = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 1 << 16);
+    }
+
+    @Override
+    public List<Object> next() throws IOException {
+      List<Object> out = new ArrayList<>();
+      String line;
+      while (out.size() < IMPORT_BATCH && (line = in.readLine()) != null) {
+        if (!line.isBlank()) out.add(line);
+      }
+      return out;
+    }
+
+    @Override
+    public Link decode(Object row) {
+      try {
+        Link l = GSON.fromJson((String) row, Link.class);
+        if (l == null || l.code == null || l.userUuid == null || l.originalUrl == null) {
+          throw new IllegalArgumentException("Incomplete link: " + row);
+        }
+        return l;
+      } catch (JsonParseException e) {
+        throw new IllegalArgumentException("Invalid NDJSON line: " + e.getMessage(), e);
+      }
+    }
+  }
+}
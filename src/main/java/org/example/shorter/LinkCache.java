@@ -0,0 +1,132 @@
+package org.example.shorter;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded read-through cache of resolved links keyed by code, split into LRU segments to keep lock
+ * contention low. Dead codes are cached negatively so repeated hits never reach the database.
+ */
+public class LinkCache {
+
+  public static final class Entry {
+    public final LinkView link;
+    public final OpenResult.Status rejection;
+    final long expiresAtMs;
+
+    private Entry(LinkView link, OpenResult.Status rejection, long expiresAtMs) {
+      this.link = link;
+      this.rejection = rejection;
+      this.expiresAtMs = expiresAtMs;
+    }
+
+    /**
+     * A cached NOT_FOUND or LIMIT_REACHED lapses at its expiry: the code may have been created or
+     * its limit raised since. An expiry is final.
+     */
+    public boolean isLapsed(long nowMs) {
+      return rejection != null && rejection != OpenResult.Status.EXPIRED && expiresAtMs <= nowMs;
+    }
+  }
+
+  private static final int SEGMENTS = 16;
+
+  private final Segment[] segments;
+
+  public LinkCache(int capacity) {
+    int n = capacity <= 0 ? 0 : Math.min(SEGMENTS, capacity);
+    segments = new Segment[n];
+    for (int i = 0; i < n; i++) {
+      segments[i] = new Segment(capacity / n + (i < capacity % n ? 1 : 0));
+    }
+  }
+
+  public boolean isEnabled() {
+    return segments.length > 0;
+  }
+
+  public Entry get(String code) {
+    if (!isEnabled()) return null;
+    Segment s = segment(code);
+    synchronized (s) {
+      return s.get(code);
+    }
+  }
+
+  /** Stores the link packed, so it is neither shared with nor mutated by the caller. */
+  public void put(LinkView link) {
+    store(link.code(), new Entry(PackedLink.of(link), null, link.expiresAtMs()));
+  }
+
+  public void reject(String code, OpenResult.Status rejection, long expiresAtMs) {
+    store(code, new Entry(null, rejection, expiresAtMs));
+  }
+
+  public void invalidate(String code) {
+    if (!isEnabled()) return;
+    Segment s = segment(code);
+    synchronized (s) {
+      s.remove(code);
+    }
+  }
+
+  /** Drops every entry whose link has expired by {@code nowMs}; called after cleanup sweeps. */
+  public void evictExpired(long nowMs) {
+    for (Segment s : segments) {
+      synchronized (s) {
+        Iterator<Entry> it = s.values().iterator();
+        while (it.hasNext()) {
+          if (it.next().expiresAtMs <= nowMs) it.remove();
+        }
+      }
+    }
+  }
+
+  public void clear() {
+    for (Segment s : segments) {
+      synchronized (s) {
+        s.clear();
+      }
+    }
+  }
+
+  public int size() {
+    int n = 0;
+    for (Segment s : segments) {
+      synchronized (s) {
+        n += s.size();
+      }
+    }
+    return n;
+  }
+
+  private void store(String code, Entry e) {
+    if (!isEnabled()) return;
+    Segment s = segment(code);
+    synchronized (s) {
+      s.put(code, e);
+    }
+  }
+
+  private Segment segment(String code) {
+    int h = code.hashCode();
+    h ^= (h >>> 16);
+    return segments[Math.floorMod(h, segments.length)];
+  }
+
+  @SuppressWarnings("serial")
+  private static final class Segment extends LinkedHashMap<String, Entry> {
+    private final int capacity;
+
+    Segment(int capacity) {
+      super(16, 0.75f, true);
+      this.capacity = capacity;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+      return size() > capacity;
+    }
+  }
+}
@@ -0,0 +1,196 @@
+package org.example.shorter;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * HTTP front end over {@link LinkService}.
+ *
+ * <pre>
+ *   GET    /{code}                  302 to the target, 404 unknown, 410 expired/disabled
+ *   POST   /api/links               {"url": "...", "limit": 5}  -> 201
+ *   GET    /api/links/{code}        link info (owner only)
+ *   PUT    /api/links/{code}/limit  {"limit": 10}              -> 204
+ *   DELETE /api/links/{code}                                   -> 204
+ * </pre>
+ *
+ * The caller is identified by the {@code X-User-Id} header (a UUID), like the console user file.
+ */
+public class LinkHttpServer implements AutoCloseable {
+  private static final String API = "/api/links";
+
+  private final LinkService service;
+  private final HttpServer server;
+  private final ExecutorService executor;
+  private final Gson gson = new Gson();
+
+  public LinkHttpServer(LinkService service, int port, int fallbackThreads) throws IOException {
+    this.service = service;
+    this.server = HttpServer.create(new InetSocketAddress(port), 0);
+    this.executor = Threads.perTaskExecutor("http", fallbackThreads);
+    server.setExecutor(executor);
+    server.createContext("/", this::handle);
+  }
+
+  public void start() {
+    server.start();
+  }
+
+  public int port() {
+    return server.getAddress().getPort();
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+    executor.shutdown();
+  }
+
+  private void handle(HttpExchange ex) throws IOException {
+    try {
+      String path = ex.getRequestURI().getPath();
+      String method = ex.getRequestMethod();
+      if (path.equals(API) || path.startsWith(API + "/")) {
+        api(ex, method, path.substring(API.length()));
+      } else if (method.equals("GET")) {
+        redirect(ex, path.substring(1));
+      } else {
+        error(ex, 405, "method not allowed");
+      }
+    } catch (IllegalArgumentException e) {
+      error(ex, 400, e.getMessage());
+    } catch (Exception e) {
+      error(ex, 500, e.getMessage() == null ? "internal error" : e.getMessage());
+    } finally {
+      ex.close();
+    }
+  }
+
+  private void redirect(HttpExchange ex, String code) throws IOException {
+    if (code.isEmpty() || code.contains("/")) {
+      error(ex, 404, "NOT FOUND");
+      return;
+    }
+    OpenResult r = service.redirect(code);
+    switch (r.status) {
+      case NOT_FOUND -> error(ex, 404, "NOT FOUND");
+      case EXPIRED -> error(ex, 410, "EXPIRED");
+      case LIMIT_REACHED -> error(ex, 410, "DISABLED (LIMIT REACHED)");
+      default -> {
+        ex.getResponseHeaders().set("Location", r.url());
+        ex.getResponseHeaders().set("Cache-Control", "no-store");
+        ex.sendResponseHeaders(302, -1);
+      }
+    }
+  }
+
+  private void api(HttpExchange ex, String method, String rest) throws IOException {
+    UUID user = user(ex);
+    if (user == null) {
+      error(ex, 401, "X-User-Id header with a UUID is required");
+      return;
+    }
+
+    if (rest.isEmpty() || rest.equals("/")) {
+      if (!method.equals("POST")) {
+        error(ex, 405, "method not allowed");
+        return;
+      }
+      JsonObject body = body(ex);
+      String url = body.has("url") ? body.get("url").getAsString() : null;
+      Integer limit = body.has("limit") ? body.get("limit").getAsInt() : null;
+      json(ex, 201, view(service.create(user, url, limit)));
+      return;
+    }
+
+    String[] parts = rest.substring(1).split("/");
+    String code = parts[0];
+    if (parts.length == 2 && parts[1].equals("limit") && method.equals("PUT")) {
+      JsonObject body = body(ex);
+      if (!body.has("limit")) throw new IllegalArgumentException("limit is required");
+      status(ex, service.setLimit(user, code, body.get("limit").getAsInt()));
+    } else if (parts.length == 1 && method.equals("GET")) {
+      Optional<Link> link = service.find(code);
+      if (link.isEmpty()) {
+        error(ex, 404, "NOT FOUND");
+      } else if (!link.get().userUuid.equals(user.toString())) {
+        error(ex, 403, "FORBIDDEN (not owner)");
+      } else {
+        json(ex, 200, view(link.get()));
+      }
+    } else if (parts.length == 1 && method.equals("DELETE")) {
+      status(ex, service.delete(user, code));
+    } else {
+      error(ex, 404, "no such endpoint");
+    }
+  }
+
+  // setLimit/delete report "OK" or a message; the owner check is folded into the update
+  private void status(HttpExchange ex, String result) throws IOException {
+    if (result.equals("OK")) {
+      ex.sendResponseHeaders(204, -1);
+    } else if (result.startsWith("NOT FOUND")) {
+      error(ex, 404, result);
+    } else {
+      error(ex, 400, result);
+    }
+  }
+
+  private static UUID user(HttpExchange ex) {
+    String h = ex.getRequestHeaders().getFirst("X-User-Id");
+    if (h == null) return null;
+    try {
+      return UUID.fromString(h.trim());
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  private JsonObject body(HttpExchange ex) throws IOException {
+    try (Reader r = new InputStreamReader(ex.getRequestBody(), StandardCharsets.UTF_8)) {
+      JsonObject o = gson.fromJson(r, JsonObject.class);
+      return o == null ? new JsonObject() : o;
+    } catch (JsonParseException | IllegalStateException | UnsupportedOperationException e) {
+      throw new IllegalArgumentException("invalid JSON body");
+    }
+  }
+
+  private static Map<String, Object> view(Link l) {
+    Map<String, Object> m = new LinkedHashMap<>();
+    m.put("code", l.code);
+    m.put("url", l.originalUrl);
+    m.put("clicks", l.clicks);
+    m.put("maxClicks", l.maxClicks);
+    m.put("active", l.isActive());
+    m.put("createdMs", l.createdAtMs);
+    m.put("expiresMs", l.expiresAtMs);
+    return m;
+  }
+
+  private void error(HttpExchange ex, int status, String message) throws IOException {
+    json(ex, status, Map.of("error", message));
+  }
+
+  private void json(HttpExchange ex, int status, Object body) throws IOException {
+    byte[] bytes = gson.toJson(body).getBytes(StandardCharsets.UTF_8);
+    ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+    ex.sendResponseHeaders(status, bytes.length);
+    try (OutputStream out = ex.getResponseBody()) {
+      out.write(bytes);
+    }
+  }
+}
@@ -0,0 +1,12 @@
+package org.example.shorter;
+
+/** Callbacks from {@link LinkService} for components that mirror link state in memory. */
+public interface LinkListener {
+
+  default void created(Link link) {}
+
+  default void deleted(String code) {}
+
+  /** A redirect was granted; called on the request thread, so it must not block. */
+  default void clicked(String code, long atMs) {}
+}
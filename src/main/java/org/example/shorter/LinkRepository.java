@@ -2,137 +2,548 @@ package org.example.shorter;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
-public class LinkRepository {
-  private final String jdbcUrl;
+public class LinkRepository implements LinkStore {
+  private static final int IN_CHUNK = 500;
+  private static final int LIST_FETCH_SIZE = 256;
+  private static final int BACKFILL_BATCH = 5_000;
+  private static final String URL_BACKFILL_DONE = "url_backfill_done";
+
+  private final ConnectionPool pool;
 
   public LinkRepository(String dbPath) {
-    this.jdbcUrl = "jdbc:sqlite:" + dbPath;
-    init();
+    this(dbPath, DbConfig.defaults());
   }
 
-  private Connection conn() throws SQLException {
-    return DriverManager.getConnection(jdbcUrl);
+  public LinkRepository(String dbPath, DbConfig db) {
+    this.pool = new ConnectionPool("jdbc:sqlite:" + dbPath, db);
+    init();
   }
 
   private void init() {
+    try {
+      SchemaMigrations.migrate(pool);
+      backfillUrlColumns();
+    } catch (SQLException e) {
+      throw new RuntimeException("DB init error: " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Brings rows written before migrations 5 and 6 up to date in short write transactions: fills
+   * {@code url_hash} and moves the URL from {@code original_url} into {@code url_blob}. The file
+   * only shrinks on the next {@code VACUUM}. A marker row in {@code meta} records that it finished,
+   * so later starts skip the scan; an interrupted backfill resumes on the next start.
+   */
+  private void backfillUrlColumns() throws SQLException {
+    boolean done =
+        pool.read(
+            c -> {
+              PreparedStatement ps = c.prepare("SELECT 1 FROM meta WHERE key = ?");
+              ps.setString(1, URL_BACKFILL_DONE);
+              try (ResultSet rs = ps.executeQuery()) {
+                return rs.next();
+              }
+            });
+    if (done) return;
+    long afterId = 0;
+    while (true) {
+      long from = afterId;
+      List<Object[]> rows =
+          pool.read(
+              c -> {
+                PreparedStatement ps =
+                    c.prepare(
+                        "SELECT id, original_url, url_blob FROM links"
+                            + " WHERE id > ? AND (url_hash IS NULL OR url_blob IS NULL)"
+                            + " ORDER BY id LIMIT ?");
+                ps.setLong(1, from);
+                ps.setInt(2, BACKFILL_BATCH);
+                List<Object[]> out = new ArrayList<>();
+                try (ResultSet rs = ps.executeQuery()) {
+                  while (rs.next()) {
+                    byte[] blob = rs.getBytes(3);
+                    String url = blob != null ? UrlCodec.decode(blob) : rs.getString(2);
+                    out.add(new Object[] {rs.getLong(1), url});
+                  }
+                }
+                return out;
+              });
+      if (rows.isEmpty()) break;
+      pool.transaction(
+          c -> {
+            PreparedStatement ps =
+                c.prepare(
+                    "UPDATE links SET url_hash = ?, url_blob = ?, original_url = '' WHERE id = ?");
+            for (Object[] row : rows) {
+              ps.setLong(1, UrlCanonicalizer.hash((String) row[1]));
+              ps.setBytes(2, UrlCodec.encode((String) row[1]));
+              ps.setLong(3, (Long) row[0]);
+              ps.addBatch();
+            }
+            ps.executeBatch();
+            return null;
+          });
+      afterId = (Long) rows.get(rows.size() - 1)[0];
+    }
+    pool.write(
+        c -> {
+          PreparedStatement ps = c.prepare("INSERT OR IGNORE INTO meta(key, value) VALUES(?, '1')");
+          ps.setString(1, URL_BACKFILL_DONE);
+          return ps.executeUpdate();
+        });
+  }
+
+  @Override
+  public Link insert(Link l) {
     String sql =
         """
-        CREATE TABLE IF NOT EXISTS links (
-          id INTEGER PRIMARY KEY AUTOINCREMENT,
-          user_uuid TEXT NOT NULL,
-          code TEXT NOT NULL UNIQUE,
-          original_url TEXT NOT NULL,
-          created_at_ms INTEGER NOT NULL,
-          expires_at_ms INTEGER NOT NULL,
-          max_clicks INTEGER NOT NULL,
-          clicks INTEGER NOT NULL,
-          active INTEGER NOT NULL
-        );
+        INSERT INTO links(user_uuid, code, original_url, url_blob, created_at_ms, expires_at_ms, max_clicks, clicks, active, url_hash)
+        VALUES(?,?,'',?,?,?,?,?,?,?)
         """;
-    try (Connection c = conn();
-        Statement st = c.createStatement()) {
-      st.execute(sql);
+    try {
+      return pool.write(
+          c -> {
+            PreparedStatement ps = c.prepareWithKeys(sql);
+            bindInsert(ps, l);
+            ps.executeUpdate();
+            try (ResultSet rs = ps.getGeneratedKeys()) {
+              if (rs.next()) l.id = rs.getLong(1);
+            }
+            return l;
+          });
     } catch (SQLException e) {
-      throw new RuntimeException("DB init error: " + e.getMessage(), e);
+      throw new RuntimeException("DB insert error: " + e.getMessage(), e);
     }
   }
 
-  public Link insert(Link l) {
+  @Override
+  public boolean tryInsert(Link l) {
+    String sql =
+        """
+        INSERT OR IGNORE INTO links(user_uuid, code, original_url, url_blob, created_at_ms, expires_at_ms, max_clicks, clicks, active, url_hash)
+        VALUES(?,?,'',?,?,?,?,?,?,?)
+        RETURNING id
+        """;
+    try {
+      return pool.write(
+          c -> {
+            PreparedStatement ps = c.prepare(sql);
+            bindInsert(ps, l);
+            try (ResultSet rs = ps.executeQuery()) {
+              if (!rs.next()) return false;
+              l.id = rs.getLong(1);
+              return true;
+            }
+          });
+    } catch (SQLException e) {
+      throw new RuntimeException("DB insert error: " + e.getMessage(), e);
+    }
+  }
+
+  /** Binds the columns of the insert statements; the URL is stored encoded, in {@code url_blob}. */
+  private static void bindInsert(PreparedStatement ps, Link l) throws SQLException {
+    ps.setString(1, l.userUuid);
+    ps.setString(2, l.code);
+    ps.setBytes(3, UrlCodec.encode(l.originalUrl));
+    ps.setLong(4, l.createdAtMs);
+    ps.setLong(5, l.expiresAtMs);
+    ps.setInt(6, l.maxClicks);
+    ps.setInt(7, l.clicks);
+    ps.setInt(8, l.active);
+    ps.setLong(9, UrlCanonicalizer.hash(l.originalUrl));
+  }
+
+  @Override
+  public long leaseCodeBlock(int size) {
+    try {
+      return pool.transaction(
+          c -> {
+            PreparedStatement init =
+                c.prepare(
+                    "INSERT OR IGNORE INTO code_sequence(name, next_value) VALUES('links', 0)");
+            init.executeUpdate();
+            PreparedStatement ps =
+                c.prepare(
+                    "UPDATE code_sequence SET next_value = next_value + ? WHERE name = 'links'"
+                        + " RETURNING next_value");
+            ps.setInt(1, size);
+            try (ResultSet rs = ps.executeQuery()) {
+              rs.next();
+              return rs.getLong(1) - size;
+            }
+          });
+    } catch (SQLException e) {
+      throw new RuntimeException("DB sequence error: " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Inserts all rows in one transaction through a JDBC batch. Rows whose code is already taken are
+   * skipped ({@code INSERT OR IGNORE}); the result says per row whether it was inserted, and
+   * inserted rows get their ids.
+   */
+  @Override
+  public boolean[] insertBatch(List<Link> links) {
     String sql =
         """
-        INSERT INTO links(user_uuid, code, original_url, created_at_ms, expires_at_ms, max_clicks, clicks, active)
-        VALUES(?,?,?,?,?,?,?,?)
+        INSERT OR IGNORE INTO links(user_uuid, code, original_url, url_blob, created_at_ms, expires_at_ms, max_clicks, clicks, active, url_hash)
+        VALUES(?,?,'',?,?,?,?,?,?,?)
         """;
-    try (Connection c = conn();
-        PreparedStatement ps = c.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-      ps.setString(1, l.userUuid);
-      ps.setString(2, l.code);
-      ps.setString(3, l.originalUrl);
-      ps.setLong(4, l.createdAtMs);
-      ps.setLong(5, l.expiresAtMs);
-      ps.setInt(6, l.maxClicks);
-      ps.setInt(7, l.clicks);
-      ps.setInt(8, l.active);
-      ps.executeUpdate();
-      try (ResultSet rs = ps.getGeneratedKeys()) {
-        if (rs.next()) l.id = rs.getLong(1);
-      }
-      return l;
+    boolean[] inserted = new boolean[links.size()];
+    if (links.isEmpty()) return inserted;
+    try {
+      return pool.transaction(
+          c -> {
+            PreparedStatement ps = c.prepare(sql);
+            for (Link l : links) {
+              bindInsert(ps, l);
+              ps.addBatch();
+            }
+            int[] counts = ps.executeBatch();
+
+            long lastId;
+            try (Statement st = c.connection().createStatement();
+                ResultSet rs = st.executeQuery("SELECT last_insert_rowid()")) {
+              lastId = rs.next() ? rs.getLong(1) : 0;
+            }
+            // AUTOINCREMENT ids are consecutive within one writer transaction
+            for (int i = counts.length - 1; i >= 0; i--) {
+              inserted[i] = counts[i] > 0;
+              if (inserted[i]) links.get(i).id = lastId--;
+            }
+            return inserted;
+          });
     } catch (SQLException e) {
       throw new RuntimeException("DB insert error: " + e.getMessage(), e);
     }
   }
 
+  @Override
+  public Set<String> existingCodes(Collection<String> codes) {
+    List<String> all = new ArrayList<>(codes);
+    Set<String> out = new HashSet<>();
+    try {
+      pool.read(
+          c -> {
+            for (int from = 0; from < all.size(); from += IN_CHUNK) {
+              List<String> chunk = all.subList(from, Math.min(all.size(), from + IN_CHUNK));
+              String sql =
+                  "SELECT code FROM links WHERE code IN ("
+                      + String.join(",", Collections.nCopies(chunk.size(), "?"))
+                      + ")";
+              PreparedStatement ps = c.prepare(sql);
+              for (int i = 0; i < chunk.size(); i++) ps.setString(i + 1, chunk.get(i));
+              try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) out.add(rs.getString(1));
+              }
+            }
+            return null;
+          });
+      return out;
+    } catch (SQLException e) {
+      throw new RuntimeException("DB query error: " + e.getMessage(), e);
+    }
+  }
+
+  @Override
   public Optional<Link> findByCode(String code) {
-    String sql = "SELECT * FROM links WHERE code = ?";
-    try (Connection c = conn();
-        PreparedStatement ps = c.prepareStatement(sql)) {
-      ps.setString(1, code);
-      try (ResultSet rs = ps.executeQuery()) {
-        if (!rs.next()) return Optional.empty();
-        return Optional.of(map(rs));
-      }
+    try {
+      return pool.read(c -> findByCodeTx(c, code));
     } catch (SQLException e) {
       throw new RuntimeException("DB query error: " + e.getMessage(), e);
     }
   }
 
-  public List<Link> listByUser(String userUuid) {
-    String sql = "SELECT * FROM links WHERE user_uuid = ? ORDER BY id DESC";
-    List<Link> out = new ArrayList<>();
-    try (Connection c = conn();
-        PreparedStatement ps = c.prepareStatement(sql)) {
-      ps.setString(1, userUuid);
-      try (ResultSet rs = ps.executeQuery()) {
-        while (rs.next()) out.add(map(rs));
-      }
-      return out;
+  @Override
+  public void forEachByUser(
+      String userUuid,
+      ListFilter filter,
+      long nowMs,
+      long afterId,
+      int limit,
+      Consumer<? super LinkView> sink) {
+    if (limit <= 0) return;
+    // walks idx_links_user_id backwards from the cursor; LIMIT stops the scan early
+    String sql =
+        "SELECT * FROM links WHERE user_uuid = ? AND id < ?"
+            + switch (filter) {
+              case ALL -> "";
+              case ACTIVE -> " AND active = 1 AND expires_at_ms > ?";
+              case EXPIRED -> " AND expires_at_ms <= ?";
+            }
+            + " ORDER BY id DESC LIMIT ?";
+    try {
+      pool.read(
+          c -> {
+            PreparedStatement ps = c.prepare(sql);
+            int n = 1;
+            ps.setString(n++, userUuid);
+            ps.setLong(n++, afterId > 0 ? afterId : Long.MAX_VALUE);
+            if (filter != ListFilter.ALL) ps.setLong(n++, nowMs);
+            ps.setInt(n, limit);
+            ps.setFetchSize(Math.min(limit, LIST_FETCH_SIZE));
+            try (ResultSet rs = ps.executeQuery()) {
+              while (rs.next()) sink.accept(map(rs));
+            }
+            return null;
+          });
     } catch (SQLException e) {
       throw new RuntimeException("DB list error: " + e.getMessage(), e);
     }
   }
 
+  /**
+   * Looks the canonical URLs up in {@code idx_links_user_url}; hash collisions are filtered by
+   * comparing the canonical form of each candidate.
+   */
+  @Override
+  public Map<String, Link> findLiveByUrls(
+      String userUuid, Collection<String> canonicalUrls, int maxClicks, long nowMs) {
+    Map<Long, List<String>> byHash = new HashMap<>();
+    for (String url : canonicalUrls) {
+      byHash.computeIfAbsent(UrlCanonicalizer.hash(url), k -> new ArrayList<>(1)).add(url);
+    }
+    List<Long> hashes = new ArrayList<>(byHash.keySet());
+    Map<String, Link> out = new HashMap<>();
+    try {
+      pool.read(
+          c -> {
+            for (int from = 0; from < hashes.size(); from += IN_CHUNK) {
+              List<Long> chunk = hashes.subList(from, Math.min(hashes.size(), from + IN_CHUNK));
+              String sql =
+                  "SELECT * FROM links WHERE user_uuid = ? AND url_hash IN ("
+                      + String.join(",", Collections.nCopies(chunk.size(), "?"))
+                      + ") AND max_clicks = ? AND active = 1 AND expires_at_ms > ? ORDER BY id";
+              PreparedStatement ps = c.prepare(sql);
+              int n = 1;
+              ps.setString(n++, userUuid);
+              for (long h : chunk) ps.setLong(n++, h);
+              ps.setInt(n++, maxClicks);
+              ps.setLong(n, nowMs);
+              try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                  Link l = map(rs);
+                  String canonical = UrlCanonicalizer.canonical(l.originalUrl);
+                  // ascending ids: the newest live link wins
+                  if (byHash.get(rs.getLong("url_hash")).contains(canonical)) {
+                    out.put(canonical, l);
+                  }
+                }
+              }
+            }
+            return null;
+          });
+      return out;
+    } catch (SQLException e) {
+      throw new RuntimeException("DB query error: " + e.getMessage(), e);
+    }
+  }
+
+  @Override
+  public long maxId() {
+    try {
+      return pool.read(
+          c -> {
+            try (ResultSet rs =
+                c.prepare("SELECT COALESCE(MAX(id), 0) FROM links").executeQuery()) {
+              return rs.next() ? rs.getLong(1) : 0L;
+            }
+          });
+    } catch (SQLException e) {
+      throw new RuntimeException("DB query error: " + e.getMessage(), e);
+    }
+  }
+
+  @Override
+  public void forEachInIdRange(long afterId, long toId, Consumer<? super LinkView> sink) {
+    String sql = "SELECT * FROM links WHERE id > ? AND id <= ? ORDER BY id";
+    try {
+      pool.read(
+          c -> {
+            PreparedStatement ps = c.prepare(sql);
+            ps.setLong(1, afterId);
+            ps.setLong(2, toId);
+            ps.setFetchSize(1000);
+            try (ResultSet rs = ps.executeQuery()) {
+              while (rs.next()) sink.accept(map(rs));
+            }
+            return null;
+          });
+    } catch (SQLException e) {
+      throw new RuntimeException("DB query error: " + e.getMessage(), e);
+    }
+  }
+
+  @Override
   public boolean deleteByCodeAndUser(String code, String userUuid) {
     String sql = "DELETE FROM links WHERE code = ? AND user_uuid = ?";
-    try (Connection c = conn();
-        PreparedStatement ps = c.prepareStatement(sql)) {
-      ps.setString(1, code);
-      ps.setString(2, userUuid);
-      return ps.executeUpdate() > 0;
+    try {
+      return pool.write(
+          c -> {
+            PreparedStatement ps = c.prepare(sql);
+            ps.setString(1, code);
+            ps.setString(2, userUuid);
+            return ps.executeUpdate() > 0;
+          });
     } catch (SQLException e) {
       throw new RuntimeException("DB delete error: " + e.getMessage(), e);
     }
   }
 
+  @Override
   public boolean updateLimit(String code, String userUuid, int newLimit) {
     String sql = "UPDATE links SET max_clicks = ? WHERE code = ? AND user_uuid = ?";
-    try (Connection c = conn();
-        PreparedStatement ps = c.prepareStatement(sql)) {
-      ps.setInt(1, newLimit);
-      ps.setString(2, code);
-      ps.setString(3, userUuid);
-      return ps.executeUpdate() > 0;
+    try {
+      return pool.write(
+          c -> {
+            PreparedStatement ps = c.prepare(sql);
+            ps.setInt(1, newLimit);
+            ps.setString(2, code);
+            ps.setString(3, userUuid);
+            return ps.executeUpdate() > 0;
+          });
     } catch (SQLException e) {
       throw new RuntimeException("DB update limit error: " + e.getMessage(), e);
     }
   }
 
+  @Override
   public int deleteExpired(long nowMs) {
     String sql = "DELETE FROM links WHERE expires_at_ms <= ?";
-    try (Connection c = conn();
-        PreparedStatement ps = c.prepareStatement(sql)) {
-      ps.setLong(1, nowMs);
-      return ps.executeUpdate();
+    try {
+      return pool.write(
+          c -> {
+            PreparedStatement ps = c.prepare(sql);
+            ps.setLong(1, nowMs);
+            return ps.executeUpdate();
+          });
+    } catch (SQLException e) {
+      throw new RuntimeException("DB cleanup error: " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Deletes at most {@code limit} expired rows, oldest expiry first, and returns their codes. Keeps
+   * each write transaction short so redirects are not blocked behind a mass expiry.
+   */
+  @Override
+  public List<String> deleteExpiredBatch(long nowMs, int limit) {
+    String sql =
+        """
+        DELETE FROM links
+         WHERE id IN (SELECT id FROM links WHERE expires_at_ms <= ? ORDER BY expires_at_ms LIMIT ?)
+        RETURNING code
+        """;
+    try {
+      return pool.write(
+          c -> {
+            List<String> codes = new ArrayList<>();
+            PreparedStatement ps = c.prepare(sql);
+            ps.setLong(1, nowMs);
+            ps.setInt(2, limit);
+            try (ResultSet rs = ps.executeQuery()) {
+              while (rs.next()) codes.add(rs.getString(1));
+            }
+            return codes;
+          });
+    } catch (SQLException e) {
+      throw new RuntimeException("DB cleanup error: " + e.getMessage(), e);
+    }
+  }
+
+  @Override
+  public List<String> deleteByCodes(List<String> codes) {
+    String sql = "DELETE FROM links WHERE code = ? RETURNING code";
+    try {
+      return pool.transaction(
+          c -> {
+            List<String> deleted = new ArrayList<>();
+            PreparedStatement ps = c.prepare(sql);
+            for (String code : codes) {
+              ps.setString(1, code);
+              try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) deleted.add(rs.getString(1));
+              }
+            }
+            return deleted;
+          });
     } catch (SQLException e) {
       throw new RuntimeException("DB cleanup error: " + e.getMessage(), e);
     }
   }
 
-  // АТОМАРНО: +1 к кликам, блокировка при достижении лимита
-  public Optional<Link> consumeClick(String code, long nowMs) {
+  @Override
+  public List<String> deleteExpiredByCodes(List<String> codes, long nowMs) {
+    String sql = "DELETE FROM links WHERE code = ? AND expires_at_ms <= ? RETURNING code";
+    try {
+      return pool.transaction(
+          c -> {
+            List<String> deleted = new ArrayList<>();
+            PreparedStatement ps = c.prepare(sql);
+            for (String code : codes) {
+              ps.setString(1, code);
+              ps.setLong(2, nowMs);
+              try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) deleted.add(rs.getString(1));
+              }
+            }
+            return deleted;
+          });
+    } catch (SQLException e) {
+      throw new RuntimeException("DB cleanup error: " + e.getMessage(), e);
+    }
+  }
+
+  /** Streams (code, expires_at_ms) of every row; used to build the in-memory expiry index. */
+  @Override
+  public void forEachExpiry(BiConsumer<String, Long> sink) {
+    String sql = "SELECT code, expires_at_ms FROM links";
+    try {
+      pool.read(
+          c -> {
+            PreparedStatement ps = c.prepare(sql);
+            ps.setFetchSize(1000);
+            try (ResultSet rs = ps.executeQuery()) {
+              while (rs.next()) sink.accept(rs.getString(1), rs.getLong(2));
+            }
+            return null;
+          });
+    } catch (SQLException e) {
+      throw new RuntimeException("DB query error: " + e.getMessage(), e);
+    }
+  }
+
+  @Override
+  public long countExpired(long nowMs) {
+    String sql = "SELECT COUNT(*) FROM links WHERE expires_at_ms <= ?";
+    try {
+      return pool.read(
+          c -> {
+            PreparedStatement ps = c.prepare(sql);
+            ps.setLong(1, nowMs);
+            try (ResultSet rs = ps.executeQuery()) {
+              return rs.next() ? rs.getLong(1) : 0L;
+            }
+          });
+    } catch (SQLException e) {
+      throw new RuntimeException("DB query error: " + e.getMessage(), e);
+    }
+  }
+
+  // АТОМАРНО: +1 к кликам, блокировка при достижении лимита; причина отказа — в той же транзакции
+  @Override
+  public OpenResult consume(String code, long nowMs) {
     String update =
         """
         UPDATE links
@@ -142,39 +553,113 @@ public class LinkRepository {
            AND active = 1
            AND expires_at_ms > ?
            AND clicks < max_clicks
+        RETURNING *
         """;
 
-    try (Connection c = conn()) {
-      c.setAutoCommit(false);
-
-      int updated;
-      try (PreparedStatement ps = c.prepareStatement(update)) {
-        ps.setString(1, code);
-        ps.setLong(2, nowMs);
-        updated = ps.executeUpdate();
-      }
-
-      if (updated == 0) {
-        c.rollback();
-        return Optional.empty();
-      }
+    try {
+      return pool.transaction(
+          c -> {
+            PreparedStatement ps = c.prepare(update);
+            ps.setString(1, code);
+            ps.setLong(2, nowMs);
+            try (ResultSet rs = ps.executeQuery()) {
+              if (rs.next()) {
+                Link l = map(rs);
+                return OpenResult.of(
+                    l.isActive() ? OpenResult.Status.OK : OpenResult.Status.LAST_CLICK, l);
+              }
+            }
+            Optional<Link> current = findByCodeTx(c, code);
+            if (current.isEmpty()) return OpenResult.NOT_FOUND;
+            Link l = current.get();
+            return OpenResult.of(
+                l.expiresAtMs <= nowMs
+                    ? OpenResult.Status.EXPIRED
+                    : OpenResult.Status.LIMIT_REACHED,
+                l);
+          });
+    } catch (SQLException e) {
+      throw new RuntimeException("DB consume error: " + e.getMessage(), e);
+    }
+  }
 
-      Optional<Link> link = findByCodeTx(c, code);
-      c.commit();
-      return link;
+  /** Reads the row and takes as many of the {@code n} clicks as it has left, in one transaction. */
+  @Override
+  public ClickGrant consumeClicks(String code, long nowMs, int n) {
+    String update =
+        """
+        UPDATE links
+           SET clicks = clicks + ?,
+               active = CASE WHEN clicks + ? >= max_clicks THEN 0 ELSE 1 END
+         WHERE id = ?
+        RETURNING *
+        """;
+    try {
+      return pool.transaction(
+          c -> {
+            Optional<Link> current = findByCodeTx(c, code);
+            if (current.isEmpty()) return new ClickGrant(0, OpenResult.NOT_FOUND);
+            Link l = current.get();
+            if (l.expiresAtMs <= nowMs) {
+              return new ClickGrant(0, OpenResult.of(OpenResult.Status.EXPIRED, l));
+            }
+            int granted = l.isActive() ? Math.min(n, l.maxClicks - l.clicks) : 0;
+            if (granted <= 0) {
+              return new ClickGrant(0, OpenResult.of(OpenResult.Status.LIMIT_REACHED, l));
+            }
+            PreparedStatement ps = c.prepare(update);
+            ps.setInt(1, granted);
+            ps.setInt(2, granted);
+            ps.setLong(3, l.id);
+            try (ResultSet rs = ps.executeQuery()) {
+              rs.next();
+              Link after = map(rs);
+              return new ClickGrant(
+                  granted,
+                  OpenResult.of(
+                      after.isActive() ? OpenResult.Status.OK : OpenResult.Status.LAST_CLICK,
+                      after));
+            }
+          });
     } catch (SQLException e) {
       throw new RuntimeException("DB consume error: " + e.getMessage(), e);
     }
   }
 
-  private Optional<Link> findByCodeTx(Connection c, String code) throws SQLException {
-    String sql = "SELECT * FROM links WHERE code = ?";
-    try (PreparedStatement ps = c.prepareStatement(sql)) {
-      ps.setString(1, code);
-      try (ResultSet rs = ps.executeQuery()) {
-        if (!rs.next()) return Optional.empty();
-        return Optional.of(map(rs));
-      }
+  /** Applies the deltas in one batched transaction. */
+  @Override
+  public void addClicks(Map<String, Integer> deltas) {
+    String sql =
+        """
+        UPDATE links
+           SET clicks = clicks + ?,
+               active = CASE WHEN clicks + ? >= max_clicks THEN 0 ELSE active END
+         WHERE code = ?
+        """;
+    try {
+      pool.transaction(
+          c -> {
+            PreparedStatement ps = c.prepare(sql);
+            for (Map.Entry<String, Integer> e : deltas.entrySet()) {
+              ps.setInt(1, e.getValue());
+              ps.setInt(2, e.getValue());
+              ps.setString(3, e.getKey());
+              ps.addBatch();
+            }
+            ps.executeBatch();
+            return null;
+          });
+    } catch (SQLException e) {
+      throw new RuntimeException("DB click flush error: " + e.getMessage(), e);
+    }
+  }
+
+  private Optional<Link> findByCodeTx(PooledConnection c, String code) throws SQLException {
+    PreparedStatement ps = c.prepare("SELECT * FROM links WHERE code = ?");
+    ps.setString(1, code);
+    try (ResultSet rs = ps.executeQuery()) {
+      if (!rs.next()) return Optional.empty();
+      return Optional.of(map(rs));
     }
   }
 
@@ -183,7 +668,8 @@ public class LinkRepository {
     l.id = rs.getLong("id");
     l.userUuid = rs.getString("user_uuid");
     l.code = rs.getString("code");
-    l.originalUrl = rs.getString("original_url");
+    byte[] url = rs.getBytes("url_blob");
+    l.originalUrl = url != null ? UrlCodec.decode(url) : rs.getString("original_url");
     l.createdAtMs = rs.getLong("created_at_ms");
     l.expiresAtMs = rs.getLong("expires_at_ms");
     l.maxClicks = rs.getInt("max_clicks");
@@ -191,4 +677,9 @@ public class LinkRepository {
     l.active = rs.getInt("active");
     return l;
   }
+
+  @Override
+  public void close() {
+    pool.close();
+  }
 }
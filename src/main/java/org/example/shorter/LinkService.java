@@ -1,33 +1,153 @@
 package org.example.shorter;
 
-import com.aventrix.jnanoid.jnanoid.NanoIdUtils;
 import java.awt.Desktop;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URI;
+import java.nio.file.Path;
 import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
 import org.apache.commons.validator.routines.UrlValidator;
 
-public class LinkService {
-  private final LinkRepository repo;
+public class LinkService implements AutoCloseable {
+  private final LinkStore repo;
   private final Duration ttl;
   private final int defaultLimit;
-  private final int codeLength;
+  private final CodeGenerator codes;
   private final boolean openBrowser;
+  private final LinkCache cache;
+  private final ClickAccounting clicks;
+  private final List<LinkListener> listeners = new CopyOnWriteArrayList<>();
+  private ClickAnalytics analytics; // null when analytics.db.path is empty
   private final UrlValidator validator = new UrlValidator(new String[] {"http", "https"});
+  private final UrlValidationCache validations;
+  private final boolean dedup;
+
+  public static final int DEFAULT_PAGE_SIZE = 50;
+  static final String NO_UNIQUE_CODE = "Cannot generate unique code";
+  // short enough that a miss racing with a create, or a reached limit racing with setLimit, cannot
+  // hide the link for long
+  private static final long REJECTION_TTL_MS = 5_000;
+  private static final int STATS_MINUTES = 15;
+  private static final int ARCHIVE_THREADS =
+      Math.max(2, Runtime.getRuntime().availableProcessors());
+
+  private static final LatencyHistogram OPEN_LATENCY =
+      Metrics.histogram("shortener_open_seconds", "Latency of resolving a code, cache included");
+  private static final LatencyHistogram CONSUME_LATENCY =
+      Metrics.histogram("shortener_consume_click_seconds", "Latency of taking a click in storage");
+  private static final LatencyHistogram CREATE_LATENCY =
+      Metrics.histogram("shortener_create_seconds", "Latency of inserting a new link");
+  private static final LongAdder[] OPENS = openCounters();
+  private static final LongAdder DEDUP_HITS =
+      Metrics.counter("shortener_create_dedup_hits_total", "Creates answered with a live link");
 
   public LinkService(
-      LinkRepository repo, Duration ttl, int defaultLimit, int codeLength, boolean openBrowser) {
+      LinkStore repo, Duration ttl, int defaultLimit, int codeLength, boolean openBrowser) {
+    this(
+        repo,
+        ttl,
+        defaultLimit,
+        CodeGenerator.random(codeLength),
+        openBrowser,
+        new LinkCache(10_000),
+        ClickAccounting.sync(repo));
+  }
+
+  public LinkService(LinkStore repo, AppConfig cfg) {
+    this(
+        repo,
+        cfg.ttl,
+        cfg.defaultLimit,
+        CodeGenerator.create(cfg, repo),
+        cfg.openBrowser,
+        new LinkCache(cfg.cacheSize),
+        "buffered".equalsIgnoreCase(cfg.clickMode)
+            ? new BufferedClickAccounting(repo, cfg.clickFlushMs, cfg.clickFlushThreshold)
+            : "coalesced".equalsIgnoreCase(cfg.clickMode)
+                ? ClickAccounting.coalesced(repo)
+                : ClickAccounting.sync(repo),
+        new UrlValidationCache(cfg.urlValidationCache),
+        cfg.createDedup);
+    if (!cfg.analyticsDbPath.isEmpty()) {
+      analytics =
+          new ClickAnalytics(
+              cfg.analyticsDbPath,
+              cfg.analyticsRingSize,
+              cfg.analyticsFlushMs,
+              cfg.analyticsRetentionHours);
+      addListener(analytics);
+    }
+  }
+
+  public LinkService(
+      LinkStore repo,
+      Duration ttl,
+      int defaultLimit,
+      CodeGenerator codes,
+      boolean openBrowser,
+      LinkCache cache,
+      ClickAccounting clicks) {
+    this(
+        repo,
+        ttl,
+        defaultLimit,
+        codes,
+        openBrowser,
+        cache,
+        clicks,
+        new UrlValidationCache(10_000),
+        false);
+  }
+
+  /**
+   * With {@code dedup} on, creating a URL that the user already has a live link for (compared in
+   * {@link UrlCanonicalizer canonical} form) with the same click limit returns that link instead of
+   * inserting a new one.
+   */
+  public LinkService(
+      LinkStore repo,
+      Duration ttl,
+      int defaultLimit,
+      CodeGenerator codes,
+      boolean openBrowser,
+      LinkCache cache,
+      ClickAccounting clicks,
+      UrlValidationCache validations,
+      boolean dedup) {
     this.repo = repo;
     this.ttl = ttl;
     this.defaultLimit = defaultLimit;
-    this.codeLength = codeLength;
+    this.codes = codes;
     this.openBrowser = openBrowser;
+    this.cache = cache;
+    this.clicks = clicks;
+    this.validations = validations;
+    this.dedup = dedup;
+    repo.onDropped(this::dropped);
+  }
+
+  public void addListener(LinkListener listener) {
+    listeners.add(listener);
   }
 
   public Link create(UUID userId, String url, Integer limitOrNull) {
-    if (url == null || url.isBlank()) throw new IllegalArgumentException("URL is empty");
-    if (!validator.isValid(url)) throw new IllegalArgumentException("Invalid URL (http/https)");
+    String error = validationError(url);
+    if (error != null) throw new IllegalArgumentException(error);
 
     int limit = (limitOrNull == null) ? defaultLimit : limitOrNull;
     if (limit <= 0 || limit > 1_000_000) throw new IllegalArgumentException("Limit 1..1000000");
@@ -35,68 +155,210 @@ public class LinkService {
     long now = System.currentTimeMillis();
     long expires = now + ttl.toMillis();
 
-    // retry on code collision
-    for (int attempt = 0; attempt < 10; attempt++) {
-      String code =
-          NanoIdUtils.randomNanoId(
-              NanoIdUtils.DEFAULT_NUMBER_GENERATOR, NanoIdUtils.DEFAULT_ALPHABET, codeLength);
-
-      Link l = new Link();
-      l.userUuid = userId.toString();
-      l.code = code;
-      l.originalUrl = url;
-      l.createdAtMs = now;
-      l.expiresAtMs = expires;
-      l.maxClicks = limit;
-      l.clicks = 0;
-      l.active = 1;
-
-      try {
-        return repo.insert(l);
-      } catch (RuntimeException e) {
-        String msg = e.getMessage() == null ? "" : e.getMessage().toLowerCase();
-        if (msg.contains("unique")) continue;
-        throw e;
+    if (dedup) {
+      String canonical = UrlCanonicalizer.canonical(url);
+      Link live =
+          repo.findLiveByUrls(userId.toString(), List.of(canonical), limit, now).get(canonical);
+      if (live != null) {
+        DEDUP_HITS.increment();
+        return live;
       }
     }
 
-    throw new IllegalStateException("Cannot generate unique code");
+    long t0 = System.nanoTime();
+    try {
+      // a random code can still collide with one written earlier; regenerate instead of failing
+      for (int attempt = 0; attempt < 10; attempt++) {
+        String code = codes.next();
+
+        Link l = new Link();
+        l.userUuid = userId.toString();
+        l.code = code;
+        l.originalUrl = url;
+        l.createdAtMs = now;
+        l.expiresAtMs = expires;
+        l.maxClicks = limit;
+        l.clicks = 0;
+        l.active = 1;
+
+        if (repo.tryInsert(l)) {
+          cache.invalidate(code);
+          for (LinkListener listener : listeners) listener.created(l);
+          return l;
+        }
+      }
+    } finally {
+      CREATE_LATENCY.recordSince(t0);
+    }
+
+    throw new IllegalStateException(NO_UNIQUE_CODE);
   }
 
-  public String open(String code) {
-    if (code == null || code.isBlank()) return "Usage: open <code>";
+  /** Outcome of one row of {@link #createBatch}: the created link or the reason it was refused. */
+  public static final class BatchResult {
+    public final int index;
+    public final String url;
+    public final Link link;
+    public final String error;
+
+    private BatchResult(int index, String url, Link link, String error) {
+      this.index = index;
+      this.url = url;
+      this.link = link;
+      this.error = error;
+    }
+
+    public boolean isOk() {
+      return link != null;
+    }
+  }
+
+  /**
+   * Creates one link per URL. URLs are validated in parallel, codes are generated up front and
+   * checked against the batch and the table, and all rows go in through one batched transaction.
+   * Results come back in input order.
+   */
+  public List<BatchResult> createBatch(UUID userId, List<String> urls, Integer limitOrNull) {
+    int limit = (limitOrNull == null) ? defaultLimit : limitOrNull;
+    if (limit <= 0 || limit > 1_000_000) throw new IllegalArgumentException("Limit 1..1000000");
+
+    String[] errors =
+        IntStream.range(0, urls.size())
+            .parallel()
+            .mapToObj(i -> validationError(urls.get(i)))
+            .toArray(String[]::new);
 
     long now = System.currentTimeMillis();
-    Optional<Link> current = repo.findByCode(code);
-    if (current.isEmpty()) return "NOT FOUND";
+    long expires = now + ttl.toMillis();
+    Link[] created = new Link[urls.size()];
+    List<Integer> pending = new ArrayList<>();
+    for (int i = 0; i < urls.size(); i++) {
+      if (errors[i] == null) pending.add(i);
+    }
+    // rows repeating an earlier URL of the batch take that row's result
+    int[] sameAs = new int[urls.size()];
+    Arrays.fill(sameAs, -1);
+    if (dedup && !pending.isEmpty())
+      pending = reuseLive(userId, urls, pending, limit, now, created, sameAs);
 
-    Link l = current.get();
+    for (int attempt = 0; attempt < 10 && !pending.isEmpty(); attempt++) {
+      Set<String> batchCodes = new HashSet<>();
+      List<Link> rows = new ArrayList<>(pending.size());
+      for (int i : pending) {
+        String code;
+        do {
+          code = codes.next();
+        } while (!batchCodes.add(code));
 
-    if (l.expiresAtMs <= now) return "EXPIRED (TTL). Create a new link.";
+        Link l = new Link();
+        l.userUuid = userId.toString();
+        l.code = code;
+        l.originalUrl = urls.get(i);
+        l.createdAtMs = now;
+        l.expiresAtMs = expires;
+        l.maxClicks = limit;
+        l.clicks = 0;
+        l.active = 1;
+        rows.add(l);
+      }
 
-    // stable message after limit
-    if (l.clicks >= l.maxClicks) return "DISABLED (LIMIT REACHED). Create a new link.";
-    if (!l.isActive()) return "DISABLED (LIMIT REACHED). Create a new link.";
+      Set<String> taken = repo.existingCodes(batchCodes);
+      List<Integer> retry = new ArrayList<>();
+      List<Integer> rowIndex = new ArrayList<>();
+      List<Link> fresh = new ArrayList<>();
+      for (int k = 0; k < rows.size(); k++) {
+        if (taken.contains(rows.get(k).code)) {
+          retry.add(pending.get(k));
+        } else {
+          fresh.add(rows.get(k));
+          rowIndex.add(pending.get(k));
+        }
+      }
 
-    Optional<Link> updated = repo.consumeClick(code, now);
-    if (updated.isEmpty()) {
-      Optional<Link> again = repo.findByCode(code);
-      if (again.isEmpty()) return "NOT FOUND";
+      boolean[] inserted = repo.insertBatch(fresh);
+      for (int k = 0; k < fresh.size(); k++) {
+        Link l = fresh.get(k);
+        if (!inserted[k]) {
+          retry.add(rowIndex.get(k));
+          continue;
+        }
+        created[rowIndex.get(k)] = l;
+        cache.invalidate(l.code);
+        for (LinkListener listener : listeners) listener.created(l);
+      }
+      pending = retry;
+    }
+    for (int i : pending) errors[i] = NO_UNIQUE_CODE;
+    for (int i = 0; i < urls.size(); i++) {
+      if (sameAs[i] < 0) continue;
+      created[i] = created[sameAs[i]];
+      errors[i] = errors[sameAs[i]];
+      if (created[i] != null) DEDUP_HITS.increment();
+    }
 
-      Link a = again.get();
-      if (a.expiresAtMs <= now) return "EXPIRED (TTL). Create a new link.";
-      if (a.clicks >= a.maxClicks) return "DISABLED (LIMIT REACHED). Create a new link.";
-      if (!a.isActive()) return "DISABLED (LIMIT REACHED). Create a new link.";
+    List<BatchResult> out = new ArrayList<>(urls.size());
+    for (int i = 0; i < urls.size(); i++) {
+      out.add(new BatchResult(i, urls.get(i), created[i], created[i] == null ? errors[i] : null));
+    }
+    return out;
+  }
 
-      return "Cannot consume click";
+  /**
+   * Fills {@code created} for rows whose URL the user already has a live link for, marks repeats
+   * within the batch in {@code sameAs}, and returns the rows that still need inserting.
+   */
+  private List<Integer> reuseLive(
+      UUID userId,
+      List<String> urls,
+      List<Integer> pending,
+      int limit,
+      long now,
+      Link[] created,
+      int[] sameAs) {
+    Map<String, Integer> first = new HashMap<>();
+    List<Integer> unique = new ArrayList<>(pending.size());
+    for (int i : pending) {
+      Integer prev = first.putIfAbsent(UrlCanonicalizer.canonical(urls.get(i)), i);
+      if (prev == null) unique.add(i);
+      else sameAs[i] = prev;
+    }
+    Map<String, Link> live = repo.findLiveByUrls(userId.toString(), first.keySet(), limit, now);
+    List<Integer> rest = new ArrayList<>(unique.size());
+    for (int i : unique) {
+      Link l = live.get(UrlCanonicalizer.canonical(urls.get(i)));
+      if (l == null) {
+        rest.add(i);
+      } else {
+        created[i] = l;
+        DEDUP_HITS.increment();
+      }
     }
+    return rest;
+  }
 
-    Link u = updated.get();
+  private String validationError(String url) {
+    if (url == null || url.isBlank()) return "URL is empty";
+    return validations.errorOf(url, u -> validator.isValid(u) ? null : "Invalid URL (http/https)");
+  }
 
-    boolean lastClickUsed = (!u.isActive() || u.clicks >= u.maxClicks);
-    String notice = lastClickUsed ? "NOTICE: last allowed click used. Link is now disabled." : null;
+  public String open(String code) {
+    if (code == null || code.isBlank()) return "Usage: open <code>";
+
+    OpenResult r = redirect(code);
+    String rejected =
+        switch (r.status) {
+          case NOT_FOUND -> "NOT FOUND";
+          case EXPIRED -> "EXPIRED (TTL). Create a new link.";
+          case LIMIT_REACHED -> "DISABLED (LIMIT REACHED). Create a new link.";
+          default -> null;
+        };
+    if (rejected != null) return rejected;
 
-    String url = u.originalUrl;
+    String notice =
+        r.status == OpenResult.Status.LAST_CLICK
+            ? "NOTICE: last allowed click used. Link is now disabled."
+            : null;
+    String url = r.url();
 
     if (!openBrowser) {
       return (notice == null) ? ("URL: " + url) : ("URL: " + url + "\n" + notice);
@@ -116,52 +378,250 @@ public class LinkService {
     }
   }
 
-  public String list(UUID userId) {
-    var links = repo.listByUser(userId.toString());
-    if (links.isEmpty()) return "(empty)";
+  /**
+   * Resolves a code and consumes one click; shared by the console and the HTTP front end. A cache
+   * hit decides rejections without storage; otherwise one storage call both takes the click and
+   * reports why it could not.
+   */
+  public OpenResult redirect(String code) {
+    long t0 = System.nanoTime();
+    OpenResult r = resolve(code);
+    if (r.status.redirects()) {
+      long now = System.currentTimeMillis();
+      for (LinkListener listener : listeners) listener.clicked(code, now);
+    }
+    OPEN_LATENCY.recordSince(t0);
+    OPENS[r.status.ordinal()].increment();
+    return r;
+  }
 
-    StringBuilder sb = new StringBuilder();
-    for (var l : links) {
-      sb.append("-----\n");
-      sb.append("code: ").append(l.code).append("\n");
-      sb.append("url : ").append(l.originalUrl).append("\n");
-      sb.append("clicks: ").append(l.clicks).append("/").append(l.maxClicks);
-      sb.append(" active=").append(l.isActive()).append("\n");
-      sb.append("expiresMs: ").append(l.expiresAtMs).append("\n");
+  private OpenResult resolve(String code) {
+    long now = System.currentTimeMillis();
+    LinkCache.Entry cached = cache.get(code);
+    if (cached != null && !cached.isLapsed(now)) {
+      if (cached.rejection != null) return OpenResult.rejected(cached.rejection);
+      OpenResult.Status rejection = rejectionOf(cached.link, now);
+      if (rejection != null) {
+        cache.reject(code, rejection, rejectedUntil(rejection, cached.link.expiresAtMs(), now));
+        return OpenResult.rejected(rejection);
+      }
     }
+
+    long t0 = System.nanoTime();
+    OpenResult r = clicks.consume(code, now);
+    CONSUME_LATENCY.recordSince(t0);
+    switch (r.status) {
+      case OK -> cache.put(r.link);
+      case LAST_CLICK ->
+          cache.reject(
+              code,
+              OpenResult.Status.LIMIT_REACHED,
+              rejectedUntil(OpenResult.Status.LIMIT_REACHED, r.link.expiresAtMs(), now));
+      default -> {
+        long expiresAtMs = r.link == null ? Long.MAX_VALUE : r.link.expiresAtMs();
+        cache.reject(code, r.status, rejectedUntil(r.status, expiresAtMs, now));
+      }
+    }
+    return r;
+  }
+
+  private static long rejectedUntil(OpenResult.Status rejection, long expiresAtMs, long now) {
+    if (rejection == OpenResult.Status.EXPIRED) return expiresAtMs;
+    return Math.min(expiresAtMs, now + REJECTION_TTL_MS);
+  }
+
+  private static LongAdder[] openCounters() {
+    OpenResult.Status[] all = OpenResult.Status.values();
+    LongAdder[] out = new LongAdder[all.length];
+    for (int i = 0; i < all.length; i++) {
+      String status = all[i].name().toLowerCase(Locale.ROOT);
+      out[i] =
+          Metrics.counter("shortener_open_total", "status=\"" + status + "\"", "Opens by outcome");
+    }
+    return out;
+  }
+
+  private static OpenResult.Status rejectionOf(LinkView l, long now) {
+    if (l.expiresAtMs() <= now) return OpenResult.Status.EXPIRED;
+    // stable message after limit
+    if (l.clicks() >= l.maxClicks() || !l.isActive()) return OpenResult.Status.LIMIT_REACHED;
+    return null;
+  }
+
+  public String list(UUID userId) {
+    StringBuilder sb = new StringBuilder();
+    list(userId, LinkStore.ListFilter.ALL, 0, DEFAULT_PAGE_SIZE, sb);
     return sb.toString();
   }
 
+  /**
+   * Writes one page of the user's links, newest first, to {@code out} as they are read from
+   * storage. Returns the cursor for the next page ({@code afterId}) or 0 when this was the last
+   * one.
+   */
+  public long list(
+      UUID userId, LinkStore.ListFilter filter, long afterId, int limit, Appendable out) {
+    if (limit <= 0) throw new IllegalArgumentException("Limit must be positive");
+    long now = System.currentTimeMillis();
+    long[] last = {0, 0}; // id of the last row shown, rows read
+    try {
+      // one extra row tells whether another page follows
+      repo.forEachByUser(
+          userId.toString(),
+          filter,
+          now,
+          afterId,
+          limit == Integer.MAX_VALUE ? limit : limit + 1,
+          stored -> {
+            if (last[1]++ == limit) return;
+            last[0] = stored.id();
+            // storage may lag buffered clicks; the live view decides what is shown
+            LinkView l = clicks.view(stored);
+            if (filter.matches(l, now)) appendListEntry(out, l);
+          });
+      if (last[1] == 0) out.append("(empty)\n");
+      if (last[1] <= limit) return 0;
+      out.append("next: --after ").append(Long.toString(last[0])).append('\n');
+      return last[0];
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static void appendListEntry(Appendable out, LinkView l) {
+    try {
+      out.append("-----\n");
+      out.append("code: ").append(l.code()).append("\n");
+      out.append("url : ").append(l.originalUrl()).append("\n");
+      out.append("clicks: ")
+          .append(Integer.toString(l.clicks()))
+          .append("/")
+          .append(Integer.toString(l.maxClicks()));
+      out.append(" active=").append(Boolean.toString(l.isActive())).append("\n");
+      out.append("expiresMs: ").append(Long.toString(l.expiresAtMs())).append("\n");
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /** Writes every link to {@code file}; clicks still buffered are flushed first. */
+  public long exportLinks(Path file, LinkArchive.Format format) {
+    clicks.flush();
+    return LinkArchive.export(repo, file, format, ARCHIVE_THREADS);
+  }
+
+  /** Loads an export; links whose code already exists are left alone. */
+  public LinkArchive.ImportResult importLinks(Path file) {
+    return LinkArchive.importFrom(
+        repo,
+        file,
+        ARCHIVE_THREADS,
+        new LinkListener() {
+          @Override
+          public void created(Link l) {
+            cache.invalidate(l.code);
+            for (LinkListener listener : listeners) listener.created(l);
+          }
+        });
+  }
+
+  /** Current state of a link, including clicks not yet written back. */
+  public Optional<Link> find(String code) {
+    return repo.findByCode(code).map(l -> clicks.view(l).toLink());
+  }
+
   public String info(UUID userId, String code) {
-    var opt = repo.findByCode(code);
+    var opt = repo.view(code);
     if (opt.isEmpty()) return "NOT FOUND";
-    Link l = opt.get();
-    if (!l.userUuid.equals(userId.toString())) return "FORBIDDEN (not owner)";
+    LinkView l = clicks.view(opt.get());
+    if (!l.isOwnedBy(userId)) return "FORBIDDEN (not owner)";
 
     return "code: "
-        + l.code
+        + l.code()
         + "\nurl : "
-        + l.originalUrl
+        + l.originalUrl()
         + "\nclicks: "
-        + l.clicks
+        + l.clicks()
         + "/"
-        + l.maxClicks
+        + l.maxClicks()
         + "\nactive: "
         + l.isActive()
         + "\ncreatedMs: "
-        + l.createdAtMs
+        + l.createdAtMs()
         + "\nexpiresMs: "
-        + l.expiresAtMs;
+        + l.expiresAtMs();
+  }
+
+  /** Click history of an owned link, answered from the per-minute rollups. */
+  public String clickStats(UUID userId, String code) {
+    if (analytics == null) return "Analytics disabled (analytics.db.path)";
+    var opt = repo.view(code);
+    if (opt.isEmpty()) return "NOT FOUND";
+    if (!opt.get().isOwnedBy(userId)) return "FORBIDDEN (not owner)";
+
+    long now = System.currentTimeMillis();
+    NavigableMap<Long, Long> minutes =
+        analytics.perMinute(code, now - Duration.ofDays(1).toMillis());
+    long hourFrom = now - Duration.ofHours(1).toMillis();
+    long lastHour = 0;
+    long lastDay = 0;
+    for (Map.Entry<Long, Long> m : minutes.entrySet()) {
+      lastDay += m.getValue();
+      if (m.getKey() >= hourFrom) lastHour += m.getValue();
+    }
+    StringBuilder sb = new StringBuilder();
+    sb.append("code: ").append(code).append("\n");
+    sb.append("clicks total: ").append(analytics.totalClicks(code)).append("\n");
+    sb.append("last 24h: ").append(lastDay).append("\n");
+    sb.append("last hour: ").append(lastHour).append("\n");
+    sb.append("recent minutes:");
+    long recentFrom = now - Duration.ofMinutes(STATS_MINUTES).toMillis();
+    for (Map.Entry<Long, Long> m : minutes.tailMap(recentFrom, true).descendingMap().entrySet()) {
+      sb.append("\n  ").append(Instant.ofEpochMilli(m.getKey())).append("  ").append(m.getValue());
+    }
+    return sb.toString();
   }
 
   public String setLimit(UUID userId, String code, int newLimit) {
     if (newLimit <= 0 || newLimit > 1_000_000) return "Limit 1..1000000";
     boolean ok = repo.updateLimit(code, userId.toString(), newLimit);
+    if (ok) {
+      clicks.forget(code);
+      cache.invalidate(code);
+    }
     return ok ? "OK" : "NOT FOUND or FORBIDDEN";
   }
 
   public String delete(UUID userId, String code) {
     boolean ok = repo.deleteByCodeAndUser(code, userId.toString());
+    if (ok) {
+      clicks.forget(code);
+      cache.invalidate(code);
+      for (LinkListener listener : listeners) listener.deleted(code);
+    }
     return ok ? "OK" : "NOT FOUND or FORBIDDEN";
   }
+
+  /** Called by the store with links it deleted on its own, e.g. expired ones during compaction. */
+  private void dropped(List<String> codes) {
+    evict(codes);
+    for (String code : codes) {
+      for (LinkListener listener : listeners) listener.deleted(code);
+    }
+  }
+
+  /** Called by the cleanup sweep with the codes it deleted. */
+  public void evict(List<String> codes) {
+    for (String code : codes) {
+      clicks.forget(code);
+      cache.invalidate(code);
+    }
+  }
+
+  /** Flushes clicks that are still buffered in memory. */
+  @Override
+  public void close() {
+    clicks.close();
+    if (analytics != null) analytics.close();
+  }
 }
@@ -0,0 +1,192 @@
+package org.example.shorter;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/** Storage engine for links; selected by {@code storage.engine}. */
+public interface LinkStore extends AutoCloseable {
+
+  Link insert(Link l);
+
+  /** Inserts unless the code is taken; returns false on a code collision. */
+  boolean tryInsert(Link l);
+
+  /** Inserts rows whose code is free; the result says per row whether it was inserted. */
+  boolean[] insertBatch(List<Link> links);
+
+  /** Returns the subset of {@code codes} that already exist. */
+  Set<String> existingCodes(Collection<String> codes);
+
+  /** Reserves {@code size} consecutive values of the code sequence; returns the first one. */
+  long leaseCodeBlock(int size);
+
+  Optional<Link> findByCode(String code);
+
+  /** Read-only view of a link; engines that keep links packed in memory return them as is. */
+  default Optional<LinkView> view(String code) {
+    return findByCode(code).map(l -> l);
+  }
+
+  /** Which links of a user a listing returns, judged at the listing's clock. */
+  enum ListFilter {
+    ALL,
+    ACTIVE,
+    EXPIRED;
+
+    public boolean matches(LinkView l, long nowMs) {
+      return switch (this) {
+        case ALL -> true;
+        case ACTIVE -> l.isActive() && l.expiresAtMs() > nowMs;
+        case EXPIRED -> l.expiresAtMs() <= nowMs;
+      };
+    }
+  }
+
+  /**
+   * Streams a user's links to {@code sink}, newest first, stopping after {@code limit} matches.
+   * Paging is keyset on id: only links with an id below {@code afterId} are read ({@code 0} starts
+   * at the newest). Rows are handed over as they are read and never collected.
+   */
+  void forEachByUser(
+      String userUuid,
+      ListFilter filter,
+      long nowMs,
+      long afterId,
+      int limit,
+      Consumer<? super LinkView> sink);
+
+  /** Every link of a user, newest first; prefer {@link #forEachByUser} for large owners. */
+  default List<Link> listByUser(String userUuid) {
+    List<Link> out = new ArrayList<>();
+    forEachByUser(userUuid, ListFilter.ALL, 0, 0, Integer.MAX_VALUE, l -> out.add(l.toLink()));
+    return out;
+  }
+
+  /**
+   * The newest live (active, unexpired) link of a user with click limit {@code maxClicks} for each
+   * of the given canonical URLs, keyed by canonical URL; URLs without one are absent. The default
+   * scans the user's active links.
+   */
+  default Map<String, Link> findLiveByUrls(
+      String userUuid, Collection<String> canonicalUrls, int maxClicks, long nowMs) {
+    Set<String> wanted = new HashSet<>(canonicalUrls);
+    Map<String, Link> out = new HashMap<>();
+    forEachByUser(
+        userUuid,
+        ListFilter.ACTIVE,
+        nowMs,
+        0,
+        Integer.MAX_VALUE,
+        l -> {
+          if (l.maxClicks() != maxClicks) return;
+          String canonical = UrlCanonicalizer.canonical(l.originalUrl());
+          // newest first: keep the first match
+          if (wanted.contains(canonical)) out.putIfAbsent(canonical, l.toLink());
+        });
+    return out;
+  }
+
+  /** Highest id handed out so far (0 for an empty store); bounds {@link #forEachInIdRange}. */
+  long maxId();
+
+  /**
+   * Streams every link with {@code afterId < id <= toId} to {@code sink} as it is read. Disjoint
+   * ranges can be read concurrently, which is how exports split the table.
+   */
+  void forEachInIdRange(long afterId, long toId, Consumer<? super LinkView> sink);
+
+  /**
+   * Whether {@link #forEachInIdRange} reads only the requested range. Stores without an id index
+   * scan everything for any range and return false, so bulk readers make a single pass instead.
+   */
+  default boolean supportsRangeReads() {
+    return true;
+  }
+
+  boolean deleteByCodeAndUser(String code, String userUuid);
+
+  boolean updateLimit(String code, String userUuid, int newLimit);
+
+  int deleteExpired(long nowMs);
+
+  /** Deletes at most {@code limit} expired links, oldest expiry first; returns their codes. */
+  List<String> deleteExpiredBatch(long nowMs, int limit);
+
+  /** Deletes the given codes and returns the ones that existed. */
+  List<String> deleteByCodes(List<String> codes);
+
+  /**
+   * Registers the callback for links the store deletes on its own, such as expired links dropped by
+   * compaction. Stores that never do ignore it.
+   */
+  default void onDropped(Consumer<List<String>> listener) {}
+
+  /**
+   * Deletes those of the given codes whose link expired by {@code nowMs} and returns them; a code
+   * that now names a live link is left alone.
+   */
+  List<String> deleteExpiredByCodes(List<String> codes, long nowMs);
+
+  /** Streams (code, expiresAtMs) of every link. */
+  void forEachExpiry(BiConsumer<String, Long> sink);
+
+  long countExpired(long nowMs);
+
+  /**
+   * Atomically takes one click and decides the status in the same storage call: OK or LAST_CLICK
+   * with the state after the click, otherwise the rejection with the current state.
+   */
+  OpenResult consume(String code, long nowMs);
+
+  /** Atomically takes one click; empty if the link is missing, expired, disabled or used up. */
+  default Optional<Link> consumeClick(String code, long nowMs) {
+    OpenResult r = consume(code, nowMs);
+    return r.status.redirects() ? Optional.of(r.link.toLink()) : Optional.empty();
+  }
+
+  /**
+   * Takes up to {@code n} clicks of one code as a single admission, never beyond {@code maxClicks}.
+   * The default takes them one by one.
+   */
+  default ClickGrant consumeClicks(String code, long nowMs, int n) {
+    OpenResult last = null;
+    int granted = 0;
+    while (granted < n) {
+      OpenResult r = consume(code, nowMs);
+      if (!r.status.redirects()) {
+        if (granted == 0) last = r;
+        break;
+      }
+      last = r;
+      granted++;
+    }
+    return new ClickGrant(granted, last);
+  }
+
+  /** Applies accumulated click deltas (code -> clicks). */
+  void addClicks(Map<String, Integer> deltas);
+
+  @Override
+  void close();
+
+  static LinkStore open(AppConfig cfg) {
+    return switch (cfg.storageEngine.toLowerCase()) {
+      case "memory" ->
+          new InMemoryLinkStore(
+              cfg.snapshotPath.isEmpty() ? null : Path.of(cfg.snapshotPath), cfg.snapshotSeconds);
+      case "log" ->
+          new LogLinkStore(Path.of(cfg.logDir), cfg.logSegmentBytes, cfg.logCompactSeconds);
+      case "sharded" -> new ShardedLinkStore(cfg.dbPath, cfg.storageShards, cfg.db);
+      default -> new LinkRepository(cfg.dbPath, cfg.db);
+    };
+  }
+}
@@ -0,0 +1,35 @@
+package org.example.shorter;
+
+import java.util.UUID;
+
+/**
+ * Read-only access to a link. Implemented by the mutable {@link Link} and by the compact {@link
+ * PackedLink}, so read paths such as {@code open} and {@code info} work on either without
+ * materializing a {@code Link}.
+ */
+public interface LinkView {
+  long id();
+
+  String userUuid();
+
+  String code();
+
+  String originalUrl();
+
+  long createdAtMs();
+
+  long expiresAtMs();
+
+  int maxClicks();
+
+  int clicks();
+
+  boolean isActive();
+
+  default boolean isOwnedBy(UUID user) {
+    return userUuid().equals(user.toString());
+  }
+
+  /** This link as a {@link Link}; a {@code Link} returns itself. */
+  Link toLink();
+}
@@ -0,0 +1,557 @@
+package org.example.shorter;
+
+import com.google.gson.Gson;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * Macro load test of {@link LinkService}: creates a population of links, then replays a mix of
+ * open, create, list and delete calls with Zipf-skewed code popularity and reports throughput and
+ * latency percentiles.
+ *
+ * <pre>
+ * java -cp link-short.jar org.example.shorter.LoadGenerator --links 100000 --rate 5000 --duration 30
+ * java -cp link-short.jar org.example.shorter.LoadGenerator --record run.jsonl --concurrency 64
+ * java -cp link-short.jar org.example.shorter.LoadGenerator --replay run.jsonl
+ * </pre>
+ *
+ * <p>With {@code --rate} every call has a scheduled start and its latency is measured from that
+ * schedule, so a stalled service is charged for the calls it held up (no coordinated omission).
+ * Without it, {@code --concurrency} callers run back to back and the report shows service time.
+ * Calls run on virtual threads when the runtime has them.
+ *
+ * <p>{@code --record} writes the options and every call as JSON lines; {@code --replay} runs such a
+ * file again against a fresh store, with the recorded schedule.
+ */
+public final class LoadGenerator {
+  private static final Gson GSON = new Gson();
+  private static final int SETUP_BATCH = 1_000;
+  private static final int MAX_IN_FLIGHT = 10_000;
+
+  public enum Kind {
+    OPEN,
+    CREATE,
+    LIST,
+    DELETE
+  }
+
+  /** Workload settings; the first line of a recording. */
+  public static final class Options {
+    public int links = 10_000;
+    public int users = 100;
+    public double zipf = 1.1;
+    public String mix = "open=90,create=5,list=4,delete=1";
+    public long durationMs = 10_000;
+    public double rate; // calls per second; 0 runs closed loop
+    public int concurrency = 32;
+    public long seed = 42;
+    public String engine = "sqlite";
+    public String clickMode = "sync";
+    transient String db = "";
+    transient String record = "";
+    transient String replay = "";
+
+    public static Options parse(String[] args) {
+      Options o = new Options();
+      for (int i = 0; i < args.length; i += 2) {
+        if (i + 1 >= args.length)
+          throw new IllegalArgumentException("Missing value for " + args[i]);
+        String v = args[i + 1];
+        switch (args[i]) {
+          case "--links" -> o.links = Integer.parseInt(v);
+          case "--users" -> o.users = Integer.parseInt(v);
+          case "--zipf" -> o.zipf = Double.parseDouble(v);
+          case "--mix" -> o.mix = v;
+          case "--duration" -> o.durationMs = TimeUnit.SECONDS.toMillis(Long.parseLong(v));
+          case "--rate" -> o.rate = Double.parseDouble(v);
+          case "--concurrency" -> o.concurrency = Integer.parseInt(v);
+          case "--seed" -> o.seed = Long.parseLong(v);
+          case "--engine" -> o.engine = v;
+          case "--clicks" -> o.clickMode = v;
+          case "--db" -> o.db = v;
+          case "--record" -> o.record = v;
+          case "--replay" -> o.replay = v;
+          default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+        }
+      }
+      return o;
+    }
+  }
+
+  /**
+   * One call: when it is due (microseconds from the start), what it does and to which link/user.
+   */
+  public static final class Op {
+    public final long at;
+    public final Kind op;
+    public final int link; // index into the seeded links; sequence number for creates
+    public final int user;
+
+    Op(long at, Kind op, int link, int user) {
+      this.at = at;
+      this.op = op;
+      this.link = link;
+      this.user = user;
+    }
+  }
+
+  public static final class Report {
+    public final long elapsedNanos;
+    public final boolean scheduled;
+    public final Map<Kind, LatencyHistogram> latency;
+    public final Map<Kind, LongAdder> errors;
+    public final LatencyHistogram all;
+
+    private Report(long elapsedNanos, boolean scheduled, Recorder r) {
+      this.elapsedNanos = elapsedNanos;
+      this.scheduled = scheduled;
+      this.latency = r.latency;
+      this.errors = r.errors;
+      this.all = r.all;
+    }
+
+    public long calls() {
+      return all.count();
+    }
+
+    public String format() {
+      StringBuilder sb = new StringBuilder();
+      double seconds = elapsedNanos / 1e9;
+      sb.append(
+          String.format(
+              Locale.ROOT,
+              "%d calls in %.1f s = %.1f calls/s, latency %s%n",
+              calls(),
+              seconds,
+              calls() / seconds,
+              scheduled
+                  ? "from scheduled start (coordinated omission corrected)"
+                  : "service time"));
+      sb.append(
+          String.format(
+              Locale.ROOT,
+              "%-7s %10s %7s %10s %10s %10s %10s%n",
+              "call",
+              "count",
+              "errors",
+              "p50 us",
+              "p99 us",
+              "p999 us",
+              "max us"));
+      for (Kind k : Kind.values()) {
+        row(sb, k.name().toLowerCase(Locale.ROOT), latency.get(k), errors.get(k).sum());
+      }
+      long errorsTotal = 0;
+      for (LongAdder e : errors.values()) errorsTotal += e.sum();
+      row(sb, "all", all, errorsTotal);
+      return sb.toString();
+    }
+
+    private static void row(StringBuilder sb, String name, LatencyHistogram h, long errors) {
+      sb.append(
+          String.format(
+              Locale.ROOT,
+              "%-7s %10d %7d %10.1f %10.1f %10.1f %10.1f%n",
+              name,
+              h.count(),
+              errors,
+              h.quantileNanos(0.50) / 1e3,
+              h.quantileNanos(0.99) / 1e3,
+              h.quantileNanos(0.999) / 1e3,
+              h.maxNanos() / 1e3));
+    }
+  }
+
+  private LoadGenerator() {}
+
+  public static void main(String[] args) throws Exception {
+    Options o = Options.parse(args);
+    if (!o.replay.isEmpty()) o = readHeader(Path.of(o.replay), o);
+    Path tmp = null;
+    if (o.db.isEmpty() && !o.engine.equals("memory")) {
+      tmp = Files.createTempDirectory("link-load");
+      o.db = tmp.resolve("load.db").toString();
+    }
+    try (LinkStore store = openStore(o);
+        LinkService service = service(store, o)) {
+      Report r = run(service, o);
+      System.out.print(r.format());
+    } finally {
+      if (tmp != null) deleteTree(tmp);
+    }
+  }
+
+  /** Seeds the links, runs the workload (generated or replayed) and returns the measurements. */
+  public static Report run(LinkService service, Options o) throws IOException {
+    UUID[] users = new UUID[o.users];
+    for (int u = 0; u < o.users; u++) users[u] = new UUID(o.seed, u);
+    String[] codes = seed(service, users, o);
+
+    Recorder rec = new Recorder();
+    try (OpSource source = opSource(o)) {
+      long elapsed =
+          o.rate > 0
+              ? runScheduled(service, users, codes, source, o, rec)
+              : runClosedLoop(service, users, codes, source, o, rec);
+      return new Report(elapsed, o.rate > 0, rec);
+    }
+  }
+
+  // --- setup ---
+
+  private static LinkStore openStore(Options o) {
+    return switch (o.engine) {
+      case "memory" -> new InMemoryLinkStore();
+      case "log" -> new LogLinkStore(Path.of(o.db + ".log"));
+      case "sharded" -> new ShardedLinkStore(o.db, 4, DbConfig.defaults());
+      default -> new LinkRepository(o.db, DbConfig.defaults());
+    };
+  }
+
+  private static LinkService service(LinkStore store, Options o) {
+    return new LinkService(
+        store,
+        Duration.ofDays(1),
+        5,
+        CodeGenerator.random(8),
+        false,
+        new LinkCache(10_000),
+        switch (o.clickMode) {
+          case "buffered" -> new BufferedClickAccounting(store, 1_000, 10_000);
+          case "coalesced" -> ClickAccounting.coalesced(store);
+          default -> ClickAccounting.sync(store);
+        });
+  }
+
+  /** Link {@code i} belongs to user {@code i % users}; returns the codes by link index. */
+  private static String[] seed(LinkService service, UUID[] users, Options o) {
+    String[] codes = new String[o.links];
+    for (int u = 0; u < users.length; u++) {
+      List<Integer> mine = new ArrayList<>();
+      for (int i = u; i < o.links; i += users.length) mine.add(i);
+      for (int from = 0; from < mine.size(); from += SETUP_BATCH) {
+        List<Integer> chunk = mine.subList(from, Math.min(mine.size(), from + SETUP_BATCH));
+        List<String> urls = new ArrayList<>(chunk.size());
+        for (int i : chunk) urls.add("https://example.com/load/" + i + "?utm_source=load");
+        for (LinkService.BatchResult r : service.createBatch(users[u], urls, 1_000_000)) {
+          if (r.isOk()) codes[chunk.get(r.index)] = r.link.code;
+        }
+      }
+    }
+    return codes;
+  }
+
+  // --- execution ---
+
+  /** Starts every call at its scheduled time and measures from there; returns the elapsed time. */
+  private static long runScheduled(
+      LinkService service, UUID[] users, String[] codes, OpSource source, Options o, Recorder rec) {
+    Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT);
+    ExecutorService pool = Threads.perTaskExecutor("load", o.concurrency);
+    long start = System.nanoTime();
+    try {
+      Op op;
+      while ((op = source.next(-1)) != null) {
+        long due = start + TimeUnit.MICROSECONDS.toNanos(op.at);
+        long wait = due - System.nanoTime();
+        if (wait > 0) LockSupport.parkNanos(wait);
+        inFlight.acquireUninterruptibly();
+        Op call = op;
+        pool.execute(
+            () -> {
+              try {
+                execute(service, users, codes, call, rec);
+              } finally {
+                rec.record(call.op, System.nanoTime() - due);
+                inFlight.release();
+              }
+            });
+      }
+    } finally {
+      awaitQuietly(pool);
+    }
+    return System.nanoTime() - start;
+  }
+
+  private static long runClosedLoop(
+      LinkService service, UUID[] users, String[] codes, OpSource source, Options o, Recorder rec) {
+    ExecutorService pool = Threads.perTaskExecutor("load", o.concurrency);
+    long start = System.nanoTime();
+    for (int w = 0; w < o.concurrency; w++) {
+      pool.execute(
+          () -> {
+            Op op;
+            while ((op = source.next((System.nanoTime() - start) / 1_000)) != null) {
+              long t0 = System.nanoTime();
+              try {
+                execute(service, users, codes, op, rec);
+              } finally {
+                rec.record(op.op, System.nanoTime() - t0);
+              }
+            }
+          });
+    }
+    awaitQuietly(pool);
+    return System.nanoTime() - start;
+  }
+
+  private static void execute(
+      LinkService service, UUID[] users, String[] codes, Op op, Recorder rec) {
+    try {
+      switch (op.op) {
+        case OPEN -> service.redirect(codes[op.link]);
+        case CREATE ->
+            service.create(
+                users[op.user],
+                "https://example.com/load/new/" + op.link + "?utm_source=load",
+                null);
+        case LIST ->
+            service.list(
+                users[op.user],
+                LinkStore.ListFilter.ALL,
+                0,
+                LinkService.DEFAULT_PAGE_SIZE,
+                new StringBuilder());
+        case DELETE -> service.delete(users[op.link % users.length], codes[op.link]);
+      }
+    } catch (RuntimeException e) {
+      rec.errors.get(op.op).increment();
+    }
+  }
+
+  private static final class Recorder {
+    final Map<Kind, LatencyHistogram> latency = new EnumMap<>(Kind.class);
+    final Map<Kind, LongAdder> errors = new EnumMap<>(Kind.class);
+    final LatencyHistogram all = new LatencyHistogram();
+
+    Recorder() {
+      for (Kind k : Kind.values()) {
+        latency.put(k, new LatencyHistogram());
+        errors.put(k, new LongAdder());
+      }
+    }
+
+    void record(Kind kind, long nanos) {
+      latency.get(kind).record(nanos);
+      all.record(nanos);
+    }
+  }
+
+  private static void awaitQuietly(ExecutorService pool) {
+    pool.shutdown();
+    try {
+      while (!pool.awaitTermination(1, TimeUnit.SECONDS)) {
+        // keep waiting: calls in flight still count towards the report
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  // --- workload sources ---
+
+  /** Yields the calls of a run in order, or null when it is over. */
+  private interface OpSource extends AutoCloseable {
+    /** The next call; {@code nowMicros} is the caller's clock for closed-loop runs, else -1. */
+    Op next(long nowMicros);
+
+    @Override
+    void close();
+  }
+
+  private static OpSource opSource(Options o) throws IOException {
+    OpSource source = o.replay.isEmpty() ? new GeneratedOps(o) : new ReplayedOps(Path.of(o.replay));
+    return o.record.isEmpty() ? source : new RecordingOps(source, Path.of(o.record), o);
+  }
+
+  private static final class GeneratedOps implements OpSource {
+    private final Options o;
+    private final SplittableRandom rnd;
+    private final Zipf popularity;
+    private final int[] rankToLink;
+    private final Kind[] kinds;
+    private final int[] cumulative;
+    private long issued;
+    private int created;
+
+    GeneratedOps(Options o) {
+      this.o = o;
+      this.rnd = new SplittableRandom(o.seed);
+      this.popularity = new Zipf(o.links, o.zipf);
+      // the most popular links are spread over the table instead of being the oldest rows
+      this.rankToLink = new int[o.links];
+      for (int i = 0; i < o.links; i++) rankToLink[i] = i;
+      for (int i = o.links - 1; i > 0; i--) {
+        int j = rnd.nextInt(i + 1);
+        int t = rankToLink[i];
+        rankToLink[i] = rankToLink[j];
+        rankToLink[j] = t;
+      }
+      List<Kind> ks = new ArrayList<>();
+      List<Integer> cs = new ArrayList<>();
+      int total = 0;
+      for (String part : o.mix.split(",")) {
+        String[] kv = part.trim().split("=");
+        total += Integer.parseInt(kv[1].trim());
+        ks.add(Kind.valueOf(kv[0].trim().toUpperCase(Locale.ROOT)));
+        cs.add(total);
+      }
+      if (total <= 0) throw new IllegalArgumentException("mix needs a positive weight");
+      this.kinds = ks.toArray(new Kind[0]);
+      this.cumulative = cs.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    @Override
+    public synchronized Op next(long nowMicros) {
+      long at = o.rate > 0 ? (long) (issued * 1e6 / o.rate) : nowMicros;
+      if (at >= TimeUnit.MILLISECONDS.toMicros(o.durationMs)) return null;
+      issued++;
+      int pick = rnd.nextInt(cumulative[cumulative.length - 1]);
+      int k = 0;
+      while (pick >= cumulative[k]) k++;
+      return switch (kinds[k]) {
+        case OPEN -> new Op(at, Kind.OPEN, rankToLink[popularity.sample(rnd)], 0);
+        case CREATE -> new Op(at, Kind.CREATE, created++, rnd.nextInt(o.users));
+        case LIST -> new Op(at, Kind.LIST, 0, rnd.nextInt(o.users));
+        case DELETE -> new Op(at, Kind.DELETE, rnd.nextInt(o.links), 0);
+      };
+    }
+
+    @Override
+    public void close() {}
+  }
+
+  private static final class ReplayedOps implements OpSource {
+    private final BufferedReader in;
+
+    ReplayedOps(Path file) throws IOException {
+      this.in = Files.newBufferedReader(file);
+      in.readLine(); // header
+    }
+
+    @Override
+    public synchronized Op next(long nowMicros) {
+      try {
+        String line;
+        do {
+          line = in.readLine();
+          if (line == null) return null;
+        } while (line.isBlank());
+        return GSON.fromJson(line, Op.class);
+      } catch (IOException e) {
+        throw new UncheckedIOException("Replay error: " + e.getMessage(), e);
+      }
+    }
+
+    @Override
+    public void close() {
+      try {
+        in.close();
+      } catch (IOException ignored) {
+      }
+    }
+  }
+
+  private static final class RecordingOps implements OpSource {
+    private final OpSource source;
+    private final BufferedWriter out;
+
+    RecordingOps(OpSource source, Path file, Options o) throws IOException {
+      this.source = source;
+      this.out = Files.newBufferedWriter(file);
+      out.write(GSON.toJson(o));
+      out.newLine();
+    }
+
+    @Override
+    public synchronized Op next(long nowMicros) {
+      Op op = source.next(nowMicros);
+      if (op == null) return null;
+      try {
+        out.write(GSON.toJson(op));
+        out.newLine();
+      } catch (IOException e) {
+        throw new UncheckedIOException("Record error: " + e.getMessage(), e);
+      }
+      return op;
+    }
+
+    @Override
+    public void close() {
+      source.close();
+      try {
+        out.close();
+      } catch (IOException e) {
+        throw new UncheckedIOException("Record error: " + e.getMessage(), e);
+      }
+    }
+  }
+
+  /**
+   * Options of a recording, so a replay seeds the same links and users. The engine, click mode and
+   * database given on the command line still apply.
+   */
+  static Options readHeader(Path file, Options cli) throws IOException {
+    try (BufferedReader in = Files.newBufferedReader(file)) {
+      Options o = GSON.fromJson(in.readLine(), Options.class);
+      o.engine = cli.engine;
+      o.clickMode = cli.clickMode;
+      o.db = cli.db;
+      o.replay = cli.replay;
+      o.record = "";
+      return o;
+    }
+  }
+
+  /** Zipf ranks 0..n-1 with exponent s, by binary search over the cumulative distribution. */
+  static final class Zipf {
+    private final double[] cdf;
+
+    Zipf(int n, double s) {
+      cdf = new double[n];
+      double sum = 0;
+      for (int k = 0; k < n; k++) cdf[k] = sum += 1 / Math.pow(k + 1, s);
+      for (int k = 0; k < n; k++) cdf[k] /= sum;
+    }
+
+    int sample(SplittableRandom rnd) {
+      double u = rnd.nextDouble();
+      int lo = 0;
+      int hi = cdf.length - 1;
+      while (lo < hi) {
+        int mid = (lo + hi) >>> 1;
+        if (cdf[mid] < u) lo = mid + 1;
+        else hi = mid;
+      }
+      return lo;
+    }
+  }
+
+  private static void deleteTree(Path dir) {
+    try (Stream<Path> files = Files.walk(dir)) {
+      for (Path f : files.sorted(Comparator.reverseOrder()).toList()) {
+        Files.deleteIfExists(f);
+      }
+    } catch (IOException ignored) {
+    }
+  }
+}
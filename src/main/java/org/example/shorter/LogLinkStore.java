@@ -0,0 +1,1185 @@
+package org.example.shorter;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only storage engine. Every mutation is a record appended to the active segment ({@code
+ * segment-NNNNNNNN.log}); a memory-mapped open-addressing table ({@code index-NNNNNNNN.map}) maps
+ * the hash of a code to the location of its create record and holds the mutable state (clicks,
+ * limit, active), so a click costs one small sequential append plus an in-place slot update.
+ *
+ * <p>The table header stores the log position it is consistent with. A checkpoint forces the log
+ * and the table and then advances that position; on open the log tail after it is replayed. Records
+ * carry absolute values, so replaying a record whose effect already reached the table is harmless.
+ * A torn record at the end of the log is truncated.
+ *
+ * <p>Compaction seals the active segment, re-appends the create records of live, unexpired links
+ * (with their current state) to the new one, checkpoints and deletes the older segments.
+ */
+public class LogLinkStore implements LinkStore {
+  private static final int INDEX_MAGIC = 0x4C4E4B49; // "LNKI"
+  private static final int INDEX_VERSION = 2;
+  private static final int MIN_CAPACITY = 1024;
+  private static final int MAX_CAPACITY = 1 << 24;
+  private static final int COMPACT_CHUNK = 1024;
+
+  // header: magic, version, capacity, next id, code sequence, checkpoint segment/offset
+  private static final int H_MAGIC = 0;
+  private static final int H_VERSION = 4;
+  private static final int H_CAPACITY = 8;
+  private static final int H_NEXT_ID = 16;
+  private static final int H_SEQUENCE = 24;
+  private static final int H_CP_SEGMENT = 32;
+  private static final int H_CP_OFFSET = 40;
+  private static final int HEADER_BYTES = 64;
+
+  private static final int S_HASH = 0;
+  private static final int S_LOCATION = 8;
+  private static final int S_EXPIRES = 16;
+  private static final int S_ID = 24;
+  private static final int S_USER = 32;
+  private static final int S_CLICKS = 40;
+  private static final int S_MAX = 44;
+  private static final int S_LENGTH = 48;
+  private static final int S_STATE = 52;
+  private static final int S_URL = 56;
+  private static final int SLOT_BYTES = 64;
+
+  private static final int EMPTY = 0;
+  private static final int ACTIVE = 1;
+  private static final int DISABLED = 2;
+  private static final int DELETED = 3;
+
+  // record: int body length, int crc32c(body), body = type byte + payload
+  private static final int RECORD_HEADER = 8;
+  private static final byte CREATE = 1;
+  private static final byte CLICK = 2;
+  private static final byte LIMIT = 3;
+  private static final byte DELETE = 4;
+  private static final byte SEQUENCE = 5;
+  private static final int CODE_OFFSET = 1 + 8 + 8 + 8 + 4 + 4 + 1;
+
+  private final Path dir;
+  private final long segmentBytes;
+  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+  private final TreeMap<Integer, FileChannel> segments = new TreeMap<>();
+  // segments appended to since the last checkpoint; all of them are forced before the next one
+  private final TreeSet<Integer> unsynced = new TreeSet<>();
+  private final ScheduledExecutorService compactor;
+  private volatile Consumer<List<String>> dropListener = codes -> {};
+  // (owner, canonical url) hash -> code hashes of its live links, rebuilt from the slots on open;
+  // lets create dedup probe a few slots instead of scanning the table
+  private final Map<Long, Set<Long>> byUrl = new HashMap<>();
+
+  private int activeSegment;
+  private FileChannel active;
+  private long activeSize;
+  private long sealedBytes;
+  private ByteBuffer scratch = ByteBuffer.allocate(4096);
+
+  private int indexGeneration;
+  private FileChannel indexChannel;
+  private MappedByteBuffer table;
+  private int capacity;
+  private int used;
+  private int live;
+  private long liveBytes;
+  private long nextId;
+  private long sequence;
+
+  public LogLinkStore(Path dir) {
+    this(dir, 64L << 20, 0);
+  }
+
+  public LogLinkStore(Path dir, long segmentBytes, long compactSeconds) {
+    this.dir = dir;
+    this.segmentBytes = Math.min(segmentBytes, 1L << 30);
+    try {
+      Files.createDirectories(dir);
+      openSegments();
+      openIndex();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Log open error: " + e.getMessage(), e);
+    }
+    if (compactSeconds > 0) {
+      compactor = Executors.newSingleThreadScheduledExecutor(Threads.daemon("log-compact"));
+      compactor.scheduleWithFixedDelay(
+          () -> {
+            try {
+              maintain();
+            } catch (RuntimeException e) {
+              System.out.println("[log] " + e.getMessage());
+            }
+          },
+          compactSeconds,
+          compactSeconds,
+          TimeUnit.SECONDS);
+    } else {
+      compactor = null;
+    }
+  }
+
+  @Override
+  public Link insert(Link l) {
+    if (!tryInsert(l)) throw new RuntimeException("Log insert error: code already exists");
+    return l;
+  }
+
+  @Override
+  public boolean tryInsert(Link l) {
+    lock.writeLock().lock();
+    try {
+      long h = hash64(l.code);
+      if (find(l.code, h, null) >= 0) return false;
+      l.id = ++nextId;
+      long loc = appendCreate(l);
+      put(l, h, loc, RECORD_HEADER + scratchBody());
+      return true;
+    } catch (IOException e) {
+      throw new UncheckedIOException("Log insert error: " + e.getMessage(), e);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public boolean[] insertBatch(List<Link> links) {
+    lock.writeLock().lock();
+    try {
+      boolean[] inserted = new boolean[links.size()];
+      for (int i = 0; i < inserted.length; i++) inserted[i] = tryInsert(links.get(i));
+      return inserted;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public Set<String> existingCodes(Collection<String> codes) {
+    lock.readLock().lock();
+    try {
+      Set<String> out = new HashSet<>();
+      for (String code : codes) if (find(code, hash64(code), null) >= 0) out.add(code);
+      return out;
+    } catch (IOException e) {
+      throw new UncheckedIOException("Log read error: " + e.getMessage(), e);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public long leaseCodeBlock(int size) {
+    lock.writeLock().lock();
+    try {
+      long start = sequence;
+      sequence += size;
+      begin(SEQUENCE, 8);
+      scratch.putLong(sequence);
+      commit();
+      return start;
+    } catch (IOException e) {
+      throw new UncheckedIOException("Log sequence error: " + e.getMessage(), e);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public Optional<Link> findByCode(String code) {
+    lock.readLock().lock();
+    try {
+      ByteBuffer[] record = new ByteBuffer[1];
+      int i = find(code, hash64(code), record);
+      return i < 0 ? Optional.empty() : Optional.of(toLink(i, record[0]));
+    } catch (IOException e) {
+      throw new UncheckedIOException("Log read error: " + e.getMessage(), e);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public void forEachByUser(
+      String userUuid,
+      ListFilter filter,
+      long nowMs,
+      long afterId,
+      int limit,
+      Consumer<? super LinkView> sink) {
+    if (limit <= 0) return;
+    long before = afterId > 0 ? afterId : Long.MAX_VALUE;
+    lock.readLock().lock();
+    try {
+      // there is no per-user index: one pass over the slots keeps the newest `limit` matches in a
+      // min-heap of slot indices, so memory is bounded by the page and not by the owner's links
+      long uh = hash64(userUuid);
+      PriorityQueue<Integer> page =
+          new PriorityQueue<>(Comparator.comparingLong(i -> table.getLong(pos(i) + S_ID)));
+      for (int i = 0; i < capacity; i++) {
+        int p = pos(i);
+        if (!isLive(p) || table.getLong(p + S_USER) != uh) continue;
+        long id = table.getLong(p + S_ID);
+        if (id >= before || !slotMatches(p, filter, nowMs)) continue;
+        if (page.size() == limit && id <= table.getLong(pos(page.peek()) + S_ID)) continue;
+        if (!decode(readRecord(p)).userUuid.equals(userUuid)) continue;
+        page.add(i);
+        if (page.size() > limit) page.poll();
+      }
+      Integer[] newestFirst = page.toArray(new Integer[0]);
+      Arrays.sort(newestFirst, page.comparator().reversed());
+      for (int i : newestFirst) sink.accept(toLink(i, readRecord(pos(i))));
+    } catch (IOException e) {
+      throw new UncheckedIOException("Log read error: " + e.getMessage(), e);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public Map<String, Link> findLiveByUrls(
+      String userUuid, Collection<String> canonicalUrls, int maxClicks, long nowMs) {
+    long uh = hash64(userUuid);
+    Map<String, Link> out = new HashMap<>();
+    lock.readLock().lock();
+    try {
+      for (String canonical : canonicalUrls) {
+        Set<Long> codes = byUrl.get(urlKey(uh, UrlCanonicalizer.hash(canonical)));
+        if (codes == null || out.containsKey(canonical)) continue;
+        Link newest = null;
+        for (long h : codes) {
+          int mask = capacity - 1;
+          int i = (int) (h ^ (h >>> 32)) & mask;
+          for (int n = 0; n < capacity; n++, i = (i + 1) & mask) {
+            int p = pos(i);
+            int state = table.getInt(p + S_STATE);
+            if (state == EMPTY) break;
+            if (state == DELETED || table.getLong(p + S_HASH) != h) continue;
+            if (table.getLong(p + S_USER) != uh || table.getInt(p + S_MAX) != maxClicks) continue;
+            if (!slotMatches(p, ListFilter.ACTIVE, nowMs)) continue;
+            if (newest != null && table.getLong(p + S_ID) <= newest.id) continue;
+            Link l = toLink(i, readRecord(p));
+            if (l.userUuid.equals(userUuid)
+                && UrlCanonicalizer.canonical(l.originalUrl).equals(canonical)) {
+              newest = l;
+            }
+          }
+        }
+        if (newest != null) out.put(canonical, newest);
+      }
+      return out;
+    } catch (IOException e) {
+      throw new UncheckedIOException("Log read error: " + e.getMessage(), e);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public long maxId() {
+    lock.readLock().lock();
+    try {
+      return nextId;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public boolean supportsRangeReads() {
+    return false;
+  }
+
+  @Override
+  public void forEachInIdRange(long afterId, long toId, Consumer<? super LinkView> sink) {
+    lock.readLock().lock();
+    try {
+      for (int i = 0; i < capacity; i++) {
+        int p = pos(i);
+        long id = table.getLong(p + S_ID);
+        if (isLive(p) && id > afterId && id <= toId) sink.accept(toLink(i, readRecord(p)));
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Log read error: " + e.getMessage(), e);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public boolean deleteByCodeAndUser(String code, String userUuid) {
+    lock.writeLock().lock();
+    try {
+      ByteBuffer[] record = new ByteBuffer[1];
+      int i = find(code, hash64(code), record);
+      if (i < 0 || !userUuid.equals(decode(record[0]).userUuid)) return false;
+      delete(i, code);
+      return true;
+    } catch (IOException e) {
+      throw new UncheckedIOException("Log delete error: " + e.getMessage(), e);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public boolean updateLimit(String code, String userUuid, int newLimit) {
+    lock.writeLock().lock();
+    try {
+      ByteBuffer[] record = new ByteBuffer[1];
+      int i = find(code, hash64(code), record);
+      if (i < 0 || !userUuid.equals(decode(record[0]).userUuid)) return false;
+      byte[] c = utf8(code);
+      begin(LIMIT, 8 + c.length);
+      putBytes(c);
+      scratch.putInt(newLimit);
+      commit();
+      table.putInt(pos(i) + S_MAX, newLimit);
+      return true;
+    } catch (IOException e) {
+      throw new UncheckedIOException("Log update error: " + e.getMessage(), e);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public int deleteExpired(long nowMs) {
+    return deleteExpiredBatch(nowMs, Integer.MAX_VALUE).size();
+  }
+
+  @Override
+  public List<String> deleteExpiredBatch(long nowMs, int limit) {
+    lock.writeLock().lock();
+    try {
+      List<long[]> due = new ArrayList<>();
+      for (int i = 0; i < capacity; i++) {
+        int p = pos(i);
+        if (isLive(p) && table.getLong(p + S_EXPIRES) <= nowMs) {
+          due.add(new long[] {table.getLong(p + S_EXPIRES), i});
+        }
+      }
+      due.sort((a, b) -> Long.compare(a[0], b[0]));
+      List<String> out = new ArrayList<>();
+      for (long[] d : due) {
+        if (out.size() >= limit) break;
+        int i = (int) d[1];
+        String code = decode(readRecord(pos(i))).code;
+        delete(i, code);
+        out.add(code);
+      }
+      return out;
+    } catch (IOException e) {
+      throw new UncheckedIOException("Log delete error: " + e.getMessage(), e);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public List<String> deleteByCodes(List<String> codes) {
+    lock.writeLock().lock();
+    try {
+      List<String> out = new ArrayList<>();
+      for (String code : codes) {
+        int i = find(code, hash64(code), null);
+        if (i < 0) continue;
+        delete(i, code);
+        out.add(code);
+      }
+      return out;
+    } catch (IOException e) {
+      throw new UncheckedIOException("Log delete error: " + e.getMessage(), e);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public List<String> deleteExpiredByCodes(List<String> codes, long nowMs) {
+    lock.writeLock().lock();
+    try {
+      List<String> out = new ArrayList<>();
+      for (String code : codes) {
+        int i = find(code, hash64(code), null);
+        if (i < 0 || table.getLong(pos(i) + S_EXPIRES) > nowMs) continue;
+        delete(i, code);
+        out.add(code);
+      }
+      return out;
+    } catch (IOException e) {
+      throw new UncheckedIOException("Log delete error: " + e.getMessage(), e);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public void forEachExpiry(BiConsumer<String, Long> sink) {
+    lock.readLock().lock();
+    try {
+      for (int i = 0; i < capacity; i++) {
+        int p = pos(i);
+        if (isLive(p)) sink.accept(decode(readRecord(p)).code, table.getLong(p + S_EXPIRES));
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Log read error: " + e.getMessage(), e);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public long countExpired(long nowMs) {
+    lock.readLock().lock();
+    try {
+      long n = 0;
+      for (int i = 0; i < capacity; i++) {
+        int p = pos(i);
+        if (isLive(p) && table.getLong(p + S_EXPIRES) <= nowMs) n++;
+      }
+      return n;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public OpenResult consume(String code, long nowMs) {
+    lock.writeLock().lock();
+    try {
+      ByteBuffer[] record = new ByteBuffer[1];
+      int i = find(code, hash64(code), record);
+      if (i < 0) return OpenResult.NOT_FOUND;
+      int p = pos(i);
+      int clicks = table.getInt(p + S_CLICKS);
+      int max = table.getInt(p + S_MAX);
+      if (table.getLong(p + S_EXPIRES) <= nowMs) {
+        return OpenResult.of(OpenResult.Status.EXPIRED, toLink(i, record[0]));
+      }
+      if (table.getInt(p + S_STATE) != ACTIVE || clicks >= max) {
+        return OpenResult.of(OpenResult.Status.LIMIT_REACHED, toLink(i, record[0]));
+      }
+      clicks++;
+      boolean last = clicks >= max;
+      setClicks(i, code, clicks, last ? DISABLED : ACTIVE);
+      return OpenResult.of(
+          last ? OpenResult.Status.LAST_CLICK : OpenResult.Status.OK, toLink(i, record[0]));
+    } catch (IOException e) {
+      throw new UncheckedIOException("Log consume error: " + e.getMessage(), e);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public void addClicks(Map<String, Integer> deltas) {
+    lock.writeLock().lock();
+    try {
+      for (Map.Entry<String, Integer> e : deltas.entrySet()) {
+        int i = find(e.getKey(), hash64(e.getKey()), null);
+        if (i < 0) continue;
+        int p = pos(i);
+        int clicks = table.getInt(p + S_CLICKS) + e.getValue();
+        int state = clicks >= table.getInt(p + S_MAX) ? DISABLED : table.getInt(p + S_STATE);
+        setClicks(i, e.getKey(), clicks, state);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Log click flush error: " + e.getMessage(), e);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public void onDropped(Consumer<List<String>> listener) {
+    dropListener = listener;
+  }
+
+  /** Forces the log and the index and records the position the index is consistent with. */
+  public void checkpoint() {
+    lock.writeLock().lock();
+    try {
+      writeCheckpoint();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Log checkpoint error: " + e.getMessage(), e);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /** Checkpoints, then compacts when sealed segments are mostly garbage. */
+  public void maintain() {
+    checkpoint();
+    boolean worthIt;
+    lock.readLock().lock();
+    try {
+      worthIt = segments.size() > 1 && liveBytes * 2 < sealedBytes + activeSize;
+    } finally {
+      lock.readLock().unlock();
+    }
+    if (worthIt) compact();
+  }
+
+  /**
+   * Rewrites live links into a fresh segment and deletes the older ones. Runs in chunks so that
+   * readers and writers interleave with it; expired links are deleted on the way and reported to
+   * the {@link #onDropped} listener.
+   */
+  public void compact() {
+    int firstKept;
+    lock.writeLock().lock();
+    try {
+      roll();
+      firstKept = activeSegment;
+    } catch (IOException e) {
+      throw new UncheckedIOException("Log compaction error: " + e.getMessage(), e);
+    } finally {
+      lock.writeLock().unlock();
+    }
+
+    int generation = -1;
+    int next = 0;
+    while (true) {
+      List<String> dropped = new ArrayList<>();
+      lock.writeLock().lock();
+      try {
+        if (generation != indexGeneration) {
+          generation = indexGeneration;
+          next = 0;
+        }
+        if (next >= capacity) break;
+        long now = System.currentTimeMillis();
+        int end = Math.min(capacity, next + COMPACT_CHUNK);
+        for (int i = next; i < end; i++) relocate(i, firstKept, now, dropped);
+        next = end;
+      } catch (IOException e) {
+        throw new UncheckedIOException("Log compaction error: " + e.getMessage(), e);
+      } finally {
+        lock.writeLock().unlock();
+      }
+      if (!dropped.isEmpty()) dropListener.accept(dropped);
+    }
+
+    lock.writeLock().lock();
+    try {
+      writeCheckpoint();
+      for (Integer seg : new ArrayList<>(segments.headMap(firstKept).keySet())) {
+        FileChannel ch = segments.remove(seg);
+        sealedBytes -= ch.size();
+        ch.close();
+        Files.deleteIfExists(segmentFile(seg));
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Log compaction error: " + e.getMessage(), e);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  public int size() {
+    lock.readLock().lock();
+    try {
+      return live;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  int unsyncedSegments() {
+    lock.readLock().lock();
+    try {
+      return unsynced.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public int segmentCount() {
+    lock.readLock().lock();
+    try {
+      return segments.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public void close() {
+    if (compactor != null) {
+      // no shutdownNow: an interrupt during channel I/O would close the channel
+      compactor.shutdown();
+      try {
+        compactor.awaitTermination(30, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    lock.writeLock().lock();
+    try {
+      writeCheckpoint();
+      for (FileChannel ch : segments.values()) ch.close();
+      indexChannel.close();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Log close error: " + e.getMessage(), e);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  // --- slots ---
+
+  private static int pos(int i) {
+    return HEADER_BYTES + i * SLOT_BYTES;
+  }
+
+  private boolean isLive(int p) {
+    int s = table.getInt(p + S_STATE);
+    return s == ACTIVE || s == DISABLED;
+  }
+
+  private boolean slotMatches(int p, ListFilter filter, long nowMs) {
+    return switch (filter) {
+      case ALL -> true;
+      case ACTIVE -> table.getInt(p + S_STATE) == ACTIVE && table.getLong(p + S_EXPIRES) > nowMs;
+      case EXPIRED -> table.getLong(p + S_EXPIRES) <= nowMs;
+    };
+  }
+
+  /** Slot index of the code, or -1; the create record is handed back when {@code out} is set. */
+  private int find(String code, long h, ByteBuffer[] out) throws IOException {
+    int mask = capacity - 1;
+    int i = (int) (h ^ (h >>> 32)) & mask;
+    for (int n = 0; n < capacity; n++, i = (i + 1) & mask) {
+      int p = pos(i);
+      int state = table.getInt(p + S_STATE);
+      if (state == EMPTY) return -1;
+      if (state == DELETED || table.getLong(p + S_HASH) != h) continue;
+      ByteBuffer record = readRecord(p);
+      if (code.equals(codeOf(record))) {
+        if (out != null) out[0] = record;
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private void put(Link l, long h, long loc, int len) throws IOException {
+    int mask = capacity - 1;
+    int i = (int) (h ^ (h >>> 32)) & mask;
+    while (isLive(pos(i))) i = (i + 1) & mask;
+    int p = pos(i);
+    if (table.getInt(p + S_STATE) == EMPTY) used++;
+    live++;
+    liveBytes += len;
+    table.putLong(p + S_HASH, h);
+    table.putLong(p + S_LOCATION, loc);
+    table.putLong(p + S_EXPIRES, l.expiresAtMs);
+    table.putLong(p + S_ID, l.id);
+    table.putLong(p + S_USER, hash64(l.userUuid));
+    table.putLong(p + S_URL, UrlCanonicalizer.hash(l.originalUrl));
+    table.putInt(p + S_CLICKS, l.clicks);
+    table.putInt(p + S_MAX, l.maxClicks);
+    table.putInt(p + S_LENGTH, len);
+    table.putInt(p + S_STATE, l.active == 1 ? ACTIVE : DISABLED);
+    indexUrl(p);
+    if (used * 10L > capacity * 7L) rehash();
+  }
+
+  private static long urlKey(long userHash, long urlHash) {
+    return userHash * 31 + urlHash;
+  }
+
+  private void indexUrl(int p) {
+    long key = urlKey(table.getLong(p + S_USER), table.getLong(p + S_URL));
+    byUrl.computeIfAbsent(key, k -> new HashSet<>()).add(table.getLong(p + S_HASH));
+  }
+
+  private void unindexUrl(int p) {
+    long key = urlKey(table.getLong(p + S_USER), table.getLong(p + S_URL));
+    Set<Long> codes = byUrl.get(key);
+    if (codes != null && codes.remove(table.getLong(p + S_HASH)) && codes.isEmpty()) {
+      byUrl.remove(key);
+    }
+  }
+
+  private void tombstone(int i) {
+    int p = pos(i);
+    table.putInt(p + S_STATE, DELETED);
+    unindexUrl(p);
+    live--;
+    liveBytes -= table.getInt(p + S_LENGTH);
+  }
+
+  private void delete(int i, String code) throws IOException {
+    byte[] c = utf8(code);
+    begin(DELETE, 4 + c.length);
+    putBytes(c);
+    commit();
+    tombstone(i);
+  }
+
+  private void setClicks(int i, String code, int clicks, int state) throws IOException {
+    byte[] c = utf8(code);
+    begin(CLICK, 9 + c.length);
+    putBytes(c);
+    scratch.putInt(clicks);
+    scratch.put((byte) (state == ACTIVE ? 1 : 0));
+    commit();
+    int p = pos(i);
+    table.putInt(p + S_CLICKS, clicks);
+    table.putInt(p + S_STATE, state);
+  }
+
+  private Link toLink(int i, ByteBuffer record) {
+    int p = pos(i);
+    Link l = decode(record);
+    l.expiresAtMs = table.getLong(p + S_EXPIRES);
+    l.maxClicks = table.getInt(p + S_MAX);
+    l.clicks = table.getInt(p + S_CLICKS);
+    l.active = table.getInt(p + S_STATE) == ACTIVE ? 1 : 0;
+    return l;
+  }
+
+  /** Copies a live link from a segment older than {@code firstKept} into the active one. */
+  private void relocate(int i, int firstKept, long now, List<String> dropped) throws IOException {
+    int p = pos(i);
+    if (!isLive(p) || segmentOf(table.getLong(p + S_LOCATION)) >= firstKept) return;
+    if (table.getLong(p + S_EXPIRES) <= now) {
+      String code = decode(readRecord(p)).code;
+      delete(i, code);
+      dropped.add(code);
+      return;
+    }
+    int oldLen = table.getInt(p + S_LENGTH);
+    long loc = appendCreate(toLink(i, readRecord(p)));
+    int len = RECORD_HEADER + scratchBody();
+    table.putLong(p + S_LOCATION, loc);
+    table.putInt(p + S_LENGTH, len);
+    liveBytes += len - oldLen;
+  }
+
+  private void rehash() throws IOException {
+    int newCapacity = capacity;
+    if (live * 10L > capacity * 35L / 10) newCapacity = capacity * 2;
+    if (newCapacity > MAX_CAPACITY) throw new IOException("index is full");
+
+    int oldGeneration = indexGeneration;
+    FileChannel oldChannel = indexChannel;
+    MappedByteBuffer old = table;
+    int oldCapacity = capacity;
+
+    createIndex(oldGeneration + 1, newCapacity);
+    int mask = newCapacity - 1;
+    used = 0;
+    for (int i = 0; i < oldCapacity; i++) {
+      int from = HEADER_BYTES + i * SLOT_BYTES;
+      int state = old.getInt(from + S_STATE);
+      if (state != ACTIVE && state != DISABLED) continue;
+      long h = old.getLong(from + S_HASH);
+      int j = (int) (h ^ (h >>> 32)) & mask;
+      while (table.getInt(pos(j) + S_STATE) != EMPTY) j = (j + 1) & mask;
+      for (int b = 0; b < SLOT_BYTES; b += 8) table.putLong(pos(j) + b, old.getLong(from + b));
+      used++;
+    }
+    // keep the old checkpoint: records after it may not be applied yet (rehash during replay)
+    for (int b = H_NEXT_ID; b < HEADER_BYTES; b += 8) table.putLong(b, old.getLong(b));
+    forceLog();
+    table.force();
+    oldChannel.close();
+    Files.deleteIfExists(indexFile(oldGeneration));
+  }
+
+  // --- log ---
+
+  private static long location(int segment, long offset) {
+    return ((long) segment << 32) | offset;
+  }
+
+  private static int segmentOf(long location) {
+    return (int) (location >>> 32);
+  }
+
+  private Path segmentFile(int segment) {
+    return dir.resolve(String.format("segment-%08d.log", segment));
+  }
+
+  private Path indexFile(int generation) {
+    return dir.resolve(String.format("index-%08d.map", generation));
+  }
+
+  private void begin(byte type, int payloadBytes) {
+    int need = RECORD_HEADER + 1 + payloadBytes;
+    if (scratch.capacity() < need)
+      scratch = ByteBuffer.allocate(Math.max(need, scratch.capacity() * 2));
+    scratch.clear();
+    scratch.position(RECORD_HEADER);
+    scratch.put(type);
+  }
+
+  /** Body length of the record last built in {@code scratch}. */
+  private int scratchBody() {
+    return scratch.getInt(0);
+  }
+
+  private long commit() throws IOException {
+    int end = scratch.position();
+    int body = end - RECORD_HEADER;
+    CRC32C crc = new CRC32C();
+    crc.update(scratch.array(), RECORD_HEADER, body);
+    scratch.putInt(0, body);
+    scratch.putInt(4, (int) crc.getValue());
+    scratch.flip();
+    if (activeSize > 0 && activeSize + end > segmentBytes) roll();
+    long loc = location(activeSegment, activeSize);
+    while (scratch.hasRemaining()) activeSize += active.write(scratch, activeSize);
+    unsynced.add(activeSegment);
+    return loc;
+  }
+
+  private long appendCreate(Link l) throws IOException {
+    byte[] code = utf8(l.code);
+    byte[] user = utf8(l.userUuid);
+    byte[] url = utf8(l.originalUrl);
+    begin(CREATE, 8 + 8 + 8 + 4 + 4 + 1 + 12 + code.length + user.length + url.length);
+    scratch.putLong(l.id);
+    scratch.putLong(l.createdAtMs);
+    scratch.putLong(l.expiresAtMs);
+    scratch.putInt(l.maxClicks);
+    scratch.putInt(l.clicks);
+    scratch.put((byte) l.active);
+    putBytes(code);
+    putBytes(user);
+    putBytes(url);
+    return commit();
+  }
+
+  private void roll() throws IOException {
+    sealedBytes += activeSize;
+    openSegment(activeSegment + 1);
+  }
+
+  private void openSegment(int segment) throws IOException {
+    FileChannel ch =
+        FileChannel.open(
+            segmentFile(segment),
+            StandardOpenOption.CREATE,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+    segments.put(segment, ch);
+    activeSegment = segment;
+    active = ch;
+    activeSize = ch.size();
+  }
+
+  private ByteBuffer readRecord(int p) throws IOException {
+    long loc = table.getLong(p + S_LOCATION);
+    int len = table.getInt(p + S_LENGTH);
+    FileChannel ch = segments.get(segmentOf(loc));
+    ByteBuffer buf = ByteBuffer.allocate(len - RECORD_HEADER);
+    long at = (loc & 0xFFFFFFFFL) + RECORD_HEADER;
+    while (buf.hasRemaining()) {
+      if (ch.read(buf, at + buf.position()) < 0) throw new IOException("truncated record");
+    }
+    return buf.flip();
+  }
+
+  private void putBytes(byte[] b) {
+    scratch.putInt(b.length);
+    scratch.put(b);
+  }
+
+  private static byte[] utf8(String s) {
+    return s.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static String getString(ByteBuffer b) {
+    byte[] bytes = new byte[b.getInt()];
+    b.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static String codeOf(ByteBuffer createRecord) {
+    return getString(createRecord.duplicate().position(CODE_OFFSET));
+  }
+
+  private static Link decode(ByteBuffer createRecord) {
+    ByteBuffer b = createRecord.duplicate().position(1);
+    Link l = new Link();
+    l.id = b.getLong();
+    l.createdAtMs = b.getLong();
+    l.expiresAtMs = b.getLong();
+    l.maxClicks = b.getInt();
+    l.clicks = b.getInt();
+    l.active = b.get();
+    l.code = getString(b);
+    l.userUuid = getString(b);
+    l.originalUrl = getString(b);
+    return l;
+  }
+
+  // --- open and recovery ---
+
+  private void openSegments() throws IOException {
+    try (Stream<Path> files = Files.list(dir)) {
+      for (Path f : (Iterable<Path>) files::iterator) {
+        String name = f.getFileName().toString();
+        if (name.startsWith("segment-") && name.endsWith(".log")) {
+          openSegment(Integer.parseInt(name.substring(8, name.length() - 4)));
+        }
+      }
+    }
+    if (segments.isEmpty()) openSegment(1);
+    for (Map.Entry<Integer, FileChannel> e : segments.entrySet()) {
+      if (e.getKey() != segments.lastKey()) sealedBytes += e.getValue().size();
+    }
+    activeSegment = segments.lastKey();
+    active = segments.get(activeSegment);
+    activeSize = active.size();
+  }
+
+  private void openIndex() throws IOException {
+    List<Integer> generations = new ArrayList<>();
+    try (Stream<Path> files = Files.list(dir)) {
+      for (Path f : (Iterable<Path>) files::iterator) {
+        String name = f.getFileName().toString();
+        if (name.startsWith("index-") && name.endsWith(".map")) {
+          generations.add(Integer.parseInt(name.substring(6, name.length() - 4)));
+        }
+      }
+    }
+    generations.sort(null);
+    int newest = generations.isEmpty() ? 0 : generations.get(generations.size() - 1);
+    for (int g : generations) if (g != newest) Files.deleteIfExists(indexFile(g));
+
+    if (newest == 0 || !loadIndex(newest)) {
+      Files.deleteIfExists(indexFile(newest));
+      createIndex(newest + 1, MIN_CAPACITY);
+      table.putInt(H_CP_SEGMENT, segments.firstKey());
+      table.putLong(H_CP_OFFSET, 0);
+    }
+    recount();
+    replay(table.getInt(H_CP_SEGMENT), table.getLong(H_CP_OFFSET), false);
+    if (hasDanglingSlots()) {
+      // the mapped index reached disk ahead of the log it points into: rebuild it from the log
+      System.out.println("[log] index points past the log; rebuilding it from the segments");
+      indexChannel.close();
+      Files.deleteIfExists(indexFile(indexGeneration));
+      createIndex(indexGeneration + 1, MIN_CAPACITY);
+      table.putInt(H_CP_SEGMENT, segments.firstKey());
+      table.putLong(H_CP_OFFSET, 0);
+      recount();
+    }
+    replay(table.getInt(H_CP_SEGMENT), table.getLong(H_CP_OFFSET), true);
+    writeCheckpoint();
+  }
+
+  /** Whether a live slot refers to a record beyond the end of its segment. */
+  private boolean hasDanglingSlots() throws IOException {
+    for (int i = 0; i < capacity; i++) {
+      int p = pos(i);
+      if (!isLive(p)) continue;
+      long loc = table.getLong(p + S_LOCATION);
+      FileChannel ch = segments.get(segmentOf(loc));
+      if (ch == null || (loc & 0xFFFFFFFFL) + table.getInt(p + S_LENGTH) > ch.size()) return true;
+    }
+    return false;
+  }
+
+  private boolean loadIndex(int generation) throws IOException {
+    FileChannel ch =
+        FileChannel.open(indexFile(generation), StandardOpenOption.READ, StandardOpenOption.WRITE);
+    long size = ch.size();
+    if (size < HEADER_BYTES) {
+      ch.close();
+      return false;
+    }
+    ByteBuffer h = ByteBuffer.allocate(HEADER_BYTES);
+    while (h.hasRemaining() && ch.read(h, h.position()) >= 0) {}
+    int cap = h.getInt(H_CAPACITY);
+    int cpSegment = h.getInt(H_CP_SEGMENT);
+    FileChannel cpChannel = segments.get(cpSegment);
+    boolean valid =
+        h.getInt(H_MAGIC) == INDEX_MAGIC
+            && h.getInt(H_VERSION) == INDEX_VERSION
+            && cap >= MIN_CAPACITY
+            && cap <= MAX_CAPACITY
+            && Integer.bitCount(cap) == 1
+            && size == HEADER_BYTES + (long) cap * SLOT_BYTES
+            && cpChannel != null
+            && h.getLong(H_CP_OFFSET) <= cpChannel.size();
+    if (!valid) {
+      ch.close();
+      return false;
+    }
+    indexGeneration = generation;
+    indexChannel = ch;
+    capacity = cap;
+    table = ch.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    nextId = table.getLong(H_NEXT_ID);
+    sequence = table.getLong(H_SEQUENCE);
+    return true;
+  }
+
+  private void createIndex(int generation, int cap) throws IOException {
+    FileChannel ch =
+        FileChannel.open(
+            indexFile(generation),
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+    indexGeneration = generation;
+    indexChannel = ch;
+    capacity = cap;
+    table = ch.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + (long) cap * SLOT_BYTES);
+    table.putInt(H_MAGIC, INDEX_MAGIC);
+    table.putInt(H_VERSION, INDEX_VERSION);
+    table.putInt(H_CAPACITY, cap);
+  }
+
+  private void recount() {
+    used = 0;
+    live = 0;
+    liveBytes = 0;
+    byUrl.clear();
+    for (int i = 0; i < capacity; i++) {
+      int p = pos(i);
+      int state = table.getInt(p + S_STATE);
+      if (state != EMPTY) used++;
+      if (state == ACTIVE || state == DISABLED) {
+        live++;
+        liveBytes += table.getInt(p + S_LENGTH);
+        indexUrl(p);
+      }
+    }
+  }
+
+  private void writeCheckpoint() throws IOException {
+    forceLog();
+    table.force();
+    table.putLong(H_NEXT_ID, nextId);
+    table.putLong(H_SEQUENCE, sequence);
+    table.putInt(H_CP_SEGMENT, activeSegment);
+    table.putLong(H_CP_OFFSET, activeSize);
+    table.force();
+  }
+
+  /** Forces every segment appended to since the last force; the index must never lead the log. */
+  private void forceLog() throws IOException {
+    for (int segment : unsynced) {
+      FileChannel ch = segments.get(segment);
+      if (ch != null) ch.force(false);
+    }
+    unsynced.clear();
+  }
+
+  /**
+   * Reads every record from the given position on, re-applying them if {@code applying}, and
+   * truncates a torn tail.
+   */
+  private void replay(int fromSegment, long fromOffset, boolean applying) throws IOException {
+    for (int segment : new ArrayList<>(segments.tailMap(fromSegment).keySet())) {
+      FileChannel ch = segments.get(segment);
+      long size = ch.size();
+      long at = segment == fromSegment ? fromOffset : 0;
+      try (DataInputStream in =
+          new DataInputStream(
+              new BufferedInputStream(Files.newInputStream(segmentFile(segment)), 1 << 16))) {
+        in.skipNBytes(at);
+        while (at + RECORD_HEADER <= size) {
+          int body = in.readInt();
+          int crc = in.readInt();
+          if (body <= 0 || at + RECORD_HEADER + body > size) break;
+          byte[] bytes = new byte[body];
+          in.readFully(bytes);
+          CRC32C check = new CRC32C();
+          check.update(bytes);
+          if ((int) check.getValue() != crc) break;
+          if (applying) apply(ByteBuffer.wrap(bytes), location(segment, at), RECORD_HEADER + body);
+          at += RECORD_HEADER + body;
+        }
+      }
+      if (at < size) {
+        System.out.println(
+            "[log] " + segmentFile(segment).getFileName() + ": dropping torn tail at " + at);
+        ch.truncate(at);
+        if (segment == activeSegment) activeSize = at;
+        else sealedBytes -= size - at;
+      }
+    }
+  }
+
+  private void apply(ByteBuffer body, long loc, int len) throws IOException {
+    byte type = body.get();
+    if (type == CREATE) {
+      Link l = decode(body);
+      long h = hash64(l.code);
+      int i = find(l.code, h, null);
+      if (i >= 0) tombstone(i);
+      put(l, h, loc, len);
+      nextId = Math.max(nextId, l.id);
+      return;
+    }
+    if (type == SEQUENCE) {
+      sequence = Math.max(sequence, body.getLong());
+      return;
+    }
+    String code = getString(body);
+    int i = find(code, hash64(code), null);
+    if (i < 0) return;
+    int p = pos(i);
+    switch (type) {
+      case CLICK -> {
+        table.putInt(p + S_CLICKS, body.getInt());
+        table.putInt(p + S_STATE, body.get() == 1 ? ACTIVE : DISABLED);
+      }
+      case LIMIT -> table.putInt(p + S_MAX, body.getInt());
+      case DELETE -> tombstone(i);
+      default -> throw new IOException("unknown record type " + type);
+    }
+  }
+
+  private static long hash64(String s) {
+    long h = 0xcbf29ce484222325L;
+    for (int i = 0; i < s.length(); i++) {
+      h ^= s.charAt(i);
+      h *= 0x100000001b3L;
+    }
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    return h;
+  }
+}
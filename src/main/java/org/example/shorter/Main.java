@@ -1,14 +1,26 @@
 package org.example.shorter;
 
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Scanner;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
 
 public class Main {
+  private static final LongAdder CLEANUP_ERRORS =
+      Metrics.counter("shortener_cleanup_errors_total", "Cleanup runs that failed");
+  private static final LongAdder CLEANUP_RUNS =
+      Metrics.counter("shortener_cleanup_runs_total", "Cleanup runs since start");
+  private static final LongAdder CLEANUP_DELETED =
+      Metrics.counter("shortener_cleanup_deleted_total", "Links deleted by cleanup since start");
 
   public static void main(String[] args) {
     AppConfig cfg = new ConfigLoader().load("application.properties");
@@ -17,11 +29,39 @@ public class Main {
         new UserIdProvider(Path.of(System.getProperty("user.home"), ".shortener-uuid"))
             .getOrCreate();
 
-    LinkRepository repo = new LinkRepository(cfg.dbPath);
-    LinkService service =
-        new LinkService(repo, cfg.ttl, cfg.defaultLimit, cfg.codeLength, cfg.openBrowser);
+    LinkStore repo = LinkStore.open(cfg);
+    LinkService service = new LinkService(repo, cfg);
+    Runtime.getRuntime()
+        .addShutdownHook(
+            new Thread(
+                () -> {
+                  service.close();
+                  repo.close();
+                },
+                "shutdown-flush"));
 
-    startCleanup(repo, cfg);
+    ExpiryIndex expiryIndex = null;
+    if (cfg.expiryIndex) {
+      expiryIndex = ExpiryIndex.load(repo);
+      service.addListener(expiryIndex);
+    }
+    ExpirySweeper sweeper =
+        new ExpirySweeper(
+            repo,
+            expiryIndex,
+            cfg.cleanupBatch,
+            cfg.cleanupBatchMax,
+            cfg.cleanupChunkTargetMs,
+            cfg.cleanupPauseMs,
+            service::evict);
+    startCleanup(sweeper, cfg);
+    registerGauges(sweeper, expiryIndex);
+    startMetricsDump(cfg);
+
+    if (cfg.isHttpMode()) {
+      serveHttp(service, cfg);
+      return;
+    }
 
     printHelp(userId, cfg);
 
@@ -39,7 +79,7 @@ public class Main {
         if (line.isEmpty()) continue;
 
         List<String> parts = splitArgsWithQuotes(line);
-        String cmd = parts.get(0).toLowerCase();
+        String cmd = parts.get(0).toLowerCase(Locale.ROOT);
 
         try {
           switch (cmd) {
@@ -49,6 +89,11 @@ public class Main {
             }
             case "uuid" -> System.out.println(userId);
 
+            case "stats" -> {
+              if (parts.size() >= 2) System.out.println(service.clickStats(userId, parts.get(1)));
+              else System.out.print(Metrics.summary());
+            }
+
             case "create" -> {
               if (parts.size() < 2) {
                 System.out.println("Usage: create <url> [limit]");
@@ -62,6 +107,15 @@ public class Main {
               System.out.println("ttl: " + cfg.ttl);
             }
 
+            case "create-batch" -> {
+              if (parts.size() < 2) {
+                System.out.println("Usage: create-batch <file> [limit]");
+                break;
+              }
+              Integer limit = (parts.size() >= 3) ? parseInt(parts.get(2)) : null;
+              createBatch(service, userId, Path.of(parts.get(1)), limit);
+            }
+
             case "open" -> {
               if (parts.size() < 2) {
                 System.out.println("Usage: open <code>");
@@ -70,7 +124,7 @@ public class Main {
               System.out.println(service.open(parts.get(1)));
             }
 
-            case "list" -> System.out.print(service.list(userId));
+            case "list" -> listPage(service, userId, parts);
 
             case "info" -> {
               if (parts.size() < 2) {
@@ -98,6 +152,40 @@ public class Main {
               System.out.println(service.delete(userId, parts.get(1)));
             }
 
+            case "export" -> {
+              if (parts.size() < 2) {
+                System.out.println("Usage: export <file> [ndjson|binary]");
+                break;
+              }
+              Path file = Path.of(parts.get(1));
+              LinkArchive.Format format;
+              try {
+                format =
+                    parts.size() >= 3
+                        ? LinkArchive.Format.valueOf(parts.get(2).toUpperCase(Locale.ROOT))
+                        : LinkArchive.Format.forFile(file);
+              } catch (IllegalArgumentException e) {
+                System.out.println("Usage: export <file> [ndjson|binary]");
+                break;
+              }
+              long t0 = System.nanoTime();
+              long rows = service.exportLinks(file, format);
+              long ms = (System.nanoTime() - t0) / 1_000_000;
+              System.out.println("exported: " + rows + " links in " + ms + "ms");
+            }
+
+            case "import" -> {
+              if (parts.size() < 2) {
+                System.out.println("Usage: import <file>");
+                break;
+              }
+              long t0 = System.nanoTime();
+              LinkArchive.ImportResult r = service.importLinks(Path.of(parts.get(1)));
+              long ms = (System.nanoTime() - t0) / 1_000_000;
+              System.out.println(
+                  "imported: " + r.inserted + "/" + r.read + " links in " + ms + "ms");
+            }
+
             default -> System.out.println("Unknown command. Type: help");
           }
         } catch (Exception e) {
@@ -107,7 +195,26 @@ public class Main {
     }
   }
 
-  private static void startCleanup(LinkRepository repo, AppConfig cfg) {
+  private static void serveHttp(LinkService service, AppConfig cfg) {
+    LinkHttpServer server;
+    try {
+      server = new LinkHttpServer(service, cfg.httpPort, cfg.httpThreads);
+    } catch (IOException e) {
+      System.out.println("ERROR: cannot start HTTP server: " + e.getMessage());
+      return;
+    }
+    Runtime.getRuntime().addShutdownHook(new Thread(server::close, "http-stop"));
+    server.start();
+    System.out.println("listening on http://localhost:" + server.port() + "/");
+
+    try {
+      new CountDownLatch(1).await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static void startCleanup(ExpirySweeper sweeper, AppConfig cfg) {
     var ses =
         Executors.newSingleThreadScheduledExecutor(
             r -> {
@@ -118,19 +225,118 @@ public class Main {
             });
 
     long ms = cfg.cleanupPeriod.toMillis();
-    ses.scheduleAtFixedRate(
-        () -> {
-          try {
-            int deleted = repo.deleteExpired(System.currentTimeMillis());
-            if (deleted > 0) {
-              System.out.println("[notify] deleted expired links: " + deleted);
+    Runnable run =
+        new Runnable() {
+          @Override
+          public void run() {
+            long now = System.currentTimeMillis();
+            try {
+              int deleted = sweeper.runOnce(now);
+              CLEANUP_RUNS.increment();
+              CLEANUP_DELETED.add(deleted);
+              if (deleted > 0) {
+                System.out.println(
+                    "[notify] deleted expired links: "
+                        + deleted
+                        + " (total "
+                        + sweeper.totalDeleted()
+                        + ", batch "
+                        + sweeper.batchSize()
+                        + ")");
+              }
+            } catch (Exception e) {
+              CLEANUP_ERRORS.increment();
+              System.out.println("[cleanup] error: " + e.getMessage());
             }
-          } catch (Exception ignored) {
+            // with an expiry index the next run is timed to the next due link
+            ses.schedule(
+                this,
+                sweeper.nextRunDelayMs(System.currentTimeMillis(), ms),
+                TimeUnit.MILLISECONDS);
           }
-        },
-        ms,
-        ms,
-        TimeUnit.MILLISECONDS);
+        };
+    ses.schedule(
+        run, sweeper.nextRunDelayMs(System.currentTimeMillis(), ms), TimeUnit.MILLISECONDS);
+  }
+
+  private static void registerGauges(ExpirySweeper sweeper, ExpiryIndex expiryIndex) {
+    Metrics.gauge(
+        "shortener_cleanup_backlog", "Expired links left in the running sweep", sweeper::backlog);
+    Metrics.gauge(
+        "shortener_cleanup_batch_size", "Current adaptive delete chunk", sweeper::batchSize);
+    if (expiryIndex != null) {
+      Metrics.gauge(
+          "shortener_expiry_index_size", "Links tracked by the expiry index", expiryIndex::size);
+    }
+  }
+
+  // Prometheus text file, e.g. for the node_exporter textfile collector
+  private static void startMetricsDump(AppConfig cfg) {
+    if (cfg.metricsDumpPath.isEmpty() || cfg.metricsDumpSeconds <= 0) return;
+    Path file = Path.of(cfg.metricsDumpPath);
+    Executors.newSingleThreadScheduledExecutor(Threads.daemon("metrics-dump"))
+        .scheduleWithFixedDelay(
+            () -> {
+              try {
+                Metrics.dump(file);
+              } catch (IOException e) {
+                System.out.println("[metrics] cannot write " + file + ": " + e.getMessage());
+              }
+            },
+            cfg.metricsDumpSeconds,
+            cfg.metricsDumpSeconds,
+            TimeUnit.SECONDS);
+  }
+
+  // list [--after <cursor>] [--limit n] [--active|--expired]
+  private static void listPage(LinkService service, UUID userId, List<String> parts) {
+    long after = 0;
+    int limit = LinkService.DEFAULT_PAGE_SIZE;
+    LinkStore.ListFilter filter = LinkStore.ListFilter.ALL;
+    for (int i = 1; i < parts.size(); i++) {
+      switch (parts.get(i)) {
+        case "--after" -> after = parseLong(argValue(parts, ++i));
+        case "--limit" -> limit = parseInt(argValue(parts, ++i));
+        case "--active" -> filter = LinkStore.ListFilter.ACTIVE;
+        case "--expired" -> filter = LinkStore.ListFilter.EXPIRED;
+        default ->
+            throw new IllegalArgumentException(
+                "Usage: list [--after <cursor>] [--limit n] [--active|--expired]");
+      }
+    }
+    service.list(userId, filter, after, limit, System.out);
+  }
+
+  private static String argValue(List<String> parts, int i) {
+    if (i >= parts.size())
+      throw new IllegalArgumentException("Missing value for " + parts.get(i - 1));
+    return parts.get(i);
+  }
+
+  // one URL per line; blank lines and lines starting with # are skipped
+  private static void createBatch(LinkService service, UUID userId, Path file, Integer limit)
+      throws IOException {
+    List<String> urls = new ArrayList<>();
+    try (Stream<String> lines = Files.lines(file)) {
+      lines.map(String::trim).filter(l -> !l.isEmpty() && !l.startsWith("#")).forEach(urls::add);
+    }
+
+    long t0 = System.nanoTime();
+    List<LinkService.BatchResult> results = service.createBatch(userId, urls, limit);
+    long ms = (System.nanoTime() - t0) / 1_000_000;
+
+    int ok = 0;
+    StringBuilder sb = new StringBuilder();
+    for (LinkService.BatchResult r : results) {
+      if (r.isOk()) {
+        ok++;
+        sb.append(r.link.code).append('\t').append(r.url).append('\n');
+      } else {
+        sb.append("ERROR\t").append(r.url).append('\t').append(r.error).append('\n');
+      }
+    }
+    System.out.print(sb);
+    System.out.println("created: " + ok + "/" + results.size() + " in " + ms + "ms");
   }
 
   private static int parseInt(String s) {
@@ -141,15 +347,27 @@ public class Main {
     }
   }
 
+  private static long parseLong(String s) {
+    try {
+      return Long.parseLong(s);
+    } catch (Exception e) {
+      throw new IllegalArgumentException("Invalid number");
+    }
+  }
+
   private static void printHelp(UUID userId, AppConfig cfg) {
     System.out.println("user: " + userId);
     System.out.println("commands:");
     System.out.println("  create <url> [limit]");
+    System.out.println("  create-batch <file> [limit]");
     System.out.println("  open <code>");
-    System.out.println("  list");
+    System.out.println("  list [--after <cursor>] [--limit n] [--active|--expired]");
     System.out.println("  info <code>");
     System.out.println("  set-limit <code> <limit>");
     System.out.println("  delete <code>");
+    System.out.println("  export <file> [ndjson|binary]");
+    System.out.println("  import <file>");
+    System.out.println("  stats [code]");
     System.out.println("  uuid");
     System.out.println("  help");
     System.out.println("  exit");
@@ -0,0 +1,137 @@
+package org.example.shorter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Process-wide registry of latency histograms, counters and gauges. A series is a metric name plus
+ * an optional Prometheus label set ({@code status="ok"}). Rendered as a console summary for the
+ * {@code stats} command and as Prometheus text for the dump file.
+ */
+public final class Metrics {
+  private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+  private static final Map<String, Object> SERIES = new ConcurrentSkipListMap<>();
+  private static final Map<String, String> HELP = new ConcurrentHashMap<>();
+
+  private Metrics() {}
+
+  public static LatencyHistogram histogram(String name, String help) {
+    return histogram(name, "", help);
+  }
+
+  public static LatencyHistogram histogram(String name, String labels, String help) {
+    HELP.putIfAbsent(name, help);
+    return (LatencyHistogram)
+        SERIES.computeIfAbsent(key(name, labels), k -> new LatencyHistogram());
+  }
+
+  public static LongAdder counter(String name, String help) {
+    return counter(name, "", help);
+  }
+
+  public static LongAdder counter(String name, String labels, String help) {
+    HELP.putIfAbsent(name, help);
+    return (LongAdder) SERIES.computeIfAbsent(key(name, labels), k -> new LongAdder());
+  }
+
+  /** Registers (or replaces) a gauge read at render time. */
+  public static void gauge(String name, String help, LongSupplier value) {
+    HELP.putIfAbsent(name, help);
+    SERIES.put(name, value);
+  }
+
+  /** Prometheus text exposition format; histograms are rendered as summaries in seconds. */
+  public static String prometheus() {
+    StringBuilder sb = new StringBuilder();
+    String lastName = null;
+    for (Map.Entry<String, Object> e : SERIES.entrySet()) {
+      String key = e.getKey();
+      int brace = key.indexOf('{');
+      String name = brace < 0 ? key : key.substring(0, brace);
+      String labels = brace < 0 ? "" : key.substring(brace + 1, key.length() - 1);
+      Object m = e.getValue();
+      if (!name.equals(lastName)) {
+        sb.append("# HELP ").append(name).append(' ').append(HELP.get(name)).append('\n');
+        sb.append("# TYPE ").append(name).append(' ').append(type(m)).append('\n');
+        lastName = name;
+      }
+      if (m instanceof LatencyHistogram h) {
+        for (double q : QUANTILES) {
+          String ql = (labels.isEmpty() ? "" : labels + ",") + "quantile=\"" + q + "\"";
+          line(sb, name, ql, seconds(h.quantileNanos(q)));
+        }
+        line(sb, name + "_sum", labels, seconds(h.sumNanos()));
+        line(sb, name + "_count", labels, Long.toString(h.count()));
+      } else if (m instanceof LongAdder c) {
+        line(sb, name, labels, Long.toString(c.sum()));
+      } else {
+        line(sb, name, labels, Long.toString(((LongSupplier) m).getAsLong()));
+      }
+    }
+    return sb.toString();
+  }
+
+  /** One line per series for the console. */
+  public static String summary() {
+    StringBuilder sb = new StringBuilder();
+    for (Map.Entry<String, Object> e : SERIES.entrySet()) {
+      Object m = e.getValue();
+      sb.append(e.getKey()).append(": ");
+      if (m instanceof LatencyHistogram h) {
+        sb.append("n=").append(h.count());
+        if (h.count() > 0) {
+          sb.append(" mean=").append(micros(h.sumNanos() / h.count()));
+          sb.append(" p50=").append(micros(h.quantileNanos(0.5)));
+          sb.append(" p99=").append(micros(h.quantileNanos(0.99)));
+          sb.append(" p999=").append(micros(h.quantileNanos(0.999)));
+          sb.append(" max=").append(micros(h.maxNanos()));
+        }
+      } else if (m instanceof LongAdder c) {
+        sb.append(c.sum());
+      } else {
+        sb.append(((LongSupplier) m).getAsLong());
+      }
+      sb.append('\n');
+    }
+    return sb.toString();
+  }
+
+  /** Writes {@link #prometheus()} to {@code file} via a temp file and an atomic rename. */
+  public static void dump(Path file) throws IOException {
+    Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+    Files.writeString(tmp, prometheus());
+    Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  private static String key(String name, String labels) {
+    return labels.isEmpty() ? name : name + "{" + labels + "}";
+  }
+
+  private static String type(Object m) {
+    if (m instanceof LatencyHistogram) return "summary";
+    return m instanceof LongAdder ? "counter" : "gauge";
+  }
+
+  private static void line(StringBuilder sb, String name, String labels, String value) {
+    sb.append(name);
+    if (!labels.isEmpty()) sb.append('{').append(labels).append('}');
+    sb.append(' ').append(value).append('\n');
+  }
+
+  private static String seconds(long nanos) {
+    return String.format(Locale.ROOT, "%.9f", nanos / 1e9);
+  }
+
+  private static String micros(long nanos) {
+    return String.format(Locale.ROOT, "%.1fus", nanos / 1e3);
+  }
+}
@@ -0,0 +1,53 @@
+package org.example.shorter;
+
+/**
+ * Outcome of opening a code: a status plus, when known, the link state after the decision. The
+ * console and the HTTP front end format it themselves; rejections without a link are shared
+ * constants, so a negative cache hit allocates nothing.
+ */
+public final class OpenResult {
+
+  public enum Status {
+    OK,
+    LAST_CLICK,
+    EXPIRED,
+    LIMIT_REACHED,
+    NOT_FOUND;
+
+    public boolean redirects() {
+      return this == OK || this == LAST_CLICK;
+    }
+  }
+
+  public static final OpenResult NOT_FOUND = new OpenResult(Status.NOT_FOUND, null);
+  private static final OpenResult EXPIRED = new OpenResult(Status.EXPIRED, null);
+  private static final OpenResult LIMIT_REACHED = new OpenResult(Status.LIMIT_REACHED, null);
+
+  public final Status status;
+
+  /** State after the click for redirects, the current state for rejections; may be null. */
+  public final LinkView link;
+
+  private OpenResult(Status status, LinkView link) {
+    this.status = status;
+    this.link = link;
+  }
+
+  public static OpenResult of(Status status, LinkView link) {
+    return link == null ? rejected(status) : new OpenResult(status, link);
+  }
+
+  public static OpenResult rejected(Status status) {
+    return switch (status) {
+      case EXPIRED -> EXPIRED;
+      case LIMIT_REACHED -> LIMIT_REACHED;
+      case NOT_FOUND -> NOT_FOUND;
+      default -> throw new IllegalArgumentException("not a rejection: " + status);
+    };
+  }
+
+  /** Redirect target; null for rejections. */
+  public String url() {
+    return status.redirects() ? link.originalUrl() : null;
+  }
+}
@@ -0,0 +1,196 @@
+package org.example.shorter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Immutable compact form of a link for the paths that keep many of them on the heap (the cache, the
+ * in-memory engine, buffered click counters). A canonical UUID owner is stored as two longs; the
+ * code, a non-UUID owner and the URL share one byte array (UTF-8, the URL in {@link UrlCodec} form)
+ * and are decoded only when asked for. A packed link takes well under half the heap of a {@link
+ * Link} with its three strings.
+ */
+public final class PackedLink implements LinkView {
+  private static final int UUID_OWNER = -1;
+
+  private final long id;
+  private final long createdAtMs;
+  private final long expiresAtMs;
+  private final long userHi;
+  private final long userLo;
+  private final int maxClicks;
+  private final int clicks;
+  private final int codeLength;
+  private final int userLength; // UUID_OWNER when the owner is packed into userHi/userLo
+  private final boolean active;
+  private final byte[] data; // code | owner (non-UUID only) | encoded url
+
+  private PackedLink(
+      long id,
+      long createdAtMs,
+      long expiresAtMs,
+      long userHi,
+      long userLo,
+      int maxClicks,
+      int clicks,
+      int codeLength,
+      int userLength,
+      boolean active,
+      byte[] data) {
+    this.id = id;
+    this.createdAtMs = createdAtMs;
+    this.expiresAtMs = expiresAtMs;
+    this.userHi = userHi;
+    this.userLo = userLo;
+    this.maxClicks = maxClicks;
+    this.clicks = clicks;
+    this.codeLength = codeLength;
+    this.userLength = userLength;
+    this.active = active;
+    this.data = data;
+  }
+
+  public static PackedLink of(LinkView l) {
+    if (l instanceof PackedLink p) return p;
+    byte[] code = l.code().getBytes(StandardCharsets.UTF_8);
+    byte[] url = UrlCodec.encode(l.originalUrl());
+    UUID owner = canonicalUuid(l.userUuid());
+    byte[] user = owner == null ? l.userUuid().getBytes(StandardCharsets.UTF_8) : new byte[0];
+
+    byte[] data = new byte[code.length + user.length + url.length];
+    System.arraycopy(code, 0, data, 0, code.length);
+    System.arraycopy(user, 0, data, code.length, user.length);
+    System.arraycopy(url, 0, data, code.length + user.length, url.length);
+    return new PackedLink(
+        l.id(),
+        l.createdAtMs(),
+        l.expiresAtMs(),
+        owner == null ? 0 : owner.getMostSignificantBits(),
+        owner == null ? 0 : owner.getLeastSignificantBits(),
+        l.maxClicks(),
+        l.clicks(),
+        code.length,
+        owner == null ? user.length : UUID_OWNER,
+        l.isActive(),
+        data);
+  }
+
+  /** Same link with new click state; shares the byte array. */
+  public PackedLink withClicks(int clicks, boolean active) {
+    return new PackedLink(
+        id,
+        createdAtMs,
+        expiresAtMs,
+        userHi,
+        userLo,
+        maxClicks,
+        clicks,
+        codeLength,
+        userLength,
+        active,
+        data);
+  }
+
+  public PackedLink withMaxClicks(int maxClicks) {
+    return new PackedLink(
+        id,
+        createdAtMs,
+        expiresAtMs,
+        userHi,
+        userLo,
+        maxClicks,
+        clicks,
+        codeLength,
+        userLength,
+        active,
+        data);
+  }
+
+  @Override
+  public long id() {
+    return id;
+  }
+
+  @Override
+  public String userUuid() {
+    if (userLength == UUID_OWNER) return new UUID(userHi, userLo).toString();
+    return new String(data, codeLength, userLength, StandardCharsets.UTF_8);
+  }
+
+  @Override
+  public boolean isOwnedBy(UUID user) {
+    if (userLength == UUID_OWNER) {
+      return user.getMostSignificantBits() == userHi && user.getLeastSignificantBits() == userLo;
+    }
+    return userUuid().equals(user.toString());
+  }
+
+  /** Owner check without decoding a packed UUID owner. */
+  public boolean isOwnedBy(String userUuid) {
+    if (userLength != UUID_OWNER) return userUuid().equals(userUuid);
+    UUID u = canonicalUuid(userUuid);
+    return u != null && isOwnedBy(u);
+  }
+
+  @Override
+  public String code() {
+    return new String(data, 0, codeLength, StandardCharsets.UTF_8);
+  }
+
+  @Override
+  public String originalUrl() {
+    int from = codeLength + Math.max(0, userLength);
+    return UrlCodec.decode(data, from, data.length);
+  }
+
+  @Override
+  public long createdAtMs() {
+    return createdAtMs;
+  }
+
+  @Override
+  public long expiresAtMs() {
+    return expiresAtMs;
+  }
+
+  @Override
+  public int maxClicks() {
+    return maxClicks;
+  }
+
+  @Override
+  public int clicks() {
+    return clicks;
+  }
+
+  @Override
+  public boolean isActive() {
+    return active;
+  }
+
+  @Override
+  public Link toLink() {
+    Link l = new Link();
+    l.id = id;
+    l.userUuid = userUuid();
+    l.code = code();
+    l.originalUrl = originalUrl();
+    l.createdAtMs = createdAtMs;
+    l.expiresAtMs = expiresAtMs;
+    l.maxClicks = maxClicks;
+    l.clicks = clicks;
+    l.active = active ? 1 : 0;
+    return l;
+  }
+
+  /** The UUID if {@code s} is its canonical lower-case form, otherwise null. */
+  private static UUID canonicalUuid(String s) {
+    if (s.length() != 36) return null;
+    try {
+      UUID u = UUID.fromString(s);
+      return u.toString().equals(s) ? u : null;
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,82 @@
+package org.example.shorter;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A long-lived SQLite connection with its own LRU cache of prepared statements. Not thread-safe:
+ * the pool hands it to one caller at a time. Cached statements must not be closed by callers.
+ */
+public class PooledConnection implements AutoCloseable {
+  private final Connection connection;
+  private final int cacheSize;
+  private final LinkedHashMap<String, PreparedStatement> statements =
+      new LinkedHashMap<>(16, 0.75f, true);
+
+  PooledConnection(Connection connection, int cacheSize) {
+    this.connection = connection;
+    this.cacheSize = Math.max(1, cacheSize);
+  }
+
+  public Connection connection() {
+    return connection;
+  }
+
+  public PreparedStatement prepare(String sql) throws SQLException {
+    return cached(sql, false);
+  }
+
+  public PreparedStatement prepareWithKeys(String sql) throws SQLException {
+    return cached(sql, true);
+  }
+
+  private PreparedStatement cached(String sql, boolean keys) throws SQLException {
+    String key = keys ? "K:" + sql : sql;
+    PreparedStatement ps = statements.get(key);
+    if (ps != null) {
+      ps.clearParameters();
+      return ps;
+    }
+    ps =
+        keys
+            ? connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)
+            : connection.prepareStatement(sql);
+    statements.put(key, ps);
+    if (statements.size() > cacheSize) {
+      Iterator<Map.Entry<String, PreparedStatement>> it = statements.entrySet().iterator();
+      closeQuietly(it.next().getValue());
+      it.remove();
+    }
+    return ps;
+  }
+
+  boolean isClosed() {
+    try {
+      return connection.isClosed();
+    } catch (SQLException e) {
+      return true;
+    }
+  }
+
+  @Override
+  public void close() {
+    for (PreparedStatement ps : statements.values()) closeQuietly(ps);
+    statements.clear();
+    try {
+      connection.close();
+    } catch (SQLException ignored) {
+    }
+  }
+
+  private static void closeQuietly(PreparedStatement ps) {
+    try {
+      ps.close();
+    } catch (SQLException ignored) {
+    }
+  }
+}
@@ -0,0 +1,102 @@
+package org.example.shorter;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Offline copy of a links database into a sharded layout (or from one shard count to another):
+ *
+ * <pre>
+ * java -cp link-short.jar org.example.shorter.ReshardTool shortener.db shortener.db 8
+ * java -cp link-short.jar org.example.shorter.ReshardTool shortener.db shortener-v2.db 16 8
+ * </pre>
+ *
+ * The arguments are the source path, the target base path, the target shard count and optionally
+ * the source shard count (default: a single file). Links are streamed by id range and inserted in
+ * batches; ids are reassigned, codes that already exist in the target are skipped, so an
+ * interrupted run can simply be repeated. The copy never deletes from the source, so the target
+ * must not share any file with it: resharding in place would leave moved links behind in their old
+ * shard. Stop the service first and point {@code db.path} at the target afterwards.
+ */
+public final class ReshardTool {
+  private static final long RANGE_IDS = 50_000;
+  private static final int BATCH = 2_000;
+
+  private ReshardTool() {}
+
+  public static void main(String[] args) {
+    if (args.length < 3) {
+      System.out.println("Usage: ReshardTool <source-db> <target-db> <shards> [source-shards]");
+      System.exit(2);
+    }
+    int shards = Integer.parseInt(args[2]);
+    int sourceShards = args.length >= 4 ? Integer.parseInt(args[3]) : 1;
+    if (overlaps(args[0], sourceShards, args[1], shards)) {
+      System.out.println("source and target layouts share files; pick a new target path");
+      System.exit(2);
+    }
+    DbConfig db = DbConfig.defaults();
+    try (LinkStore source =
+            sourceShards > 1
+                ? new ShardedLinkStore(args[0], sourceShards, db)
+                : new LinkRepository(args[0], db);
+        ShardedLinkStore target = new ShardedLinkStore(args[1], shards, db)) {
+      long t0 = System.nanoTime();
+      long copied = copy(source, target);
+      long ms = (System.nanoTime() - t0) / 1_000_000;
+      System.out.println("copied: " + copied + " links into " + shards + " shards in " + ms + "ms");
+    }
+  }
+
+  /** Whether any shard file of the target layout is also a file of the source layout. */
+  public static boolean overlaps(String source, int sourceShards, String target, int shards) {
+    Set<Path> files = new HashSet<>();
+    if (sourceShards > 1) {
+      for (int s = 0; s < sourceShards; s++) files.add(file(ShardedLinkStore.shardPath(source, s)));
+    } else {
+      files.add(file(source));
+    }
+    for (int s = 0; s < shards; s++) {
+      if (files.contains(file(ShardedLinkStore.shardPath(target, s)))) return true;
+    }
+    return false;
+  }
+
+  private static Path file(String path) {
+    return Path.of(path).toAbsolutePath().normalize();
+  }
+
+  /** Copies every link and the code sequence; returns the number of links inserted. */
+  public static long copy(LinkStore source, LinkStore target) {
+    long inserted = 0;
+    long maxId = source.maxId();
+    List<Link> batch = new ArrayList<>(BATCH);
+    for (long from = 0; from < maxId; from += RANGE_IDS) {
+      source.forEachInIdRange(from, Math.min(from + RANGE_IDS, maxId), l -> batch.add(l.toLink()));
+      while (batch.size() >= BATCH) inserted += flush(target, batch, BATCH);
+    }
+    inserted += flush(target, batch, batch.size());
+
+    // the sequence must not hand out values the source already used
+    long next = source.leaseCodeBlock(0);
+    long current = target.leaseCodeBlock(0);
+    while (current < next) {
+      int step = (int) Math.min(Integer.MAX_VALUE, next - current);
+      target.leaseCodeBlock(step);
+      current += step;
+    }
+    return inserted;
+  }
+
+  private static long flush(LinkStore target, List<Link> batch, int count) {
+    if (count == 0) return 0;
+    List<Link> head = batch.subList(0, count);
+    long inserted = 0;
+    for (boolean ok : target.insertBatch(new ArrayList<>(head))) if (ok) inserted++;
+    head.clear();
+    return inserted;
+  }
+}
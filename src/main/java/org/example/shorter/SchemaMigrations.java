@@ -0,0 +1,138 @@
+package org.example.shorter;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * Versioned schema for the links database. The applied version is kept in {@code PRAGMA
+ * user_version}; on startup every migration above it runs in one transaction, so existing files
+ * upgrade in place. Migrations are append-only: never edit one that has shipped.
+ */
+public final class SchemaMigrations {
+
+  public static final class Migration {
+    public final int version;
+    public final String description;
+    public final String[] statements;
+
+    Migration(int version, String description, String... statements) {
+      this.version = version;
+      this.description = description;
+      this.statements = statements;
+    }
+  }
+
+  static final List<Migration> LINKS =
+      List.of(
+          new Migration(
+              1,
+              "links table",
+              """
+              CREATE TABLE IF NOT EXISTS links (
+                id INTEGER PRIMARY KEY AUTOINCREMENT,
+                user_uuid TEXT NOT NULL,
+                code TEXT NOT NULL UNIQUE,
+                original_url TEXT NOT NULL,
+                created_at_ms INTEGER NOT NULL,
+                expires_at_ms INTEGER NOT NULL,
+                max_clicks INTEGER NOT NULL,
+                clicks INTEGER NOT NULL,
+                active INTEGER NOT NULL
+              )
+              """),
+          new Migration(
+              2,
+              "listByUser index",
+              "CREATE INDEX IF NOT EXISTS idx_links_user_id ON links(user_uuid, id)"),
+          new Migration(
+              3,
+              "expiry index",
+              "CREATE INDEX IF NOT EXISTS idx_links_expires ON links(expires_at_ms)"),
+          new Migration(
+              4,
+              "code sequence blocks",
+              """
+              CREATE TABLE IF NOT EXISTS code_sequence (
+                name TEXT PRIMARY KEY,
+                next_value INTEGER NOT NULL
+              )
+              """),
+          new Migration(
+              5,
+              "canonical url hash for create dedup",
+              "ALTER TABLE links ADD COLUMN url_hash INTEGER",
+              "CREATE INDEX IF NOT EXISTS idx_links_user_url ON links(user_uuid, url_hash)"),
+          new Migration(6, "dictionary-encoded url", "ALTER TABLE links ADD COLUMN url_blob BLOB"),
+          new Migration(
+              7,
+              "store metadata",
+              """
+              CREATE TABLE IF NOT EXISTS meta (
+                key TEXT PRIMARY KEY,
+                value TEXT NOT NULL
+              )
+              """));
+
+  /** Click analytics database, kept in its own file so its writes never queue behind links. */
+  static final List<Migration> ANALYTICS =
+      List.of(
+          new Migration(
+              1,
+              "click events and per-minute rollups",
+              """
+              CREATE TABLE IF NOT EXISTS click_events (
+                at_ms INTEGER NOT NULL,
+                code TEXT NOT NULL
+              )
+              """,
+              "CREATE INDEX IF NOT EXISTS idx_click_events_at ON click_events(at_ms)",
+              """
+              CREATE TABLE IF NOT EXISTS click_rollups (
+                code TEXT NOT NULL,
+                minute INTEGER NOT NULL,
+                clicks INTEGER NOT NULL,
+                PRIMARY KEY (code, minute)
+              ) WITHOUT ROWID
+              """));
+
+  private SchemaMigrations() {}
+
+  public static int latestVersion() {
+    return latestVersion(LINKS);
+  }
+
+  static int latestVersion(List<Migration> migrations) {
+    return migrations.get(migrations.size() - 1).version;
+  }
+
+  /** Applies pending migrations and returns the resulting schema version. */
+  public static int migrate(ConnectionPool pool) throws SQLException {
+    return migrate(pool, LINKS);
+  }
+
+  static int migrate(ConnectionPool pool, List<Migration> migrations) throws SQLException {
+    int latest = latestVersion(migrations);
+    return pool.transaction(
+        c -> {
+          try (Statement st = c.connection().createStatement()) {
+            int current;
+            try (ResultSet rs = st.executeQuery("PRAGMA user_version")) {
+              current = rs.next() ? rs.getInt(1) : 0;
+            }
+            if (current > latest) {
+              throw new SQLException(
+                  "database schema v" + current + " is newer than this build (v" + latest + ")");
+            }
+            for (Migration m : migrations) {
+              if (m.version <= current) continue;
+              for (String sql : m.statements) st.execute(sql);
+              st.execute("PRAGMA user_version = " + m.version);
+              current = m.version;
+            }
+            return current;
+          }
+        });
+  }
+}
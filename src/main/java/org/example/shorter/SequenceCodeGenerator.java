@@ -0,0 +1,91 @@
+package org.example.shorter;
+
+/**
+ * Collision-free codes: a counter leased from the database in blocks is scrambled by a keyed
+ * Feistel permutation and written in base62. The permutation is a bijection on {@code [0,
+ * 62^length)} (cycle-walking over the next power of two), so distinct counter values never give the
+ * same code and consecutive links do not get guessable codes.
+ */
+public class SequenceCodeGenerator implements CodeGenerator {
+  private static final char[] ALPHABET =
+      "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz".toCharArray();
+  private static final int ROUNDS = 4;
+
+  private final LinkStore repo;
+  private final int length;
+  private final long domain;
+  private final int halfBits;
+  private final long halfMask;
+  private final long key;
+  private final int blockSize;
+
+  private long next;
+  private long blockEnd;
+
+  public SequenceCodeGenerator(LinkStore repo, int length, long key, int blockSize) {
+    this.repo = repo;
+    this.length = length;
+    this.domain = domain(length);
+    int bits = 64 - Long.numberOfLeadingZeros(domain - 1);
+    this.halfBits = (bits + 1) / 2;
+    this.halfMask = (1L << halfBits) - 1;
+    this.key = key;
+    this.blockSize = Math.max(1, blockSize);
+  }
+
+  @Override
+  public synchronized String next() {
+    if (next >= blockEnd) {
+      next = repo.leaseCodeBlock(blockSize);
+      blockEnd = next + blockSize;
+    }
+    if (next >= domain) throw new IllegalStateException("Code space exhausted");
+    return encode(permute(next++));
+  }
+
+  long permute(long value) {
+    long v = value;
+    do {
+      v = feistel(v);
+    } while (v >= domain);
+    return v;
+  }
+
+  private long feistel(long v) {
+    long left = (v >>> halfBits) & halfMask;
+    long right = v & halfMask;
+    for (int r = 0; r < ROUNDS; r++) {
+      long f = round(right, r) & halfMask;
+      long tmp = right;
+      right = left ^ f;
+      left = tmp;
+    }
+    return (left << halfBits) | right;
+  }
+
+  private long round(long x, int r) {
+    long h = x * 0x9E3779B97F4A7C15L + key + r * 0xD1B54A32D192ED03L;
+    h ^= h >>> 29;
+    h *= 0xBF58476D1CE4E5B9L;
+    return h ^ (h >>> 32);
+  }
+
+  String encode(long v) {
+    char[] out = new char[length];
+    for (int i = length - 1; i >= 0; i--) {
+      out[i] = ALPHABET[(int) (v % 62)];
+      v /= 62;
+    }
+    return new String(out);
+  }
+
+  // 62^length, capped so the Feistel halves fit in a long
+  static long domain(int length) {
+    long d = 1;
+    for (int i = 0; i < length; i++) {
+      if (d > (1L << 62) / 62) return 1L << 62;
+      d *= 62;
+    }
+    return d;
+  }
+}
@@ -0,0 +1,388 @@
+package org.example.shorter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+/**
+ * Links spread over N SQLite files by a hash of the code, so each shard has its own writer and
+ * readers and writes to different shards run in parallel. Calls for one code go to its shard;
+ * per-user listings and expiry cleanup fan out to all shards in parallel and are merged.
+ *
+ * <p>Ids are made global as {@code localId * N + shard}: unique across shards, and ordered within
+ * one shard like the local ids, which is what keyset paging and id-range exports need. The code
+ * sequence lives in shard 0.
+ */
+public class ShardedLinkStore implements LinkStore {
+  private final LinkRepository[] shards;
+  private final int n;
+  private final ExecutorService fanOut;
+
+  public ShardedLinkStore(String dbPath, int shardCount, DbConfig db) {
+    if (shardCount < 1) throw new IllegalArgumentException("storage.shards must be >= 1");
+    this.n = shardCount;
+    this.shards = new LinkRepository[shardCount];
+    for (int s = 0; s < shardCount; s++) shards[s] = new LinkRepository(shardPath(dbPath, s), db);
+    this.fanOut = Executors.newFixedThreadPool(shardCount, Threads.daemon("shard"));
+  }
+
+  /** File of shard {@code s}: {@code shortener.db} becomes {@code shortener-0.db} and so on. */
+  public static String shardPath(String dbPath, int s) {
+    int dot = dbPath.lastIndexOf('.');
+    int slash = Math.max(dbPath.lastIndexOf('/'), dbPath.lastIndexOf('\\'));
+    if (dot <= slash) return dbPath + "-" + s;
+    return dbPath.substring(0, dot) + "-" + s + dbPath.substring(dot);
+  }
+
+  public int shardCount() {
+    return n;
+  }
+
+  int shardOf(String code) {
+    // String.hashCode is stable across JVMs; the finaliser spreads short codes over the shards
+    int h = code.hashCode();
+    h ^= h >>> 16;
+    h *= 0x85ebca6b;
+    h ^= h >>> 13;
+    return Math.floorMod(h, n);
+  }
+
+  private long globalId(long localId, int s) {
+    return localId * n + s;
+  }
+
+  private <T extends LinkView> T globalize(T l, int s) {
+    if (l instanceof Link link) link.id = globalId(link.id, s);
+    return l;
+  }
+
+  @Override
+  public Link insert(Link l) {
+    int s = shardOf(l.code);
+    return globalize(shards[s].insert(l), s);
+  }
+
+  @Override
+  public boolean tryInsert(Link l) {
+    int s = shardOf(l.code);
+    boolean ok = shards[s].tryInsert(l);
+    if (ok) globalize(l, s);
+    return ok;
+  }
+
+  @Override
+  public boolean[] insertBatch(List<Link> links) {
+    List<List<Integer>> rows = partition(links.size(), i -> links.get(i).code);
+    boolean[] inserted = new boolean[links.size()];
+    forEachShard(
+        s -> {
+          List<Integer> idx = rows.get(s);
+          if (idx.isEmpty()) return null;
+          List<Link> part = new ArrayList<>(idx.size());
+          for (int i : idx) part.add(links.get(i));
+          boolean[] ok = shards[s].insertBatch(part);
+          for (int k = 0; k < ok.length; k++) {
+            inserted[idx.get(k)] = ok[k];
+            if (ok[k]) globalize(part.get(k), s);
+          }
+          return null;
+        });
+    return inserted;
+  }
+
+  @Override
+  public Set<String> existingCodes(Collection<String> codes) {
+    List<List<String>> parts = partitionCodes(codes);
+    Set<String> out = new HashSet<>();
+    for (Set<String> found :
+        forEachShard(
+            s ->
+                parts.get(s).isEmpty()
+                    ? Set.<String>of()
+                    : shards[s].existingCodes(parts.get(s)))) {
+      out.addAll(found);
+    }
+    return out;
+  }
+
+  @Override
+  public long leaseCodeBlock(int size) {
+    return shards[0].leaseCodeBlock(size);
+  }
+
+  @Override
+  public Optional<Link> findByCode(String code) {
+    int s = shardOf(code);
+    return shards[s].findByCode(code).map(l -> globalize(l, s));
+  }
+
+  @Override
+  public void forEachByUser(
+      String userUuid,
+      ListFilter filter,
+      long nowMs,
+      long afterId,
+      int limit,
+      Consumer<? super LinkView> sink) {
+    if (limit <= 0) return;
+    // every shard returns its newest `limit` matches below the cursor; a k-way merge on the global
+    // id then yields the page, so memory is bounded by shards * limit
+    List<List<Link>> pages =
+        forEachShard(
+            s -> {
+              List<Link> page = new ArrayList<>();
+              long bound = afterId > 0 ? localBound(afterId, s) : 0;
+              if (afterId > 0 && bound <= 0) return page;
+              shards[s].forEachByUser(
+                  userUuid, filter, nowMs, bound, limit, l -> page.add(globalize(l.toLink(), s)));
+              return page;
+            });
+    PriorityQueue<int[]> heads =
+        new PriorityQueue<>(
+            (a, b) -> Long.compare(pages.get(b[0]).get(b[1]).id, pages.get(a[0]).get(a[1]).id));
+    for (int s = 0; s < n; s++) if (!pages.get(s).isEmpty()) heads.add(new int[] {s, 0});
+    for (int taken = 0; taken < limit && !heads.isEmpty(); taken++) {
+      int[] h = heads.poll();
+      sink.accept(pages.get(h[0]).get(h[1]));
+      if (++h[1] < pages.get(h[0]).size()) heads.add(h);
+    }
+  }
+
+  /**
+   * Exclusive bound on the local ids of shard {@code s} whose global id is below {@code globalId}.
+   */
+  private long localBound(long globalId, int s) {
+    return Math.floorDiv(globalId - s + n - 1, n);
+  }
+
+  @Override
+  public Map<String, Link> findLiveByUrls(
+      String userUuid, Collection<String> canonicalUrls, int maxClicks, long nowMs) {
+    Map<String, Link> out = new HashMap<>();
+    for (Map<String, Link> found :
+        forEachShard(
+            s -> {
+              Map<String, Link> m =
+                  shards[s].findLiveByUrls(userUuid, canonicalUrls, maxClicks, nowMs);
+              m.values().forEach(l -> globalize(l, s));
+              return m;
+            })) {
+      found.forEach((url, l) -> out.merge(url, l, (a, b) -> a.id > b.id ? a : b));
+    }
+    return out;
+  }
+
+  @Override
+  public long maxId() {
+    long max = 0;
+    List<Long> local = forEachShard(s -> shards[s].maxId());
+    for (int s = 0; s < n; s++) {
+      if (local.get(s) > 0) max = Math.max(max, globalId(local.get(s), s));
+    }
+    return max;
+  }
+
+  @Override
+  public void forEachInIdRange(long afterId, long toId, Consumer<? super LinkView> sink) {
+    for (int s = 0; s < n; s++) {
+      int shard = s;
+      long from = Math.floorDiv(afterId - s, n);
+      long to = Math.floorDiv(toId - s, n);
+      if (to > from) {
+        shards[s].forEachInIdRange(from, to, l -> sink.accept(globalize(l.toLink(), shard)));
+      }
+    }
+  }
+
+  @Override
+  public boolean deleteByCodeAndUser(String code, String userUuid) {
+    return shards[shardOf(code)].deleteByCodeAndUser(code, userUuid);
+  }
+
+  @Override
+  public boolean updateLimit(String code, String userUuid, int newLimit) {
+    return shards[shardOf(code)].updateLimit(code, userUuid, newLimit);
+  }
+
+  @Override
+  public int deleteExpired(long nowMs) {
+    int total = 0;
+    for (int deleted : forEachShard(s -> shards[s].deleteExpired(nowMs))) total += deleted;
+    return total;
+  }
+
+  /**
+   * Splits the limit over the shards and deletes in parallel. Shards that used their whole share
+   * get what the others left over, so a full result still means more may be due.
+   */
+  @Override
+  public List<String> deleteExpiredBatch(long nowMs, int limit) {
+    List<String> out = new ArrayList<>();
+    List<Integer> candidates = new ArrayList<>();
+    for (int s = 0; s < n; s++) candidates.add(s);
+    int left = limit;
+    while (left > 0 && !candidates.isEmpty()) {
+      int k = candidates.size();
+      int round = left;
+      List<Integer> shardsInRound = candidates;
+      List<List<String>> deleted =
+          forEach(
+              k,
+              i -> {
+                int share = round / k + (i < round % k ? 1 : 0);
+                return share == 0
+                    ? List.of()
+                    : shards[shardsInRound.get(i)].deleteExpiredBatch(nowMs, share);
+              });
+      List<Integer> full = new ArrayList<>();
+      for (int i = 0; i < k; i++) {
+        int share = round / k + (i < round % k ? 1 : 0);
+        List<String> codes = deleted.get(i);
+        out.addAll(codes);
+        left -= codes.size();
+        if (share > 0 && codes.size() == share) full.add(shardsInRound.get(i));
+      }
+      candidates = full;
+    }
+    return out;
+  }
+
+  @Override
+  public List<String> deleteByCodes(List<String> codes) {
+    List<List<String>> parts = partitionCodes(codes);
+    List<String> out = new ArrayList<>();
+    for (List<String> deleted :
+        forEachShard(
+            s ->
+                parts.get(s).isEmpty()
+                    ? List.<String>of()
+                    : shards[s].deleteByCodes(parts.get(s)))) {
+      out.addAll(deleted);
+    }
+    return out;
+  }
+
+  @Override
+  public List<String> deleteExpiredByCodes(List<String> codes, long nowMs) {
+    List<List<String>> parts = partitionCodes(codes);
+    List<String> out = new ArrayList<>();
+    for (List<String> deleted :
+        forEachShard(
+            s ->
+                parts.get(s).isEmpty()
+                    ? List.<String>of()
+                    : shards[s].deleteExpiredByCodes(parts.get(s), nowMs))) {
+      out.addAll(deleted);
+    }
+    return out;
+  }
+
+  @Override
+  public void forEachExpiry(BiConsumer<String, Long> sink) {
+    for (LinkRepository shard : shards) shard.forEachExpiry(sink);
+  }
+
+  @Override
+  public long countExpired(long nowMs) {
+    long total = 0;
+    for (long c : forEachShard(s -> shards[s].countExpired(nowMs))) total += c;
+    return total;
+  }
+
+  @Override
+  public OpenResult consume(String code, long nowMs) {
+    int s = shardOf(code);
+    OpenResult r = shards[s].consume(code, nowMs);
+    if (r.link != null) globalize(r.link, s);
+    return r;
+  }
+
+  @Override
+  public ClickGrant consumeClicks(String code, long nowMs, int n) {
+    int s = shardOf(code);
+    ClickGrant g = shards[s].consumeClicks(code, nowMs, n);
+    if (g.result.link != null) globalize(g.result.link, s);
+    return g;
+  }
+
+  @Override
+  public void addClicks(Map<String, Integer> deltas) {
+    List<Map<String, Integer>> parts = new ArrayList<>();
+    for (int s = 0; s < n; s++) parts.add(new HashMap<>());
+    for (Map.Entry<String, Integer> e : deltas.entrySet()) {
+      parts.get(shardOf(e.getKey())).put(e.getKey(), e.getValue());
+    }
+    forEachShard(
+        s -> {
+          if (!parts.get(s).isEmpty()) shards[s].addClicks(parts.get(s));
+          return null;
+        });
+  }
+
+  @Override
+  public void close() {
+    fanOut.shutdown();
+    for (LinkRepository shard : shards) shard.close();
+  }
+
+  private List<List<String>> partitionCodes(Collection<String> codes) {
+    List<List<String>> parts = new ArrayList<>();
+    for (int s = 0; s < n; s++) parts.add(new ArrayList<>());
+    for (String code : codes) parts.get(shardOf(code)).add(code);
+    return parts;
+  }
+
+  /** Row indexes per shard, keyed by the code of each row. */
+  private List<List<Integer>> partition(int size, IntFunction<String> codeOf) {
+    List<List<Integer>> parts = new ArrayList<>();
+    for (int s = 0; s < n; s++) parts.add(new ArrayList<>());
+    for (int i = 0; i < size; i++) parts.get(shardOf(codeOf.apply(i))).add(i);
+    return parts;
+  }
+
+  private <T> List<T> forEachShard(ShardCall<T> call) {
+    return forEach(n, call);
+  }
+
+  /** Runs {@code call(0..count-1)} on the fan-out pool and returns the results in index order. */
+  private <T> List<T> forEach(int count, ShardCall<T> call) {
+    List<T> out = new ArrayList<>(count);
+    if (count == 1) {
+      out.add(call.apply(0));
+      return out;
+    }
+    List<Future<T>> futures = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      int index = i;
+      futures.add(fanOut.submit((Callable<T>) () -> call.apply(index)));
+    }
+    try {
+      for (Future<T> f : futures) out.add(f.get());
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException r) throw r;
+      throw new RuntimeException("Shard error: " + e.getCause().getMessage(), e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Interrupted while waiting for shards", e);
+    }
+    return out;
+  }
+
+  private interface ShardCall<T> {
+    T apply(int shard);
+  }
+}
@@ -0,0 +1,33 @@
+package org.example.shorter;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+final class Threads {
+  private Threads() {}
+
+  /**
+   * A virtual-thread-per-task executor when the runtime has one (JDK 21+); the build targets 17, so
+   * it is looked up reflectively and falls back to a fixed pool of daemon threads.
+   */
+  static ExecutorService perTaskExecutor(String name, int fallbackThreads) {
+    try {
+      return (ExecutorService)
+          Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (ReflectiveOperationException e) {
+      return Executors.newFixedThreadPool(Math.max(1, fallbackThreads), daemon(name));
+    }
+  }
+
+  static ThreadFactory daemon(String name) {
+    AtomicInteger n = new AtomicInteger();
+    return r -> {
+      Thread t = new Thread(r);
+      t.setDaemon(true);
+      t.setName(name + "-" + n.incrementAndGet());
+      return t;
+    };
+  }
+}
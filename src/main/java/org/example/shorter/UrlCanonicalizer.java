@@ -0,0 +1,53 @@
+package org.example.shorter;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Locale;
+
+/**
+ * Canonical form of a URL for deduplication: lower-case scheme and host, no default port, "/" for
+ * an empty path and no trailing slash on other paths. Query and fragment are kept as given. The
+ * stored URL is never rewritten; the canonical form and its hash are only used as a lookup key.
+ */
+public final class UrlCanonicalizer {
+  private UrlCanonicalizer() {}
+
+  public static String canonical(String url) {
+    try {
+      URI u = new URI(url.trim());
+      if (u.getScheme() == null || u.getRawAuthority() == null) return url;
+      String scheme = u.getScheme().toLowerCase(Locale.ROOT);
+      String host = u.getHost() == null ? null : u.getHost().toLowerCase(Locale.ROOT);
+      int port = u.getPort();
+      if ((port == 80 && scheme.equals("http")) || (port == 443 && scheme.equals("https"))) {
+        port = -1;
+      }
+      String path = u.getRawPath();
+      if (path == null || path.isEmpty()) path = "/";
+      else if (path.length() > 1 && path.endsWith("/")) path = path.substring(0, path.length() - 1);
+
+      StringBuilder sb = new StringBuilder(url.length());
+      sb.append(scheme).append("://");
+      if (u.getRawUserInfo() != null) sb.append(u.getRawUserInfo()).append('@');
+      sb.append(host != null ? host : u.getRawAuthority());
+      if (host != null && port != -1) sb.append(':').append(port);
+      sb.append(path);
+      if (u.getRawQuery() != null) sb.append('?').append(u.getRawQuery());
+      if (u.getRawFragment() != null) sb.append('#').append(u.getRawFragment());
+      return sb.toString();
+    } catch (URISyntaxException e) {
+      return url;
+    }
+  }
+
+  /** 64-bit FNV-1a of the canonical URL, stored in {@code links.url_hash}. */
+  public static long hash(String url) {
+    String c = canonical(url);
+    long h = 0xcbf29ce484222325L;
+    for (int i = 0; i < c.length(); i++) {
+      h ^= c.charAt(i);
+      h *= 0x100000001b3L;
+    }
+    return h;
+  }
+}
@@ -0,0 +1,280 @@
+package org.example.shorter;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Compact binary form of a URL against a fixed shared dictionary. The first byte is the format
+ * version and the second selects a scheme prefix; the rest is a token stream:
+ *
+ * <ul>
+ *   <li>{@code 0x00-0x7F} an ASCII character as is,
+ *   <li>{@code 0x80-0xFD} an entry of the token table (hosts, path pieces, tracking query keys),
+ *   <li>{@code 0xFE} a run of 4 to 18 digits without a leading zero, as a varint,
+ *   <li>{@code 0xFF} a varint byte length followed by raw UTF-8 (anything non-ASCII).
+ * </ul>
+ *
+ * <p>Encoded URLs are persisted, so the prefix and token tables are append-only within a version; a
+ * different table needs a new version byte.
+ */
+public final class UrlCodec {
+  private static final byte VERSION = 1;
+  private static final int TOKEN_BASE = 0x80;
+  private static final int NUMBER = 0xFE;
+  private static final int RAW = 0xFF;
+  private static final int MIN_DIGITS = 4;
+  private static final int MAX_DIGITS = 18;
+
+  private static final String[] PREFIXES = {
+    "", "https://www.", "http://www.", "https://", "http://"
+  };
+
+  private static final String[] TOKENS = {
+    ".com/",
+    ".com",
+    ".org/",
+    ".net/",
+    ".io/",
+    ".co.uk/",
+    ".de/",
+    ".ru/",
+    ".html",
+    ".htm",
+    ".php",
+    ".aspx",
+    ".jpg",
+    ".png",
+    ".pdf",
+    "www.",
+    "/index.html",
+    "/search?",
+    "/watch?v=",
+    "/api/",
+    "/v1/",
+    "/en/",
+    "/en-us/",
+    "/blog/",
+    "/news/",
+    "/shop/",
+    "/products/",
+    "/product/",
+    "/p/",
+    "/dp/",
+    "/category/",
+    "/article/",
+    "/track/",
+    "/click?",
+    "/redirect?",
+    "?utm_source=",
+    "&utm_source=",
+    "utm_source=",
+    "&utm_medium=",
+    "?utm_medium=",
+    "utm_medium=",
+    "&utm_campaign=",
+    "?utm_campaign=",
+    "utm_campaign=",
+    "&utm_content=",
+    "utm_content=",
+    "&utm_term=",
+    "utm_term=",
+    "&utm_id=",
+    "?gclid=",
+    "&gclid=",
+    "?fbclid=",
+    "&fbclid=",
+    "&msclkid=",
+    "?ref=",
+    "&ref=",
+    "?id=",
+    "&id=",
+    "?q=",
+    "&q=",
+    "?url=",
+    "&url=",
+    "&sid=",
+    "&uid=",
+    "&session=",
+    "&token=",
+    "&source=",
+    "&campaign=",
+    "&medium=",
+    "&lang=",
+    "&page=",
+    "https%3A%2F%2F",
+    "http%3A%2F%2F",
+    "%2F",
+    "%3A",
+    "%3D",
+    "%26",
+    "%3F",
+    "%20",
+    "email",
+    "newsletter",
+    "google",
+    "facebook",
+    "twitter",
+    "linkedin",
+    "instagram",
+    "youtube",
+    "amazon",
+    "cpc",
+    "social",
+    "display",
+    "banner",
+    "affiliate",
+    "partner",
+    "promo",
+    "offer",
+    "mobile",
+    "desktop",
+    "sale",
+    "spring",
+    "summer",
+    "autumn",
+    "winter",
+    "example",
+    "shop",
+    "store",
+    "click",
+    "track",
+    "ad_id=",
+    "adgroup",
+    "keyword",
+    "content",
+    "product",
+    "category",
+    "account",
+    "login",
+    "signup",
+    "download",
+    "images",
+    "static"
+  };
+
+  // candidates per first character, longest first, for greedy matching
+  private static final int[][] BY_FIRST_CHAR = byFirstChar();
+
+  private UrlCodec() {}
+
+  public static byte[] encode(String url) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(url.length());
+    out.write(VERSION);
+    int prefix = 0;
+    for (int p = 1; p < PREFIXES.length; p++) {
+      if (url.startsWith(PREFIXES[p])) {
+        prefix = p;
+        break;
+      }
+    }
+    out.write(prefix);
+    int i = PREFIXES[prefix].length();
+    while (i < url.length()) {
+      char ch = url.charAt(i);
+      if (ch >= 0x80) {
+        int end = i + 1;
+        while (end < url.length() && url.charAt(end) >= 0x80) end++;
+        byte[] raw = url.substring(i, end).getBytes(StandardCharsets.UTF_8);
+        out.write(RAW);
+        writeVarint(out, raw.length);
+        out.write(raw, 0, raw.length);
+        i = end;
+        continue;
+      }
+      int digits = digitRun(url, i);
+      if (digits >= MIN_DIGITS) {
+        out.write(NUMBER);
+        writeVarint(out, Long.parseLong(url, i, i + digits, 10));
+        i += digits;
+        continue;
+      }
+      int token = longestToken(url, i);
+      if (token >= 0) {
+        out.write(TOKEN_BASE + token);
+        i += TOKENS[token].length();
+      } else {
+        out.write(ch);
+        i++;
+      }
+    }
+    return out.toByteArray();
+  }
+
+  public static String decode(byte[] data) {
+    return decode(data, 0, data.length);
+  }
+
+  /** Decodes the URL stored in {@code data[from, to)}. */
+  public static String decode(byte[] data, int from, int to) {
+    if (to - from < 2 || data[from] != VERSION) {
+      throw new IllegalArgumentException("Unsupported URL encoding");
+    }
+    StringBuilder sb = new StringBuilder((to - from) * 2);
+    sb.append(PREFIXES[data[from + 1]]);
+    int[] pos = {from + 2};
+    while (pos[0] < to) {
+      int b = data[pos[0]++] & 0xFF;
+      if (b < TOKEN_BASE) {
+        sb.append((char) b);
+      } else if (b == NUMBER) {
+        sb.append(readVarint(data, pos));
+      } else if (b == RAW) {
+        int len = (int) readVarint(data, pos);
+        sb.append(new String(data, pos[0], len, StandardCharsets.UTF_8));
+        pos[0] += len;
+      } else {
+        sb.append(TOKENS[b - TOKEN_BASE]);
+      }
+    }
+    return sb.toString();
+  }
+
+  /** Length of the digit run at {@code i} that fits the NUMBER form, or 0. */
+  private static int digitRun(String s, int i) {
+    if (s.charAt(i) < '1' || s.charAt(i) > '9') return 0;
+    int end = i + 1;
+    while (end < s.length() && s.charAt(end) >= '0' && s.charAt(end) <= '9') end++;
+    int n = end - i;
+    // longer runs would not round-trip through a long; the tail is coded on the next step
+    return Math.min(n, MAX_DIGITS);
+  }
+
+  private static int longestToken(String s, int i) {
+    for (int t : BY_FIRST_CHAR[s.charAt(i)]) {
+      if (s.startsWith(TOKENS[t], i)) return t;
+    }
+    return -1;
+  }
+
+  private static int[][] byFirstChar() {
+    List<List<Integer>> lists = new ArrayList<>();
+    for (int c = 0; c < 128; c++) lists.add(new ArrayList<>());
+    for (int t = 0; t < TOKENS.length; t++) lists.get(TOKENS[t].charAt(0)).add(t);
+    int[][] out = new int[128][];
+    for (int c = 0; c < 128; c++) {
+      lists.get(c).sort(Comparator.comparingInt((Integer t) -> TOKENS[t].length()).reversed());
+      out[c] = lists.get(c).stream().mapToInt(Integer::intValue).toArray();
+    }
+    return out;
+  }
+
+  private static void writeVarint(ByteArrayOutputStream out, long v) {
+    while ((v & ~0x7FL) != 0) {
+      out.write((int) ((v & 0x7F) | 0x80));
+      v >>>= 7;
+    }
+    out.write((int) v);
+  }
+
+  private static long readVarint(byte[] data, int[] pos) {
+    long v = 0;
+    for (int shift = 0; ; shift += 7) {
+      int b = data[pos[0]++] & 0xFF;
+      v |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) return v;
+    }
+  }
+}
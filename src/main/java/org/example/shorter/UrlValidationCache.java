@@ -0,0 +1,58 @@
+package org.example.shorter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Bounded memo of URL validation results, split into LRU segments like {@link LinkCache}. Bulk
+ * clients resubmit the same URLs, and the validator's regular expressions cost far more than a
+ * lookup.
+ */
+public class UrlValidationCache {
+  private static final int SEGMENTS = 16;
+  private static final String VALID = "";
+
+  private final Segment[] segments;
+
+  public UrlValidationCache(int capacity) {
+    int n = capacity <= 0 ? 0 : Math.min(SEGMENTS, capacity);
+    segments = new Segment[n];
+    for (int i = 0; i < n; i++) {
+      segments[i] = new Segment(capacity / n + (i < capacity % n ? 1 : 0));
+    }
+  }
+
+  /** The memoised result of {@code validate} (an error message, or null if the URL is valid). */
+  public String errorOf(String url, Function<String, String> validate) {
+    if (segments.length == 0) return validate.apply(url);
+    Segment s = segments[Math.floorMod(url.hashCode(), segments.length)];
+    String cached;
+    synchronized (s) {
+      cached = s.get(url);
+    }
+    if (cached == null) {
+      String error = validate.apply(url);
+      cached = error == null ? VALID : error;
+      synchronized (s) {
+        s.put(url, cached);
+      }
+    }
+    return cached.isEmpty() ? null : cached;
+  }
+
+  @SuppressWarnings("serial")
+  private static final class Segment extends LinkedHashMap<String, String> {
+    private final int capacity;
+
+    Segment(int capacity) {
+      super(16, 0.75f, true);
+      this.capacity = capacity;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+      return size() > capacity;
+    }
+  }
+}
@@ -0,0 +1,170 @@
+package org.example.shorter;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+public class AsyncLinkServiceTest {
+
+  private static LinkService service() throws Exception {
+    LinkRepository repo = new LinkRepository(Files.createTempFile("db", ".sqlite").toString());
+    return new LinkService(repo, Duration.ofMinutes(5), 5, 8, false);
+  }
+
+  @Test
+  void concurrentCreatesAllRunOnTheWriterThread() throws Exception {
+    LinkService svc = service();
+    Set<String> writerThreads = ConcurrentHashMap.newKeySet();
+    svc.addListener(
+        new LinkListener() {
+          @Override
+          public void created(Link link) {
+            writerThreads.add(Thread.currentThread().getName());
+          }
+        });
+    AsyncLinkService async = new AsyncLinkService(svc);
+    UUID owner = UUID.randomUUID();
+
+    List<CompletableFuture<Link>> created = new ArrayList<>();
+    for (int i = 0; i < 300; i++) {
+      created.add(async.create(owner, "https://example.com/" + i, i % 2 == 0 ? 3 : null));
+    }
+    CompletableFuture<Link> invalid = async.create(owner, "not-url", 3);
+    CompletableFuture.allOf(created.toArray(new CompletableFuture<?>[0])).get(10, TimeUnit.SECONDS);
+
+    assertThat(created.stream().map(f -> f.join().code)).doesNotHaveDuplicates().hasSize(300);
+    assertThat(created.get(1).join().maxClicks).isEqualTo(5);
+    assertThat(writerThreads).hasSize(1).allMatch(n -> n.startsWith("async-write"));
+    assertThatThrownBy(() -> invalid.get(10, TimeUnit.SECONDS))
+        .isInstanceOf(ExecutionException.class)
+        .hasCauseInstanceOf(IllegalArgumentException.class);
+
+    Link first = created.get(0).join();
+    assertThat(async.open(first.code).get().status).isEqualTo(OpenResult.Status.OK);
+    assertThat(async.delete(owner, first.code).get()).isEqualTo("OK");
+    assertThat(async.open(first.code).get().status).isEqualTo(OpenResult.Status.NOT_FOUND);
+    async.close();
+    assertThat(async.info(owner, first.code))
+        .failsWithin(Duration.ofSeconds(1))
+        .withThrowableOfType(ExecutionException.class)
+        .withCauseInstanceOf(RejectedExecutionException.class);
+  }
+
+  @Test
+  void fullReadQueueRejectsInsteadOfBlocking() throws Exception {
+    LinkService svc = service();
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch entered = new CountDownLatch(1);
+    svc.addListener(
+        new LinkListener() {
+          @Override
+          public void clicked(String code, long atMs) {
+            entered.countDown();
+            try {
+              release.await();
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+          }
+        });
+    Link link = svc.create(UUID.randomUUID(), "https://example.com", 10);
+    AsyncLinkService async = new AsyncLinkService(svc, 1, 1, 1, 16);
+
+    CompletableFuture<OpenResult> busy = async.open(link.code);
+    assertThat(entered.await(5, TimeUnit.SECONDS)).isTrue();
+    CompletableFuture<OpenResult> queued = async.open(link.code);
+    CompletableFuture<OpenResult> refused = async.open(link.code);
+
+    assertThat(refused).isCompletedExceptionally();
+    release.countDown();
+    assertThat(busy.get(5, TimeUnit.SECONDS).status.redirects()).isTrue();
+    assertThat(queued.get(5, TimeUnit.SECONDS).status.redirects()).isTrue();
+    async.close();
+  }
+
+  @Test
+  void batchedWritesRunInQueueOrder() throws Exception {
+    LinkService svc = service();
+    UUID owner = UUID.randomUUID();
+    Link existing = svc.create(owner, "https://example.com/existing", 3);
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch entered = new CountDownLatch(1);
+    List<String> events = new ArrayList<>();
+    svc.addListener(
+        new LinkListener() {
+          @Override
+          public void created(Link link) {
+            if (link.originalUrl.endsWith("/blocker")) {
+              entered.countDown();
+              try {
+                release.await();
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+              return;
+            }
+            events.add("created " + link.originalUrl);
+          }
+
+          @Override
+          public void deleted(String code) {
+            events.add("deleted " + code);
+          }
+        });
+    AsyncLinkService async = new AsyncLinkService(svc);
+
+    CompletableFuture<Link> blocker = async.create(owner, "https://example.com/blocker", 3);
+    assertThat(entered.await(5, TimeUnit.SECONDS)).isTrue();
+    CompletableFuture<Link> created = async.create(owner, "https://example.com/new", 3);
+    CompletableFuture<String> deleted = async.delete(owner, existing.code);
+    release.countDown();
+    CompletableFuture.allOf(blocker, created, deleted).get(10, TimeUnit.SECONDS);
+
+    assertThat(events)
+        .containsExactly("created https://example.com/new", "deleted " + existing.code);
+    async.close();
+  }
+
+  @Test
+  void createErrorsKeepTheSynchronousExceptionTypes() throws Exception {
+    LinkRepository repo = new LinkRepository(Files.createTempFile("db", ".sqlite").toString());
+    LinkService svc =
+        new LinkService(
+            repo,
+            Duration.ofMinutes(5),
+            5,
+            () -> "taken",
+            false,
+            new LinkCache(100),
+            ClickAccounting.sync(repo),
+            new UrlValidationCache(100),
+            false);
+    UUID owner = UUID.randomUUID();
+    svc.create(owner, "https://example.com/first", 3);
+    assertThatThrownBy(() -> svc.create(owner, "https://example.com/second", 3))
+        .isInstanceOf(IllegalStateException.class);
+
+    AsyncLinkService async = new AsyncLinkService(svc);
+    assertThat(async.create(owner, "https://example.com/second", 3))
+        .failsWithin(Duration.ofSeconds(10))
+        .withThrowableOfType(ExecutionException.class)
+        .withCauseInstanceOf(IllegalStateException.class);
+    assertThat(async.create(owner, "not-url", 3))
+        .failsWithin(Duration.ofSeconds(10))
+        .withThrowableOfType(ExecutionException.class)
+        .withCauseInstanceOf(IllegalArgumentException.class);
+    async.close();
+  }
+}
@@ -0,0 +1,158 @@
+package org.example.shorter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+public class BufferedClickAccountingTest {
+
+  private static Link insert(LinkRepository repo, String code, int maxClicks) {
+    Link l = new Link();
+    l.userUuid = "u";
+    l.code = code;
+    l.originalUrl = "https://example.com";
+    l.createdAtMs = 1;
+    l.expiresAtMs = System.currentTimeMillis() + 100000;
+    l.maxClicks = maxClicks;
+    l.clicks = 0;
+    l.active = 1;
+    return repo.insert(l);
+  }
+
+  @Test
+  void enforcesLimitExactlyUnderContention() throws Exception {
+    LinkRepository repo = new LinkRepository(Files.createTempFile("db", ".sqlite").toString());
+    insert(repo, "abc", 100);
+    BufferedClickAccounting clicks = new BufferedClickAccounting(repo, 60_000, 1_000_000);
+
+    ExecutorService pool = Executors.newFixedThreadPool(8);
+    List<Future<Boolean>> results = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      results.add(
+          pool.submit(() -> clicks.consume("abc", System.currentTimeMillis()).status.redirects()));
+    }
+    int granted = 0;
+    for (Future<Boolean> f : results) if (f.get()) granted++;
+    pool.shutdown();
+
+    assertThat(granted).isEqualTo(100);
+    assertThat(repo.findByCode("abc").get().clicks).isZero();
+
+    clicks.close();
+    Link after = repo.findByCode("abc").get();
+    assertThat(after.clicks).isEqualTo(100);
+    assertThat(after.isActive()).isFalse();
+  }
+
+  @Test
+  void clicksAfterCloseAreWrittenThrough() throws Exception {
+    LinkRepository repo = new LinkRepository(Files.createTempFile("db", ".sqlite").toString());
+    insert(repo, "abc", 10);
+    BufferedClickAccounting clicks = new BufferedClickAccounting(repo, 60_000, 1);
+    clicks.consume("abc", System.currentTimeMillis());
+    clicks.close();
+
+    assertThat(clicks.consume("abc", System.currentTimeMillis()).status.redirects()).isTrue();
+    assertThat(repo.findByCode("abc").get().clicks).isEqualTo(2);
+    assertThat(clicks.pendingClicks()).isZero();
+  }
+
+  @Test
+  void flushesWhenThresholdReached() throws Exception {
+    LinkRepository repo = new LinkRepository(Files.createTempFile("db", ".sqlite").toString());
+    insert(repo, "abc", 10);
+    BufferedClickAccounting clicks = new BufferedClickAccounting(repo, 60_000, 3);
+
+    for (int i = 0; i < 3; i++) clicks.consume("abc", System.currentTimeMillis());
+
+    long deadline = System.currentTimeMillis() + 5000;
+    while (repo.findByCode("abc").get().clicks < 3 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertThat(repo.findByCode("abc").get().clicks).isEqualTo(3);
+    assertThat(clicks.pendingClicks()).isZero();
+    clicks.close();
+  }
+
+  @Test
+  void serviceReloadsCounterAfterSetLimit() throws Exception {
+    LinkRepository repo = new LinkRepository(Files.createTempFile("db", ".sqlite").toString());
+    LinkService s =
+        new LinkService(
+            repo,
+            Duration.ofMinutes(5),
+            5,
+            CodeGenerator.random(8),
+            false,
+            new LinkCache(100),
+            new BufferedClickAccounting(repo, 60_000, 1_000_000));
+
+    UUID owner = UUID.randomUUID();
+    Link link = s.create(owner, "https://example.com", 5);
+    s.open(link.code);
+    s.open(link.code);
+    assertThat(s.info(owner, link.code)).contains("clicks: 2/5");
+
+    s.setLimit(owner, link.code, 3);
+    assertThat(repo.findByCode(link.code).get().clicks).isEqualTo(2);
+    assertThat(s.open(link.code)).contains("last allowed click");
+    assertThat(s.open(link.code)).contains("DISABLED");
+
+    s.close();
+    assertThat(repo.findByCode(link.code).get().clicks).isEqualTo(3);
+  }
+
+  @Test
+  void slowLoadDoesNotBlockCodesInTheSameBin() throws Exception {
+    CountDownLatch reading = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    LinkRepository repo =
+        new LinkRepository(Files.createTempFile("db", ".sqlite").toString()) {
+          @Override
+          public Optional<LinkView> view(String code) {
+            if (code.equals("slow")) {
+              reading.countDown();
+              try {
+                release.await();
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+            }
+            return super.view(code);
+          }
+        };
+    // a code that lands in the same bin as "slow" in a default-sized ConcurrentHashMap
+    String neighbour = "fast";
+    for (int i = 0; bin("slow") != bin(neighbour); i++) neighbour = "fast" + i;
+    insert(repo, "slow", 5);
+    insert(repo, neighbour, 5);
+    BufferedClickAccounting clicks = new BufferedClickAccounting(repo, 60_000, 1_000_000);
+
+    ExecutorService pool = Executors.newFixedThreadPool(2);
+    Future<OpenResult> slow = pool.submit(() -> clicks.consume("slow", 0));
+    assertThat(reading.await(5, TimeUnit.SECONDS)).isTrue();
+    String code = neighbour;
+    Future<OpenResult> fast = pool.submit(() -> clicks.consume(code, 0));
+    assertThat(fast.get(5, TimeUnit.SECONDS).status).isEqualTo(OpenResult.Status.OK);
+    release.countDown();
+    assertThat(slow.get(5, TimeUnit.SECONDS).status).isEqualTo(OpenResult.Status.OK);
+    pool.shutdown();
+    clicks.close();
+  }
+
+  private static int bin(String code) {
+    int h = code.hashCode();
+    return (h ^ (h >>> 16)) & 15;
+  }
+}
@@ -0,0 +1,94 @@
+package org.example.shorter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+
+public class ClickAnalyticsTest {
+
+  @Test
+  void ringDeliversEveryEventOnceAndRejectsWhenFull() throws Exception {
+    ClickEventRing ring = new ClickEventRing(1024);
+    ExecutorService pool = Executors.newFixedThreadPool(4);
+    List<Future<?>> producers = new ArrayList<>();
+    for (int t = 0; t < 4; t++) {
+      String code = "p" + t;
+      producers.add(
+          pool.submit(
+              () -> {
+                for (int i = 0; i < 10_000; i++) {
+                  while (!ring.offer(code, i)) Thread.onSpinWait();
+                }
+              }));
+    }
+    Map<String, Long> next = new HashMap<>();
+    int received = 0;
+    while (received < 40_000) {
+      received +=
+          ring.drain(
+              (code, at) -> {
+                // per producer the events arrive in publication order
+                assertThat(at).isEqualTo(next.getOrDefault(code, 0L));
+                next.put(code, at + 1);
+              },
+              256);
+    }
+    for (Future<?> f : producers) f.get();
+    pool.shutdown();
+    assertThat(next)
+        .containsOnlyKeys("p0", "p1", "p2", "p3")
+        .allSatisfy((k, v) -> assertThat(v).isEqualTo(10_000));
+
+    for (int i = 0; i < ring.capacity(); i++) assertThat(ring.offer("x", i)).isTrue();
+    assertThat(ring.offer("x", -1)).isFalse();
+    assertThat(ring.backlog()).isEqualTo(ring.capacity());
+  }
+
+  @Test
+  void flushStoresEventsAndPerMinuteRollups() throws Exception {
+    String db = Files.createTempFile("analytics", ".db").toString();
+    ClickAnalytics analytics = new ClickAnalytics(db, 64, 0, 0);
+    long minute = 28_000_000L * 60_000;
+    for (int i = 0; i < 5; i++) analytics.clicked("a", minute + i * 1000);
+    for (int i = 0; i < 3; i++) analytics.clicked("a", minute + 60_000 + i);
+    analytics.clicked("b", minute);
+    assertThat(analytics.flush()).isEqualTo(9);
+    analytics.clicked("a", minute + 10);
+    assertThat(analytics.flush()).isEqualTo(1);
+
+    assertThat(analytics.totalClicks("a")).isEqualTo(9);
+    assertThat(analytics.perMinute("a", minute))
+        .containsExactly(Map.entry(minute, 6L), Map.entry(minute + 60_000, 3L));
+    assertThat(analytics.perMinute("a", minute + 60_000)).containsOnlyKeys(minute + 60_000);
+    analytics.close();
+  }
+
+  @Test
+  void redirectsPublishClickEvents() throws Exception {
+    LinkRepository repo = new LinkRepository(Files.createTempFile("db", ".sqlite").toString());
+    LinkService s = new LinkService(repo, Duration.ofMinutes(5), 5, 8, false);
+    List<String> clicked = new ArrayList<>();
+    s.addListener(
+        new LinkListener() {
+          @Override
+          public void clicked(String code, long atMs) {
+            clicked.add(code);
+          }
+        });
+    Link link = s.create(UUID.randomUUID(), "https://example.com", 2);
+    for (int i = 0; i < 3; i++) s.redirect(link.code);
+    s.redirect("missing");
+
+    assertThat(clicked).containsExactly(link.code, link.code);
+  }
+}
@@ -0,0 +1,64 @@
+package org.example.shorter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+
+public class CoalescingClickAccountingTest {
+
+  @Test
+  void concurrentOpensShareStorageCallsAndKeepLimitExact() throws Exception {
+    int[] storageCalls = {0};
+    LinkRepository repo =
+        new LinkRepository(Files.createTempFile("db", ".sqlite").toString()) {
+          @Override
+          public ClickGrant consumeClicks(String code, long nowMs, int n) {
+            synchronized (storageCalls) {
+              storageCalls[0]++;
+            }
+            return super.consumeClicks(code, nowMs, n);
+          }
+        };
+    Link l = new Link();
+    l.userUuid = "u";
+    l.code = "hot";
+    l.originalUrl = "https://example.com";
+    l.expiresAtMs = System.currentTimeMillis() + 100000;
+    l.maxClicks = 150;
+    l.active = 1;
+    repo.insert(l);
+    ClickAccounting clicks = ClickAccounting.coalesced(repo);
+
+    ExecutorService pool = Executors.newFixedThreadPool(32);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<OpenResult.Status>> results = new ArrayList<>();
+    for (int i = 0; i < 400; i++) {
+      results.add(
+          pool.submit(
+              () -> {
+                start.await();
+                return clicks.consume("hot", System.currentTimeMillis()).status;
+              }));
+    }
+    start.countDown();
+    Map<OpenResult.Status, Integer> byStatus = new EnumMap<>(OpenResult.Status.class);
+    for (Future<OpenResult.Status> f : results) byStatus.merge(f.get(), 1, Integer::sum);
+    pool.shutdown();
+
+    assertThat(byStatus.get(OpenResult.Status.LAST_CLICK)).isEqualTo(1);
+    assertThat(byStatus.get(OpenResult.Status.OK)).isEqualTo(149);
+    assertThat(byStatus.get(OpenResult.Status.LIMIT_REACHED)).isEqualTo(250);
+    assertThat(repo.findByCode("hot").get().clicks).isEqualTo(150);
+    assertThat(storageCalls[0]).isLessThan(400);
+    repo.close();
+  }
+}
@@ -0,0 +1,57 @@
+package org.example.shorter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+
+public class CodeGeneratorTest {
+
+  @Test
+  void feistelPermutationIsABijectionOnTheCodeSpace() throws Exception {
+    LinkRepository repo = new LinkRepository(Files.createTempFile("db", ".sqlite").toString());
+    SequenceCodeGenerator g = new SequenceCodeGenerator(repo, 2, 42, 100);
+
+    long domain = SequenceCodeGenerator.domain(2);
+    assertThat(domain).isEqualTo(62 * 62);
+    Set<Long> seen = new HashSet<>();
+    for (long v = 0; v < domain; v++) {
+      long p = g.permute(v);
+      assertThat(p).isBetween(0L, domain - 1);
+      seen.add(p);
+    }
+    assertThat(seen).hasSize((int) domain);
+  }
+
+  @Test
+  void sequenceCodesNeverRepeatAcrossLeasedBlocks() throws Exception {
+    LinkRepository repo = new LinkRepository(Files.createTempFile("db", ".sqlite").toString());
+    SequenceCodeGenerator first = new SequenceCodeGenerator(repo, 8, 7, 100);
+    SequenceCodeGenerator second = new SequenceCodeGenerator(repo, 8, 7, 100);
+
+    Set<String> codes = new HashSet<>();
+    for (int i = 0; i < 1000; i++) {
+      assertThat(codes.add(first.next())).isTrue();
+      assertThat(codes.add(second.next())).isTrue();
+    }
+    assertThat(codes).allMatch(c -> c.length() == 8 && c.matches("[0-9A-Za-z]+"));
+  }
+
+  @Test
+  void bloomFilterSkipsCodesAlreadyInTheTable() throws Exception {
+    LinkRepository repo = new LinkRepository(Files.createTempFile("db", ".sqlite").toString());
+    LinkService s = new LinkService(repo, Duration.ofMinutes(5), 5, 8, false);
+    String existing = s.create(UUID.randomUUID(), "https://example.com", 2).code;
+
+    BloomCodeGenerator g = BloomCodeGenerator.load(repo, 8, 1000);
+    assertThat(g.mightContain(existing)).isTrue();
+
+    String fresh = g.next();
+    assertThat(fresh).hasSize(8).isNotEqualTo(existing);
+    assertThat(g.mightContain(fresh)).isTrue();
+  }
+}
@@ -15,6 +15,8 @@ public class ConfigLoaderTest {
     assertThat(cfg.cleanupPeriod.getSeconds()).isEqualTo(30);
     assertThat(cfg.defaultLimit).isEqualTo(5);
     assertThat(cfg.codeLength).isEqualTo(8);
+    assertThat(cfg.db.readers).isEqualTo(4);
+    assertThat(cfg.db.journalMode).isEqualTo("WAL");
   }
 
   @Test
@@ -29,6 +31,10 @@ public class ConfigLoaderTest {
             default.limit=7
             code.length=9
             browser.open=false
+            db.pool.readers=2
+            db.pool.statement.cache=16
+            db.journal.mode=truncate
+            db.synchronous=bogus; DROP TABLE links
             """);
     AppConfig cfg = new ConfigLoader().load(tmp.toString());
     assertThat(cfg.ttl.toMinutes()).isEqualTo(10);
@@ -37,5 +43,9 @@ public class ConfigLoaderTest {
     assertThat(cfg.defaultLimit).isEqualTo(7);
     assertThat(cfg.codeLength).isEqualTo(9);
     assertThat(cfg.openBrowser).isFalse();
+    assertThat(cfg.db.readers).isEqualTo(2);
+    assertThat(cfg.db.statementCacheSize).isEqualTo(16);
+    assertThat(cfg.db.journalMode).isEqualTo("TRUNCATE");
+    assertThat(cfg.db.synchronous).isEqualTo("NORMAL");
   }
 }
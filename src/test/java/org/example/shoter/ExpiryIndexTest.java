@@ -0,0 +1,77 @@
+package org.example.shorter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+
+public class ExpiryIndexTest {
+
+  @Test
+  void pollsDueCodesInExpiryOrder() {
+    ExpiryIndex index = new ExpiryIndex();
+    index.add("c", 30);
+    index.add("a", 10);
+    index.add("b", 20);
+    index.add("late", 1000);
+
+    assertThat(index.countDue(20, 100)).isEqualTo(2);
+    assertThat(index.countDue(1000, 3)).isEqualTo(3);
+    assertThat(index.nextDueMs()).isEqualTo(10);
+    assertThat(index.pollDue(25, 100)).containsExactly("a", "b");
+    assertThat(index.pollDue(100, 100)).containsExactly("c");
+    assertThat(index.size()).isEqualTo(1);
+  }
+
+  @Test
+  void removeAndRescheduleReplaceEntries() {
+    ExpiryIndex index = new ExpiryIndex();
+    index.add("a", 10);
+    index.add("b", 10);
+    index.remove("a");
+    index.add("b", 500);
+
+    assertThat(index.pollDue(100, 100)).isEmpty();
+    assertThat(index.nextDueMs()).isEqualTo(500);
+  }
+
+  @Test
+  void followsServiceCreateAndDelete() throws Exception {
+    LinkRepository repo = new LinkRepository(Files.createTempFile("db", ".sqlite").toString());
+    LinkService s = new LinkService(repo, Duration.ofMinutes(5), 5, 8, false);
+    UUID owner = UUID.randomUUID();
+    Link existing = s.create(owner, "https://example.com", 2);
+
+    ExpiryIndex index = ExpiryIndex.load(repo);
+    s.addListener(index);
+    assertThat(index.size()).isEqualTo(1);
+
+    Link created = s.create(owner, "https://example.org", 2);
+    assertThat(index.size()).isEqualTo(2);
+    assertThat(index.nextDueMs()).isEqualTo(existing.expiresAtMs);
+
+    s.delete(owner, existing.code);
+    assertThat(index.size()).isEqualTo(1);
+    assertThat(index.nextDueMs()).isEqualTo(created.expiresAtMs);
+  }
+
+  @Test
+  void lateDeleteOfAReusedCodeKeepsTheNewEntry() throws Exception {
+    LinkRepository repo = new LinkRepository(Files.createTempFile("db", ".sqlite").toString());
+    LinkService s = new LinkService(repo, Duration.ofMinutes(5), 5, 8, false);
+    ExpiryIndex index = ExpiryIndex.load(repo);
+    Link recreated = s.create(UUID.randomUUID(), "https://example.com", 2);
+
+    // the created event of the new link arrives before the deleted event of the old one
+    index.created(recreated);
+    index.deleted(recreated.code);
+    assertThat(index.size()).isEqualTo(1);
+    assertThat(index.nextDueMs()).isEqualTo(recreated.expiresAtMs);
+
+    repo.deleteByCodeAndUser(recreated.code, recreated.userUuid);
+    index.deleted(recreated.code);
+    assertThat(index.size()).isZero();
+  }
+}
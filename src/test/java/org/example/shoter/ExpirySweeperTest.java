@@ -0,0 +1,148 @@
+package org.example.shorter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class ExpirySweeperTest {
+
+  private static void insert(LinkRepository repo, String code, long expiresAtMs) {
+    Link l = new Link();
+    l.userUuid = "u";
+    l.code = code;
+    l.originalUrl = "https://example.com";
+    l.createdAtMs = 1;
+    l.expiresAtMs = expiresAtMs;
+    l.maxClicks = 2;
+    l.clicks = 0;
+    l.active = 1;
+    repo.insert(l);
+  }
+
+  @Test
+  void deletesBacklogInBoundedChunks() throws Exception {
+    LinkRepository repo = new LinkRepository(Files.createTempFile("db", ".sqlite").toString());
+    long now = System.currentTimeMillis();
+    for (int i = 0; i < 100; i++) insert(repo, "dead" + i, now - 1000 + i);
+    insert(repo, "live", now + 100_000);
+
+    List<Integer> chunks = new ArrayList<>();
+    List<String> deletedCodes = new ArrayList<>();
+    ExpirySweeper sweeper =
+        new ExpirySweeper(
+            repo,
+            16,
+            16,
+            1000,
+            0,
+            codes -> {
+              chunks.add(codes.size());
+              deletedCodes.addAll(codes);
+            });
+
+    assertThat(sweeper.runOnce(now)).isEqualTo(100);
+    assertThat(chunks).allMatch(n -> n <= 16);
+    assertThat(deletedCodes).hasSize(100).doesNotContain("live");
+    assertThat(repo.findByCode("live")).isPresent();
+    assertThat(repo.countExpired(now)).isZero();
+    assertThat(sweeper.backlog()).isZero();
+    assertThat(sweeper.lastRunDeleted()).isEqualTo(100);
+    assertThat(sweeper.totalDeleted()).isEqualTo(100);
+  }
+
+  @Test
+  void interruptedRunReportsTheBacklogLeft() throws Exception {
+    LinkRepository repo = new LinkRepository(Files.createTempFile("db", ".sqlite").toString());
+    long now = System.currentTimeMillis();
+    for (int i = 0; i < 40; i++) insert(repo, "dead" + i, now - 1);
+
+    // shutdown interrupts the cleanup thread after the first chunk
+    boolean[] interrupt = {true};
+    ExpirySweeper sweeper =
+        new ExpirySweeper(
+            repo,
+            16,
+            16,
+            1000,
+            0,
+            codes -> {
+              if (interrupt[0]) Thread.currentThread().interrupt();
+            });
+    try {
+      assertThat(sweeper.runOnce(now)).isEqualTo(16);
+    } finally {
+      Thread.interrupted();
+    }
+    assertThat(sweeper.backlog()).isEqualTo(24);
+
+    interrupt[0] = false;
+
+    sweeper.runOnce(now);
+    assertThat(sweeper.backlog()).isZero();
+  }
+
+  @Test
+  void growsBatchWhenChunksAreFast() throws Exception {
+    LinkRepository repo = new LinkRepository(Files.createTempFile("db", ".sqlite").toString());
+    long now = System.currentTimeMillis();
+    for (int i = 0; i < 200; i++) insert(repo, "dead" + i, now - 1);
+
+    ExpirySweeper sweeper = new ExpirySweeper(repo, 16, 1024, 10_000, 0, codes -> {});
+    sweeper.runOnce(now);
+
+    assertThat(sweeper.batchSize()).isGreaterThan(16);
+  }
+
+  @Test
+  void reapsExactlyTheIndexedDueCodes() throws Exception {
+    LinkRepository repo = new LinkRepository(Files.createTempFile("db", ".sqlite").toString());
+    long now = System.currentTimeMillis();
+    insert(repo, "due", now - 10);
+    insert(repo, "later", now + 100_000);
+
+    ExpiryIndex index = ExpiryIndex.load(repo);
+    List<String> deletedCodes = new ArrayList<>();
+    ExpirySweeper sweeper = new ExpirySweeper(repo, index, 16, 16, 1000, 0, deletedCodes::addAll);
+
+    assertThat(sweeper.runOnce(now)).isEqualTo(1);
+    assertThat(deletedCodes).containsExactly("due");
+    assertThat(sweeper.nextRunDelayMs(now, 30_000)).isEqualTo(30_000);
+    assertThat(sweeper.nextRunDelayMs(now + 99_000, 30_000)).isBetween(50L, 1_001L);
+  }
+
+  @Test
+  void fallbackPassReapsRowsTheIndexNeverSaw() throws Exception {
+    LinkRepository repo = new LinkRepository(Files.createTempFile("db", ".sqlite").toString());
+    long now = System.currentTimeMillis();
+    ExpiryIndex index = ExpiryIndex.load(repo);
+    List<String> deletedCodes = new ArrayList<>();
+    ExpirySweeper sweeper = new ExpirySweeper(repo, index, 16, 16, 1000, 0, deletedCodes::addAll);
+    sweeper.runOnce(now);
+
+    // written behind the index's back: only the periodic indexed pass finds it
+    insert(repo, "unindexed", now - 10);
+    assertThat(sweeper.runOnce(now + 1)).isZero();
+    assertThat(repo.findByCode("unindexed")).isPresent();
+
+    assertThat(sweeper.runOnce(now + ExpirySweeper.FALLBACK_PERIOD_MS)).isEqualTo(1);
+    assertThat(deletedCodes).containsExactly("unindexed");
+  }
+
+  @Test
+  void staleIndexEntryDoesNotDeleteLiveLink() throws Exception {
+    LinkRepository repo = new LinkRepository(Files.createTempFile("db", ".sqlite").toString());
+    long now = System.currentTimeMillis();
+    insert(repo, "reused", now + 100_000);
+    ExpiryIndex index = new ExpiryIndex();
+    // e.g. the code expired, was deleted out of band and then created again by another process
+    index.add("reused", now - 10);
+
+    ExpirySweeper sweeper = new ExpirySweeper(repo, index, 16, 16, 1000, 0, codes -> {});
+    assertThat(sweeper.runOnce(now)).isZero();
+    assertThat(repo.findByCode("reused")).isPresent();
+    assertThat(index.nextDueMs()).isEqualTo(now + 100_000);
+  }
+}
@@ -0,0 +1,131 @@
+package org.example.shorter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+
+public class InMemoryLinkStoreTest {
+
+  private static Link link(String user, String code, long expiresAtMs, int maxClicks) {
+    Link l = new Link();
+    l.userUuid = user;
+    l.code = code;
+    l.originalUrl = "https://example.com/" + code;
+    l.createdAtMs = 1;
+    l.expiresAtMs = expiresAtMs;
+    l.maxClicks = maxClicks;
+    l.active = 1;
+    return l;
+  }
+
+  @Test
+  void insertFindListAndDelete() {
+    InMemoryLinkStore store = new InMemoryLinkStore();
+    long future = System.currentTimeMillis() + 100000;
+    store.insert(link("u", "a", future, 2));
+    store.insert(link("u", "b", future, 2));
+    store.insert(link("other", "c", future, 2));
+
+    assertThat(store.tryInsert(link("u", "a", future, 2))).isFalse();
+    assertThat(store.listByUser("u")).extracting(l -> l.code).containsExactly("b", "a");
+    assertThat(store.updateLimit("a", "other", 9)).isFalse();
+    assertThat(store.updateLimit("a", "u", 9)).isTrue();
+    assertThat(store.findByCode("a").get().maxClicks).isEqualTo(9);
+
+    assertThat(store.deleteByCodeAndUser("a", "other")).isFalse();
+    assertThat(store.deleteByCodeAndUser("a", "u")).isTrue();
+    assertThat(store.listByUser("u")).extracting(l -> l.code).containsExactly("b");
+  }
+
+  @Test
+  void expiredLinksAreSweptOldestFirst() {
+    InMemoryLinkStore store = new InMemoryLinkStore();
+    long now = System.currentTimeMillis();
+    store.insert(link("u", "late", now - 10, 2));
+    store.insert(link("u", "early", now - 20, 2));
+    store.insert(link("u", "live", now + 100000, 2));
+
+    assertThat(store.countExpired(now)).isEqualTo(2);
+    assertThat(store.deleteExpiredBatch(now, 1)).containsExactly("early");
+    assertThat(store.deleteExpired(now)).isEqualTo(1);
+    assertThat(store.size()).isEqualTo(1);
+  }
+
+  @Test
+  void concurrentClicksNeverExceedLimit() throws Exception {
+    InMemoryLinkStore store = new InMemoryLinkStore();
+    store.insert(link("u", "abc", System.currentTimeMillis() + 100000, 50));
+
+    ExecutorService pool = Executors.newFixedThreadPool(8);
+    List<Future<Boolean>> results = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      results.add(
+          pool.submit(() -> store.consumeClick("abc", System.currentTimeMillis()).isPresent()));
+    }
+    int granted = 0;
+    for (Future<Boolean> f : results) if (f.get()) granted++;
+    pool.shutdown();
+
+    assertThat(granted).isEqualTo(50);
+    Link after = store.findByCode("abc").get();
+    assertThat(after.clicks).isEqualTo(50);
+    assertThat(after.isActive()).isFalse();
+  }
+
+  @Test
+  void snapshotSurvivesRestart() throws Exception {
+    Path file = Files.createTempDirectory("mem").resolve("links.snapshot");
+    InMemoryLinkStore store = new InMemoryLinkStore(file, 0);
+    store.insert(link("u", "abc", System.currentTimeMillis() + 100000, 5));
+    store.addClicks(Map.of("abc", 3));
+    long seq = store.leaseCodeBlock(100);
+    store.close();
+
+    InMemoryLinkStore reopened = new InMemoryLinkStore(file, 0);
+    Link l = reopened.findByCode("abc").get();
+    assertThat(l.clicks).isEqualTo(3);
+    assertThat(reopened.listByUser("u")).hasSize(1);
+    assertThat(reopened.leaseCodeBlock(1)).isEqualTo(seq + 100);
+    assertThat(reopened.tryInsert(link("u", "next", 0, 1))).isTrue();
+    assertThat(reopened.findByCode("next").get().id).isGreaterThan(l.id);
+  }
+
+  @Test
+  void serviceRunsOnMemoryEngine() {
+    LinkService s = new LinkService(new InMemoryLinkStore(), Duration.ofMinutes(5), 2, 8, false);
+    UUID user = UUID.randomUUID();
+    String code = s.create(user, "https://example.com", null).code;
+
+    assertThat(s.open(code)).contains("https://example.com");
+    assertThat(s.open(code)).contains("https://example.com");
+    assertThat(s.open(code)).startsWith("DISABLED");
+  }
+
+  @Test
+  void findLiveByUrlsSeesOnlyLiveLinksOfTheOwner() {
+    InMemoryLinkStore store = new InMemoryLinkStore();
+    long future = System.currentTimeMillis() + 100000;
+    for (String code : List.of("a1", "a2", "a3", "x")) {
+      Link l = link(code.equals("x") ? "other" : "u", code, future, 3);
+      l.originalUrl = "https://example.com/a";
+      store.insert(l);
+    }
+    String url = "https://example.com/a";
+    assertThat(store.deleteByCodeAndUser("a3", "u")).isTrue();
+    assertThat(store.findLiveByUrls("u", List.of(url), 3, 0).get(url).code).isEqualTo("a2");
+    store.addClicks(Map.of("a2", 3));
+    assertThat(store.findLiveByUrls("u", List.of(url), 3, 0).get(url).code).isEqualTo("a1");
+    assertThat(store.findLiveByUrls("u", List.of(url), 5, 0)).isEmpty();
+    assertThat(store.findLiveByUrls("other", List.of(url), 3, 0).get(url).code).isEqualTo("x");
+  }
+}
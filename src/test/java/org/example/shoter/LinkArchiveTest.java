@@ -0,0 +1,123 @@
+package org.example.shorter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.Test;
+
+public class LinkArchiveTest {
+
+  private static InMemoryLinkStore source(int rows) {
+    return fill(new InMemoryLinkStore(), rows);
+  }
+
+  private static InMemoryLinkStore fill(InMemoryLinkStore store, int rows) {
+    List<Link> batch = new ArrayList<>();
+    for (int i = 0; i < rows; i++) {
+      Link l = new Link();
+      l.userUuid = "u" + (i % 7);
+      l.code = "c" + i;
+      l.originalUrl = "https://example.com/" + i + "?q=\"x\"";
+      l.createdAtMs = i;
+      l.expiresAtMs = 1_000_000L + i;
+      l.maxClicks = 10;
+      l.clicks = i % 10;
+      l.active = i % 10 == 9 ? 0 : 1;
+      batch.add(l);
+    }
+    store.insertBatch(batch);
+    store.deleteByCodes(List.of("c5", "c20000"));
+    return store;
+  }
+
+  @Test
+  void ndjsonRoundTripAcrossChunksIntoSqlite() throws Exception {
+    InMemoryLinkStore src = source(40_000);
+    Path file = Files.createTempDirectory("archive").resolve("links.ndjson");
+    assertThat(LinkArchive.Format.forFile(file)).isEqualTo(LinkArchive.Format.NDJSON);
+
+    assertThat(LinkArchive.export(src, file, LinkArchive.Format.NDJSON, 4)).isEqualTo(39_998);
+    assertThat(Files.lines(file).count()).isEqualTo(39_998);
+
+    LinkRepository dst = new LinkRepository(Files.createTempFile("db", ".sqlite").toString());
+    AtomicInteger created = new AtomicInteger();
+    LinkArchive.ImportResult r =
+        LinkArchive.importFrom(
+            dst,
+            file,
+            4,
+            new LinkListener() {
+              @Override
+              public void created(Link link) {
+                created.incrementAndGet();
+              }
+            });
+    assertThat(r.read).isEqualTo(39_998);
+    assertThat(r.inserted).isEqualTo(39_998);
+    assertThat(created).hasValue(39_998);
+
+    Link l = dst.findByCode("c12349").get();
+    assertThat(l.userUuid).isEqualTo("u" + (12349 % 7));
+    assertThat(l.originalUrl).isEqualTo("https://example.com/12349?q=\"x\"");
+    assertThat(l.clicks).isEqualTo(9);
+    assertThat(l.isActive()).isFalse();
+    assertThat(dst.findByCode("c5")).isEmpty();
+  }
+
+  @Test
+  void binaryRoundTripSkipsExistingCodes() throws Exception {
+    InMemoryLinkStore src = source(1_000);
+    Path file = Files.createTempDirectory("archive").resolve("links.bin");
+    assertThat(LinkArchive.export(src, file, LinkArchive.Format.BINARY, 2)).isEqualTo(999);
+
+    InMemoryLinkStore dst = new InMemoryLinkStore();
+    LinkArchive.ImportResult first = LinkArchive.importFrom(dst, file, 2, new LinkListener() {});
+    LinkArchive.ImportResult again = LinkArchive.importFrom(dst, file, 2, new LinkListener() {});
+    assertThat(first.inserted).isEqualTo(999);
+    assertThat(again.read).isEqualTo(999);
+    assertThat(again.inserted).isZero();
+    assertThat(dst.findByCode("c999").get().expiresAtMs).isEqualTo(1_000_999L);
+  }
+
+  @Test
+  void truncatedBinaryExportIsRejected() throws Exception {
+    Path file = Files.createTempDirectory("archive").resolve("links.bin");
+    LinkArchive.export(source(100), file, LinkArchive.Format.BINARY, 2);
+    byte[] bytes = Files.readAllBytes(file);
+    Files.write(file, Arrays.copyOf(bytes, bytes.length - 20));
+
+    assertThatThrownBy(
+            () -> LinkArchive.importFrom(new InMemoryLinkStore(), file, 2, new LinkListener() {}))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("Truncated");
+  }
+
+  @Test
+  void storesWithoutRangeReadsAreExportedInOnePass() throws Exception {
+    AtomicInteger scans = new AtomicInteger();
+    InMemoryLinkStore src =
+        new InMemoryLinkStore() {
+          @Override
+          public void forEachInIdRange(long afterId, long toId, Consumer<? super LinkView> sink) {
+            scans.incrementAndGet();
+            super.forEachInIdRange(afterId, toId, sink);
+          }
+        };
+    fill(src, 40_000);
+    Path file = Files.createTempDirectory("archive").resolve("links.bin");
+
+    long rows = LinkArchive.export(src, file, LinkArchive.Format.BINARY, 4);
+    assertThat(rows).isEqualTo(39_998);
+    assertThat(scans).hasValue(1);
+    InMemoryLinkStore dst = new InMemoryLinkStore();
+    assertThat(LinkArchive.importFrom(dst, file, 2, new LinkListener() {}).inserted)
+        .isEqualTo(rows);
+  }
+}
@@ -0,0 +1,75 @@
+package org.example.shorter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+public class LinkCacheTest {
+
+  private static Link link(String code, long expiresAtMs) {
+    Link l = new Link();
+    l.userUuid = "u";
+    l.code = code;
+    l.originalUrl = "https://example.com";
+    l.expiresAtMs = expiresAtMs;
+    l.maxClicks = 5;
+    l.active = 1;
+    return l;
+  }
+
+  @Test
+  void evictsLeastRecentlyUsedWhenFull() {
+    LinkCache cache = new LinkCache(1);
+    cache.put(link("a", Long.MAX_VALUE));
+    cache.put(link("b", Long.MAX_VALUE));
+
+    assertThat(cache.get("a")).isNull();
+    assertThat(cache.get("b").link.code()).isEqualTo("b");
+    assertThat(cache.size()).isEqualTo(1);
+  }
+
+  @Test
+  void cachesRejections() {
+    LinkCache cache = new LinkCache(100);
+    cache.reject("dead", OpenResult.Status.NOT_FOUND, Long.MAX_VALUE);
+
+    assertThat(cache.get("dead").rejection).isEqualTo(OpenResult.Status.NOT_FOUND);
+    assertThat(cache.get("dead").link).isNull();
+  }
+
+  @Test
+  void onlyExpiredRejectionsNeverLapse() {
+    LinkCache cache = new LinkCache(100);
+    cache.reject("missing", OpenResult.Status.NOT_FOUND, 100);
+    cache.reject("used", OpenResult.Status.LIMIT_REACHED, 100);
+    cache.reject("gone", OpenResult.Status.EXPIRED, 20);
+
+    assertThat(cache.get("missing").isLapsed(99)).isFalse();
+    assertThat(cache.get("missing").isLapsed(100)).isTrue();
+    assertThat(cache.get("used").isLapsed(100)).isTrue();
+    assertThat(cache.get("gone").isLapsed(500)).isFalse();
+  }
+
+  @Test
+  void evictExpiredDropsDueEntriesOnly() {
+    LinkCache cache = new LinkCache(100);
+    cache.put(link("old", 10));
+    cache.reject("gone", OpenResult.Status.EXPIRED, 20);
+    cache.put(link("fresh", 1000));
+
+    cache.evictExpired(500);
+
+    assertThat(cache.get("old")).isNull();
+    assertThat(cache.get("gone")).isNull();
+    assertThat(cache.get("fresh")).isNotNull();
+  }
+
+  @Test
+  void zeroCapacityDisablesCache() {
+    LinkCache cache = new LinkCache(0);
+    cache.put(link("a", Long.MAX_VALUE));
+
+    assertThat(cache.isEnabled()).isFalse();
+    assertThat(cache.get("a")).isNull();
+  }
+}
@@ -0,0 +1,98 @@
+package org.example.shorter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.UUID;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class LinkHttpServerTest {
+  private final HttpClient client =
+      HttpClient.newBuilder().followRedirects(HttpClient.Redirect.NEVER).build();
+  private final String user = UUID.randomUUID().toString();
+  private LinkHttpServer server;
+  private String base;
+
+  @BeforeEach
+  void start() throws Exception {
+    LinkRepository repo = new LinkRepository(Files.createTempFile("db", ".sqlite").toString());
+    LinkService service = new LinkService(repo, Duration.ofMinutes(5), 5, 8, false);
+    server = new LinkHttpServer(service, 0, 4);
+    server.start();
+    base = "http://localhost:" + server.port();
+  }
+
+  @AfterEach
+  void stop() {
+    server.close();
+  }
+
+  private HttpResponse<String> send(String method, String path, String body) throws Exception {
+    HttpRequest.Builder b =
+        HttpRequest.newBuilder(URI.create(base + path)).header("X-User-Id", user);
+    b.method(
+        method,
+        body == null
+            ? HttpRequest.BodyPublishers.noBody()
+            : HttpRequest.BodyPublishers.ofString(body));
+    return client.send(b.build(), HttpResponse.BodyHandlers.ofString());
+  }
+
+  private String create(int limit) throws Exception {
+    HttpResponse<String> r =
+        send("POST", "/api/links", "{\"url\": \"https://example.com\", \"limit\": " + limit + "}");
+    assertThat(r.statusCode()).isEqualTo(201);
+    return r.body().replaceAll(".*\"code\":\"([^\"]+)\".*", "$1");
+  }
+
+  @Test
+  void redirectsUntilLimitThenGone() throws Exception {
+    String code = create(1);
+
+    HttpResponse<String> first = send("GET", "/" + code, null);
+    assertThat(first.statusCode()).isEqualTo(302);
+    assertThat(first.headers().firstValue("Location")).contains("https://example.com");
+
+    assertThat(send("GET", "/" + code, null).statusCode()).isEqualTo(410);
+    assertThat(send("GET", "/nope", null).statusCode()).isEqualTo(404);
+  }
+
+  @Test
+  void restEndpointsRequireOwner() throws Exception {
+    String code = create(3);
+
+    assertThat(send("GET", "/api/links/" + code, null).body()).contains("\"maxClicks\":3");
+    assertThat(send("PUT", "/api/links/" + code + "/limit", "{\"limit\": 7}").statusCode())
+        .isEqualTo(204);
+    assertThat(send("GET", "/api/links/" + code, null).body()).contains("\"maxClicks\":7");
+
+    HttpRequest foreign =
+        HttpRequest.newBuilder(URI.create(base + "/api/links/" + code))
+            .header("X-User-Id", UUID.randomUUID().toString())
+            .build();
+    assertThat(client.send(foreign, HttpResponse.BodyHandlers.ofString()).statusCode())
+        .isEqualTo(403);
+
+    assertThat(send("DELETE", "/api/links/" + code, null).statusCode()).isEqualTo(204);
+    assertThat(send("GET", "/" + code, null).statusCode()).isEqualTo(404);
+  }
+
+  @Test
+  void rejectsInvalidInput() throws Exception {
+    assertThat(send("POST", "/api/links", "{\"url\": \"not-url\"}").statusCode()).isEqualTo(400);
+
+    HttpRequest anonymous =
+        HttpRequest.newBuilder(URI.create(base + "/api/links"))
+            .POST(HttpRequest.BodyPublishers.ofString("{}"))
+            .build();
+    assertThat(client.send(anonymous, HttpResponse.BodyHandlers.ofString()).statusCode())
+        .isEqualTo(401);
+  }
+}
@@ -3,6 +3,14 @@ package org.example.shorter;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.junit.jupiter.api.Test;
 
 public class LinkRepositoryTest {
@@ -51,6 +59,31 @@ public class LinkRepositoryTest {
     assertThat(after.isActive()).isFalse();
   }
 
+  @Test
+  void consumeClicksGrantsWhatIsLeft() throws Exception {
+    LinkRepository repo = new LinkRepository(Files.createTempFile("db", ".sqlite").toString());
+    Link l = new Link();
+    l.userUuid = "u";
+    l.code = "abc";
+    l.originalUrl = "https://example.com";
+    l.expiresAtMs = System.currentTimeMillis() + 100000;
+    l.maxClicks = 5;
+    l.active = 1;
+    repo.insert(l);
+
+    ClickGrant first = repo.consumeClicks("abc", System.currentTimeMillis(), 2);
+    assertThat(first.granted).isEqualTo(2);
+    assertThat(first.result.status).isEqualTo(OpenResult.Status.OK);
+    ClickGrant second = repo.consumeClicks("abc", System.currentTimeMillis(), 10);
+    assertThat(second.granted).isEqualTo(3);
+    assertThat(second.result.status).isEqualTo(OpenResult.Status.LAST_CLICK);
+    assertThat(second.result.link.clicks()).isEqualTo(5);
+    ClickGrant none = repo.consumeClicks("abc", System.currentTimeMillis(), 1);
+    assertThat(none.granted).isZero();
+    assertThat(none.result.status).isEqualTo(OpenResult.Status.LIMIT_REACHED);
+    assertThat(repo.consumeClicks("nope", 0, 3).result).isSameAs(OpenResult.NOT_FOUND);
+  }
+
   @Test
   void deleteExpiredWorks() throws Exception {
     String db = Files.createTempFile("db", ".sqlite").toString();
@@ -71,4 +104,165 @@ public class LinkRepositoryTest {
     assertThat(deleted).isEqualTo(1);
     assertThat(repo.findByCode("abc")).isEmpty();
   }
+
+  @Test
+  void insertBatchSkipsTakenCodes() throws Exception {
+    String db = Files.createTempFile("db", ".sqlite").toString();
+    LinkRepository repo = new LinkRepository(db);
+
+    List<Link> batch = new ArrayList<>();
+    for (String code : new String[] {"a", "b", "a", "c"}) {
+      Link l = new Link();
+      l.userUuid = "u";
+      l.code = code;
+      l.originalUrl = "https://example.com/" + code;
+      l.createdAtMs = 1;
+      l.expiresAtMs = System.currentTimeMillis() + 100000;
+      l.maxClicks = 2;
+      l.active = 1;
+      batch.add(l);
+    }
+
+    assertThat(repo.insertBatch(batch)).containsExactly(true, true, false, true);
+    assertThat(repo.findByCode("c").get().id).isEqualTo(batch.get(3).id);
+    assertThat(repo.existingCodes(List.of("a", "c", "zzz"))).containsExactlyInAnyOrder("a", "c");
+  }
+
+  @Test
+  void initSwitchesToWal() throws Exception {
+    String db = Files.createTempFile("db", ".sqlite").toString();
+    new LinkRepository(db).close();
+
+    try (Connection c = DriverManager.getConnection("jdbc:sqlite:" + db);
+        ResultSet rs = c.createStatement().executeQuery("PRAGMA journal_mode")) {
+      rs.next();
+      assertThat(rs.getString(1)).isEqualToIgnoringCase("wal");
+    }
+  }
+
+  @Test
+  void upgradesLegacySchemaInPlace() throws Exception {
+    String db = Files.createTempFile("db", ".sqlite").toString();
+    try (Connection c = DriverManager.getConnection("jdbc:sqlite:" + db)) {
+      c.createStatement()
+          .execute(
+              "CREATE TABLE links (id INTEGER PRIMARY KEY AUTOINCREMENT, user_uuid TEXT NOT NULL,"
+                  + " code TEXT NOT NULL UNIQUE, original_url TEXT NOT NULL, created_at_ms INTEGER"
+                  + " NOT NULL, expires_at_ms INTEGER NOT NULL, max_clicks INTEGER NOT NULL, clicks"
+                  + " INTEGER NOT NULL, active INTEGER NOT NULL)");
+      c.createStatement()
+          .execute(
+              "INSERT INTO links(user_uuid, code, original_url, created_at_ms, expires_at_ms,"
+                  + " max_clicks, clicks, active) VALUES('u', 'old', 'https://example.com', 1,"
+                  + " 9999999999999, 5, 0, 1)");
+    }
+
+    LinkRepository repo = new LinkRepository(db);
+    assertThat(repo.findByCode("old").get().originalUrl).isEqualTo("https://example.com");
+    repo.close();
+
+    try (Connection c = DriverManager.getConnection("jdbc:sqlite:" + db)) {
+      ResultSet v = c.createStatement().executeQuery("PRAGMA user_version");
+      v.next();
+      assertThat(v.getInt(1)).isEqualTo(SchemaMigrations.latestVersion());
+      ResultSet idx =
+          c.createStatement()
+              .executeQuery(
+                  "SELECT count(*) FROM sqlite_master WHERE type = 'index'"
+                      + " AND name IN ('idx_links_user_id', 'idx_links_expires')");
+      idx.next();
+      assertThat(idx.getInt(1)).isEqualTo(2);
+      ResultSet row =
+          c.createStatement()
+              .executeQuery(
+                  "SELECT original_url, url_blob, url_hash FROM links WHERE code = 'old'");
+      row.next();
+      assertThat(row.getString(1)).isEmpty();
+      assertThat(UrlCodec.decode(row.getBytes(2))).isEqualTo("https://example.com");
+      assertThat(row.getLong(3)).isEqualTo(UrlCanonicalizer.hash("https://example.com"));
+      c.createStatement().execute("UPDATE links SET url_hash = NULL WHERE code = 'old'");
+    }
+
+    // the backfill finished once, so later starts do not scan for such rows again
+    new LinkRepository(db).close();
+    try (Connection c = DriverManager.getConnection("jdbc:sqlite:" + db)) {
+      ResultSet row =
+          c.createStatement().executeQuery("SELECT url_hash FROM links WHERE code = 'old'");
+      row.next();
+      assertThat(row.getObject(1)).isNull();
+      ResultSet names = c.createStatement().executeQuery("SELECT name FROM code_sequence");
+      while (names.next()) assertThat(names.getString(1)).isEqualTo("links");
+    }
+  }
+
+  @Test
+  void concurrentClicksThroughPoolNeverExceedLimit() throws Exception {
+    String db = Files.createTempFile("db", ".sqlite").toString();
+    LinkRepository repo = new LinkRepository(db, new DbConfig(2, 8, 5000));
+
+    Link l = new Link();
+    l.userUuid = "u";
+    l.code = "abc";
+    l.originalUrl = "https://example.com";
+    l.createdAtMs = 1;
+    l.expiresAtMs = System.currentTimeMillis() + 100000;
+    l.maxClicks = 50;
+    l.clicks = 0;
+    l.active = 1;
+    repo.insert(l);
+
+    ExecutorService pool = Executors.newFixedThreadPool(8);
+    List<Future<Boolean>> results = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      results.add(
+          pool.submit(
+              () -> {
+                repo.findByCode("abc");
+                return repo.consumeClick("abc", System.currentTimeMillis()).isPresent();
+              }));
+    }
+    int granted = 0;
+    for (Future<Boolean> f : results) if (f.get()) granted++;
+    pool.shutdown();
+
+    assertThat(granted).isEqualTo(50);
+    assertThat(repo.findByCode("abc").get().clicks).isEqualTo(50);
+    repo.close();
+  }
+
+  @Test
+  void keysetPagesWalkUserLinksNewestFirst() throws Exception {
+    LinkRepository repo = new LinkRepository(Files.createTempFile("db", ".sqlite").toString());
+    long now = System.currentTimeMillis();
+    for (int i = 0; i < 10; i++) {
+      Link l = new Link();
+      l.userUuid = "u";
+      l.code = "c" + i;
+      l.originalUrl = "https://example.com/" + i;
+      l.createdAtMs = 1;
+      l.expiresAtMs = i % 3 == 0 ? now - 1 : now + 100000;
+      l.maxClicks = 5;
+      l.active = i == 4 ? 0 : 1;
+      repo.insert(l);
+    }
+
+    List<String> seen = new ArrayList<>();
+    long after = 0;
+    while (true) {
+      List<LinkView> page = new ArrayList<>();
+      repo.forEachByUser("u", LinkStore.ListFilter.ALL, now, after, 3, page::add);
+      if (page.isEmpty()) break;
+      assertThat(page.size()).isLessThanOrEqualTo(3);
+      page.forEach(l -> seen.add(l.code()));
+      after = page.get(page.size() - 1).id();
+    }
+    assertThat(seen).containsExactly("c9", "c8", "c7", "c6", "c5", "c4", "c3", "c2", "c1", "c0");
+
+    List<String> active = new ArrayList<>();
+    repo.forEachByUser("u", LinkStore.ListFilter.ACTIVE, now, 0, 100, l -> active.add(l.code()));
+    assertThat(active).containsExactly("c8", "c7", "c5", "c2", "c1");
+    List<String> expired = new ArrayList<>();
+    repo.forEachByUser("u", LinkStore.ListFilter.EXPIRED, now, 0, 2, l -> expired.add(l.code()));
+    assertThat(expired).containsExactly("c9", "c6");
+  }
 }
@@ -4,6 +4,8 @@ import static org.assertj.core.api.Assertions.*;
 
 import java.nio.file.Files;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 import org.junit.jupiter.api.Test;
 
@@ -71,6 +73,31 @@ public class LinkServiceTest {
     assertThat(s.open(link.code)).contains("LIMIT").contains("DISABLED");
   }
 
+  @Test
+  void redirectReportsStatusFromOneStorageCall() throws Exception {
+    LinkRepository repo = new LinkRepository(Files.createTempFile("db", ".sqlite").toString());
+    // no cache: every status comes from the store
+    LinkService s =
+        new LinkService(
+            repo,
+            Duration.ofMinutes(5),
+            5,
+            CodeGenerator.random(8),
+            false,
+            new LinkCache(0),
+            ClickAccounting.sync(repo));
+    Link link = s.create(UUID.randomUUID(), "https://example.com", 2);
+
+    OpenResult first = s.redirect(link.code);
+    assertThat(first.status).isEqualTo(OpenResult.Status.OK);
+    assertThat(first.url()).isEqualTo("https://example.com");
+    assertThat(s.redirect(link.code).status).isEqualTo(OpenResult.Status.LAST_CLICK);
+    OpenResult used = s.redirect(link.code);
+    assertThat(used.status).isEqualTo(OpenResult.Status.LIMIT_REACHED);
+    assertThat(used.url()).isNull();
+    assertThat(s.redirect("nope")).isSameAs(OpenResult.NOT_FOUND);
+  }
+
   @Test
   void ttlBlocksOpen() throws Exception {
     LinkRepository repo = new LinkRepository(Files.createTempFile("db", ".sqlite").toString());
@@ -121,4 +148,151 @@ public class LinkServiceTest {
     assertThat(s.setLimit(other, link.code, 10)).contains("FORBIDDEN");
     assertThat(s.setLimit(owner, link.code, 10)).isEqualTo("OK");
   }
+
+  @Test
+  void cachedLinkIsInvalidatedByDelete() throws Exception {
+    LinkRepository repo = new LinkRepository(Files.createTempFile("db", ".sqlite").toString());
+    LinkService s = svc(repo, Duration.ofMinutes(5), false);
+
+    UUID owner = UUID.randomUUID();
+    Link link = s.create(owner, "https://example.com", 5);
+    assertThat(s.open(link.code)).contains("URL:");
+
+    s.delete(owner, link.code);
+    assertThat(s.open(link.code)).contains("NOT FOUND");
+  }
+
+  @Test
+  void cachedLimitStaysConsistentAfterSetLimit() throws Exception {
+    LinkRepository repo = new LinkRepository(Files.createTempFile("db", ".sqlite").toString());
+    LinkService s = svc(repo, Duration.ofMinutes(5), false);
+
+    UUID owner = UUID.randomUUID();
+    Link link = s.create(owner, "https://example.com", 5);
+    assertThat(s.open(link.code)).contains("URL:");
+
+    s.setLimit(owner, link.code, 2);
+    assertThat(s.open(link.code)).contains("last allowed click");
+    assertThat(s.open(link.code)).contains("DISABLED");
+    assertThat(repo.findByCode(link.code).get().clicks).isEqualTo(2);
+  }
+
+  @Test
+  void createBatchReportsEveryRowInOrder() throws Exception {
+    LinkRepository repo = new LinkRepository(Files.createTempFile("db", ".sqlite").toString());
+    LinkService s = svc(repo, Duration.ofMinutes(5), false);
+
+    List<String> urls = new ArrayList<>();
+    for (int i = 0; i < 500; i++) urls.add("https://example.com/" + i);
+    urls.add(250, "not-url");
+
+    UUID owner = UUID.randomUUID();
+    List<LinkService.BatchResult> results = s.createBatch(owner, urls, 3);
+
+    assertThat(results).hasSize(501);
+    assertThat(results.get(250).isOk()).isFalse();
+    assertThat(results.get(250).error).contains("Invalid URL");
+    assertThat(results.stream().filter(LinkService.BatchResult::isOk).map(r -> r.link.code))
+        .hasSize(500)
+        .doesNotHaveDuplicates();
+
+    LinkService.BatchResult last = results.get(500);
+    assertThat(last.url).isEqualTo("https://example.com/499");
+    Link stored = repo.findByCode(last.link.code).get();
+    assertThat(stored.id).isEqualTo(last.link.id);
+    assertThat(stored.originalUrl).isEqualTo("https://example.com/499");
+    assertThat(stored.maxClicks).isEqualTo(3);
+    assertThat(repo.listByUser(owner.toString())).hasSize(500);
+  }
+
+  @Test
+  void listPrintsOnePageAndCursor() throws Exception {
+    LinkRepository repo = new LinkRepository(Files.createTempFile("db", ".sqlite").toString());
+    LinkService s = svc(repo, Duration.ofMinutes(5), false);
+    UUID owner = UUID.randomUUID();
+    List<Link> links = new ArrayList<>();
+    for (int i = 0; i < 5; i++) links.add(s.create(owner, "https://example.com/" + i, 3));
+
+    StringBuilder out = new StringBuilder();
+    long next = s.list(owner, LinkStore.ListFilter.ALL, 0, 3, out);
+    assertThat(next).isEqualTo(links.get(2).id);
+    assertThat(out)
+        .contains(links.get(4).code, links.get(2).code)
+        .doesNotContain(links.get(1).code);
+    assertThat(out).endsWith("next: --after " + next + "\n");
+
+    StringBuilder rest = new StringBuilder();
+    assertThat(s.list(owner, LinkStore.ListFilter.ALL, next, 3, rest)).isZero();
+    assertThat(rest).contains(links.get(1).code, links.get(0).code).doesNotContain("next:");
+    assertThat(s.list(UUID.randomUUID())).isEqualTo("(empty)\n");
+  }
+
+  private LinkService dedupSvc(LinkStore repo, Duration ttl) {
+    return new LinkService(
+        repo,
+        ttl,
+        5,
+        CodeGenerator.random(8),
+        false,
+        new LinkCache(100),
+        ClickAccounting.sync(repo),
+        new UrlValidationCache(100),
+        true);
+  }
+
+  @Test
+  void dedupReturnsLiveLinkForSameCanonicalUrl() throws Exception {
+    LinkRepository repo = new LinkRepository(Files.createTempFile("db", ".sqlite").toString());
+    LinkService s = dedupSvc(repo, Duration.ofMinutes(5));
+    UUID owner = UUID.randomUUID();
+
+    Link first = s.create(owner, "https://Example.com:443/a/", 3);
+    assertThat(s.create(owner, "https://example.com/a", 3).code).isEqualTo(first.code);
+    assertThat(s.create(UUID.randomUUID(), "https://example.com/a", 3).code)
+        .isNotEqualTo(first.code);
+
+    List<LinkService.BatchResult> batch =
+        s.createBatch(
+            owner,
+            List.of("https://example.com/a", "https://example.com/b", "HTTPS://example.com/b/"),
+            3);
+    assertThat(batch.get(0).link.code).isEqualTo(first.code);
+    assertThat(batch.get(1).link.code).isNotEqualTo(first.code);
+    assertThat(batch.get(2).link.code).isEqualTo(batch.get(1).link.code);
+    assertThat(repo.listByUser(owner.toString())).hasSize(2);
+  }
+
+  @Test
+  void dedupSkipsExpiredLinks() throws Exception {
+    LinkRepository repo = new LinkRepository(Files.createTempFile("db", ".sqlite").toString());
+    LinkService s = dedupSvc(repo, Duration.ofMillis(1));
+    UUID owner = UUID.randomUUID();
+
+    Link first = s.create(owner, "https://example.com/a", 3);
+    Thread.sleep(5);
+    assertThat(s.create(owner, "https://example.com/a", 3).code).isNotEqualTo(first.code);
+  }
+
+  @Test
+  void dedupOnlyReusesLinksWithTheRequestedLimit() throws Exception {
+    LinkRepository repo = new LinkRepository(Files.createTempFile("db", ".sqlite").toString());
+    LinkService s = dedupSvc(repo, Duration.ofMinutes(5));
+    UUID owner = UUID.randomUUID();
+
+    Link three = s.create(owner, "https://example.com/a", 3);
+    Link thousand = s.create(owner, "https://example.com/a", 1000);
+    assertThat(thousand.code).isNotEqualTo(three.code);
+    assertThat(thousand.maxClicks).isEqualTo(1000);
+    assertThat(s.create(owner, "https://example.com/a", 3).code).isEqualTo(three.code);
+    assertThat(s.createBatch(owner, List.of("https://example.com/a"), 1000).get(0).link.code)
+        .isEqualTo(thousand.code);
+    assertThat(s.createBatch(owner, List.of("https://example.com/a"), 7).get(0).link.maxClicks)
+        .isEqualTo(7);
+
+    InMemoryLinkStore memory = new InMemoryLinkStore();
+    LinkService m = dedupSvc(memory, Duration.ofMinutes(5));
+    Link small = m.create(owner, "https://example.com/a", 3);
+    assertThat(m.create(owner, "https://example.com/a", 1000).code).isNotEqualTo(small.code);
+    assertThat(m.create(owner, "https://example.com/a", 3).code).isEqualTo(small.code);
+  }
 }
@@ -0,0 +1,77 @@
+package org.example.shorter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+
+public class LoadGeneratorTest {
+
+  private static LoadGenerator.Report run(LoadGenerator.Options o) throws Exception {
+    try (LinkStore store = new InMemoryLinkStore();
+        LinkService service = new LinkService(store, Duration.ofDays(1), 5, 8, false)) {
+      return LoadGenerator.run(service, o);
+    }
+  }
+
+  @Test
+  void recordedRunReplaysTheSameCalls() throws Exception {
+    Path file = Files.createTempFile("load", ".jsonl");
+    LoadGenerator.Options o =
+        LoadGenerator.Options.parse(
+            new String[] {
+              "--links",
+              "200",
+              "--users",
+              "5",
+              "--rate",
+              "2000",
+              "--concurrency",
+              "4",
+              "--record",
+              file.toString()
+            });
+    o.durationMs = 300;
+
+    LoadGenerator.Report first = run(o);
+    assertThat(first.scheduled).isTrue();
+    assertThat(first.calls()).isEqualTo(600);
+    assertThat(first.latency.get(LoadGenerator.Kind.OPEN).count()).isGreaterThan(400);
+    assertThat(Files.readAllLines(file)).hasSize(601);
+
+    LoadGenerator.Options replay = new LoadGenerator.Options();
+    replay.engine = "memory";
+    replay.replay = file.toString();
+    LoadGenerator.Report second = run(LoadGenerator.readHeader(file, replay));
+    assertThat(second.calls()).isEqualTo(600);
+    for (LoadGenerator.Kind k : LoadGenerator.Kind.values()) {
+      assertThat(second.latency.get(k).count()).isEqualTo(first.latency.get(k).count());
+    }
+    assertThat(second.format()).contains("600 calls", "coordinated omission corrected");
+  }
+
+  @Test
+  void closedLoopReportsServiceTime() throws Exception {
+    LoadGenerator.Options o =
+        LoadGenerator.Options.parse(new String[] {"--links", "100", "--concurrency", "4"});
+    o.durationMs = 100;
+
+    LoadGenerator.Report r = run(o);
+    assertThat(r.scheduled).isFalse();
+    assertThat(r.calls()).isPositive();
+    assertThat(r.format()).contains("service time");
+  }
+
+  @Test
+  void zipfFavoursLowRanks() {
+    LoadGenerator.Zipf zipf = new LoadGenerator.Zipf(1000, 1.1);
+    SplittableRandom rnd = new SplittableRandom(1);
+    int[] hits = new int[1000];
+    for (int i = 0; i < 100_000; i++) hits[zipf.sample(rnd)]++;
+    assertThat(hits[0]).isGreaterThan(hits[1]).isGreaterThan(hits[10] * 5);
+    assertThat(hits[999]).isLessThan(hits[0] / 100);
+  }
+}
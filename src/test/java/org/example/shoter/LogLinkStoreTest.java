@@ -0,0 +1,228 @@
+package org.example.shorter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+
+public class LogLinkStoreTest {
+
+  private static Link link(String user, String code, long expiresAtMs, int maxClicks) {
+    Link l = new Link();
+    l.userUuid = user;
+    l.code = code;
+    l.originalUrl = "https://example.com/" + code;
+    l.createdAtMs = 1;
+    l.expiresAtMs = expiresAtMs;
+    l.maxClicks = maxClicks;
+    l.active = 1;
+    return l;
+  }
+
+  @Test
+  void operationsSurviveReopen() throws Exception {
+    Path dir = Files.createTempDirectory("log");
+    long future = System.currentTimeMillis() + 100000;
+    LogLinkStore store = new LogLinkStore(dir);
+    store.insert(link("u", "a", future, 3));
+    store.insert(link("u", "b", future, 3));
+    assertThat(store.tryInsert(link("u", "a", future, 3))).isFalse();
+    assertThat(store.consumeClick("a", System.currentTimeMillis())).isPresent();
+    store.addClicks(Map.of("a", 2));
+    assertThat(store.updateLimit("b", "u", 9)).isTrue();
+    assertThat(store.deleteByCodeAndUser("b", "other")).isFalse();
+    long seq = store.leaseCodeBlock(10);
+    store.close();
+
+    LogLinkStore reopened = new LogLinkStore(dir);
+    Link a = reopened.findByCode("a").get();
+    assertThat(a.clicks).isEqualTo(3);
+    assertThat(a.isActive()).isFalse();
+    assertThat(reopened.findByCode("b").get().maxClicks).isEqualTo(9);
+    assertThat(reopened.listByUser("u")).extracting(l -> l.code).containsExactly("b", "a");
+    assertThat(reopened.leaseCodeBlock(1)).isEqualTo(seq + 10);
+    reopened.close();
+  }
+
+  @Test
+  void replaysTailAfterCrashAndDropsTornRecord() throws Exception {
+    Path dir = Files.createTempDirectory("log");
+    long future = System.currentTimeMillis() + 100000;
+    LogLinkStore crashed = new LogLinkStore(dir);
+    for (int i = 0; i < 2000; i++) crashed.insert(link("u", "c" + i, future, 5));
+    crashed.consumeClick("c7", System.currentTimeMillis());
+    crashed.deleteByCodes(List.of("c8"));
+    // no close(): the index checkpoint is behind the log
+
+    Path segment;
+    try (Stream<Path> files = Files.list(dir)) {
+      segment = files.filter(f -> f.toString().endsWith(".log")).sorted().reduce((a, b) -> b).get();
+    }
+    long size = Files.size(segment);
+    Files.write(segment, new byte[] {0, 0, 0, 40, 1, 2, 3}, StandardOpenOption.APPEND);
+
+    LogLinkStore recovered = new LogLinkStore(dir);
+    assertThat(Files.size(segment)).isEqualTo(size);
+    assertThat(recovered.size()).isEqualTo(1999);
+    assertThat(recovered.findByCode("c7").get().clicks).isEqualTo(1);
+    assertThat(recovered.findByCode("c8")).isEmpty();
+    assertThat(recovered.findByCode("c1999")).isPresent();
+    recovered.close();
+  }
+
+  @Test
+  void indexSlotsPastALostLogTailAreRebuilt() throws Exception {
+    Path dir = Files.createTempDirectory("log");
+    long future = System.currentTimeMillis() + 100000;
+    LogLinkStore crashed = new LogLinkStore(dir);
+    for (int i = 0; i < 2000; i++) crashed.insert(link("u", "c" + i, future, 5));
+    // no close(): the mapped index already points at records the log then loses
+
+    Path segment;
+    try (Stream<Path> files = Files.list(dir)) {
+      segment = files.filter(f -> f.toString().endsWith(".log")).sorted().reduce((a, b) -> b).get();
+    }
+    try (FileChannel ch = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+      ch.truncate(ch.size() / 2 + 3);
+    }
+
+    LogLinkStore recovered = new LogLinkStore(dir);
+    int found = 0;
+    for (int i = 0; i < 2000; i++) if (recovered.findByCode("c" + i).isPresent()) found++;
+    assertThat(found).isBetween(1, 1999);
+    assertThat(recovered.size()).isEqualTo(found);
+    assertThat(recovered.findByCode("c0")).isPresent();
+    assertThat(recovered.findByCode("c1999")).isEmpty();
+    recovered.insert(link("u", "c1999", future, 5));
+    recovered.close();
+
+    LogLinkStore reopened = new LogLinkStore(dir);
+    assertThat(reopened.size()).isEqualTo(found + 1);
+    reopened.close();
+  }
+
+  @Test
+  void compactionDropsDeletedAndExpiredLinks() throws Exception {
+    Path dir = Files.createTempDirectory("log");
+    long now = System.currentTimeMillis();
+    LogLinkStore store = new LogLinkStore(dir, 4096, 0);
+    List<String> dropped = new ArrayList<>();
+    store.onDropped(dropped::addAll);
+    for (int i = 0; i < 300; i++) store.insert(link("u", "k" + i, now + 100000, 1000));
+    store.insert(link("u", "old", now - 1, 5));
+    for (int i = 0; i < 300; i += 2) store.deleteByCodes(List.of("k" + i));
+    for (int i = 1; i < 300; i += 2) store.addClicks(Map.of("k" + i, 7));
+    assertThat(store.segmentCount()).isGreaterThan(5);
+
+    store.compact();
+    assertThat(store.size()).isEqualTo(150);
+    assertThat(store.findByCode("old")).isEmpty();
+    assertThat(dropped).containsExactly("old");
+    assertThat(store.findByCode("k1").get().clicks).isEqualTo(7);
+    int segmentsAfter = store.segmentCount();
+    store.close();
+
+    LogLinkStore reopened = new LogLinkStore(dir, 4096, 0);
+    assertThat(reopened.segmentCount()).isEqualTo(segmentsAfter);
+    assertThat(reopened.size()).isEqualTo(150);
+    assertThat(reopened.findByCode("k299").get().clicks).isEqualTo(7);
+    assertThat(reopened.findByCode("k2")).isEmpty();
+    reopened.close();
+  }
+
+  @Test
+  void checkpointForcesEverySegmentWrittenSinceTheLastOne() throws Exception {
+    Path dir = Files.createTempDirectory("log");
+    long now = System.currentTimeMillis();
+    LogLinkStore store = new LogLinkStore(dir, 4096, 0);
+    store.checkpoint();
+    for (int i = 0; i < 200; i++) store.insert(link("u", "k" + i, now + 100000, 1000));
+    assertThat(store.segmentCount()).isGreaterThan(2);
+    assertThat(store.unsyncedSegments()).isEqualTo(store.segmentCount());
+
+    store.checkpoint();
+    assertThat(store.unsyncedSegments()).isZero();
+    store.close();
+
+    LogLinkStore reopened = new LogLinkStore(dir, 4096, 0);
+    assertThat(reopened.size()).isEqualTo(200);
+    assertThat(reopened.findByCode("k0").get().originalUrl).isNotEmpty();
+    reopened.close();
+  }
+
+  @Test
+  void concurrentClicksNeverExceedLimit() throws Exception {
+    LogLinkStore store = new LogLinkStore(Files.createTempDirectory("log"));
+    store.insert(link("u", "abc", System.currentTimeMillis() + 100000, 50));
+
+    ExecutorService pool = Executors.newFixedThreadPool(8);
+    List<Future<Boolean>> results = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      results.add(
+          pool.submit(() -> store.consumeClick("abc", System.currentTimeMillis()).isPresent()));
+    }
+    int granted = 0;
+    for (Future<Boolean> f : results) if (f.get()) granted++;
+    pool.shutdown();
+
+    assertThat(granted).isEqualTo(50);
+    assertThat(store.findByCode("abc").get().clicks).isEqualTo(50);
+    store.close();
+  }
+
+  @Test
+  void pagesUserLinksWithoutPerUserIndex() throws Exception {
+    LogLinkStore store = new LogLinkStore(Files.createTempDirectory("log"));
+    long now = System.currentTimeMillis();
+    for (int i = 0; i < 50; i++) {
+      store.insert(link(i % 2 == 0 ? "u" : "v", "p" + i, i < 10 ? now - 1 : now + 100000, 5));
+    }
+
+    List<String> first = new ArrayList<>();
+    store.forEachByUser("u", LinkStore.ListFilter.ALL, now, 0, 4, l -> first.add(l.code()));
+    assertThat(first).containsExactly("p48", "p46", "p44", "p42");
+    long cursor = store.findByCode("p42").get().id;
+    List<String> second = new ArrayList<>();
+    store.forEachByUser("u", LinkStore.ListFilter.ALL, now, cursor, 2, l -> second.add(l.code()));
+    assertThat(second).containsExactly("p40", "p38");
+
+    List<String> expired = new ArrayList<>();
+    store.forEachByUser("u", LinkStore.ListFilter.EXPIRED, now, 0, 100, l -> expired.add(l.code()));
+    assertThat(expired).containsExactly("p8", "p6", "p4", "p2", "p0");
+    store.close();
+  }
+
+  @Test
+  void findLiveByUrlsSeesOnlyLiveLinksOfTheOwnerAndSurvivesReopen() throws Exception {
+    Path dir = Files.createTempDirectory("log");
+    long future = System.currentTimeMillis() + 100000;
+    LogLinkStore store = new LogLinkStore(dir);
+    for (String code : List.of("a1", "a2", "a3", "x")) {
+      Link l = link(code.equals("x") ? "other" : "u", code, future, 3);
+      l.originalUrl = "https://example.com/a";
+      store.insert(l);
+    }
+    assertThat(store.deleteByCodeAndUser("a3", "u")).isTrue();
+    String url = "https://example.com/a";
+    assertThat(store.findLiveByUrls("u", List.of(url), 3, 0).get(url).code).isEqualTo("a2");
+    assertThat(store.findLiveByUrls("u", List.of(url), 5, 0)).isEmpty();
+    store.close();
+
+    LogLinkStore reopened = new LogLinkStore(dir);
+    assertThat(reopened.findLiveByUrls("u", List.of(url), 3, 0).get(url).code).isEqualTo("a2");
+    reopened.addClicks(Map.of("a2", 3));
+    assertThat(reopened.findLiveByUrls("u", List.of(url), 3, 0).get(url).code).isEqualTo("a1");
+    assertThat(reopened.findLiveByUrls("other", List.of(url), 3, 0).get(url).code).isEqualTo("x");
+    reopened.close();
+  }
+}
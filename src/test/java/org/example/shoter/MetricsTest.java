@@ -0,0 +1,39 @@
+package org.example.shorter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import org.junit.jupiter.api.Test;
+
+public class MetricsTest {
+
+  @Test
+  void histogramQuantilesStayWithinBucketPrecision() {
+    LatencyHistogram h = new LatencyHistogram();
+    for (long v = 1; v <= 100_000; v++) h.record(v * 1000);
+
+    assertThat(h.count()).isEqualTo(100_000);
+    assertThat(h.maxNanos()).isEqualTo(100_000_000);
+    assertThat((double) h.quantileNanos(0.5)).isCloseTo(50_000_000, within(1_600_000.0));
+    assertThat((double) h.quantileNanos(0.99)).isCloseTo(99_000_000, within(3_100_000.0));
+    assertThat(h.quantileNanos(1.0)).isGreaterThanOrEqualTo(100_000_000);
+  }
+
+  @Test
+  void prometheusOutputHasHelpTypeAndQuantiles() {
+    LatencyHistogram h = Metrics.histogram("test_op_seconds", "kind=\"a\"", "Test latency");
+    Metrics.histogram("test_op_seconds", "kind=\"b\"", "Test latency");
+    Metrics.counter("test_events_total", "Test events").add(3);
+    h.record(2_000_000);
+
+    String text = Metrics.prometheus();
+    assertThat(text)
+        .containsOnlyOnce("# HELP test_op_seconds Test latency\n")
+        .contains("# TYPE test_op_seconds summary\n")
+        .contains("test_op_seconds{kind=\"a\",quantile=\"0.99\"} 0.00")
+        .contains("test_op_seconds_count{kind=\"a\"} 1\n")
+        .contains("test_op_seconds_count{kind=\"b\"} 0\n")
+        .contains("# TYPE test_events_total counter\n")
+        .contains("test_events_total 3\n");
+  }
+}
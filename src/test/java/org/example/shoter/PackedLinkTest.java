@@ -0,0 +1,57 @@
+package org.example.shorter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+
+public class PackedLinkTest {
+
+  private static Link link(String user) {
+    Link l = new Link();
+    l.id = 42;
+    l.userUuid = user;
+    l.code = "aB3xYz9Q";
+    l.originalUrl = "https://пример.рф/путь?q=1";
+    l.createdAtMs = 1;
+    l.expiresAtMs = 2;
+    l.maxClicks = 5;
+    l.clicks = 3;
+    l.active = 1;
+    return l;
+  }
+
+  @Test
+  void roundTripsWithUuidOwner() {
+    UUID owner = UUID.randomUUID();
+    PackedLink p = PackedLink.of(link(owner.toString()));
+
+    Link back = p.toLink();
+    assertThat(back).usingRecursiveComparison().isEqualTo(link(owner.toString()));
+    assertThat(p.isOwnedBy(owner)).isTrue();
+    assertThat(p.isOwnedBy(owner.toString())).isTrue();
+    assertThat(p.isOwnedBy(UUID.randomUUID())).isFalse();
+  }
+
+  @Test
+  void keepsNonCanonicalOwnerVerbatim() {
+    String upper = UUID.randomUUID().toString().toUpperCase();
+    assertThat(PackedLink.of(link(upper)).userUuid()).isEqualTo(upper);
+
+    PackedLink p = PackedLink.of(link("u"));
+    assertThat(p.userUuid()).isEqualTo("u");
+    assertThat(p.code()).isEqualTo("aB3xYz9Q");
+    assertThat(p.originalUrl()).isEqualTo("https://пример.рф/путь?q=1");
+    assertThat(p.isOwnedBy("u")).isTrue();
+  }
+
+  @Test
+  void withClicksKeepsTheRest() {
+    PackedLink p = PackedLink.of(link("u")).withClicks(5, false);
+
+    assertThat(p.clicks()).isEqualTo(5);
+    assertThat(p.isActive()).isFalse();
+    assertThat(p.maxClicks()).isEqualTo(5);
+    assertThat(p.originalUrl()).isEqualTo("https://пример.рф/путь?q=1");
+  }
+}
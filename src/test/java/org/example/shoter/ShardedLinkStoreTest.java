@@ -0,0 +1,119 @@
+package org.example.shorter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+public class ShardedLinkStoreTest {
+
+  private static Link link(String user, String code, long expiresAtMs) {
+    Link l = new Link();
+    l.userUuid = user;
+    l.code = code;
+    l.originalUrl = "https://example.com/" + code;
+    l.createdAtMs = 1;
+    l.expiresAtMs = expiresAtMs;
+    l.maxClicks = 3;
+    l.active = 1;
+    return l;
+  }
+
+  private static String base() throws Exception {
+    return Files.createTempDirectory("shards").resolve("links.db").toString();
+  }
+
+  @Test
+  void routesByCodeAndPagesAcrossShardsByGlobalId() throws Exception {
+    ShardedLinkStore store = new ShardedLinkStore(base(), 3, DbConfig.defaults());
+    long future = System.currentTimeMillis() + 100000;
+    List<Link> batch = new ArrayList<>();
+    for (int i = 0; i < 60; i++) batch.add(link(i % 2 == 0 ? "u" : "v", "k" + i, future));
+    assertThat(store.insertBatch(batch)).containsOnly(true);
+    Set<Long> ids = new HashSet<>();
+    for (Link l : batch) ids.add(l.id);
+    assertThat(ids).hasSize(60);
+    assertThat(store.findByCode("k7").get().id).isEqualTo(batch.get(7).id);
+    assertThat(store.consume("k7", System.currentTimeMillis()).link.id())
+        .isEqualTo(batch.get(7).id);
+
+    List<Long> seen = new ArrayList<>();
+    long after = 0;
+    while (true) {
+      List<LinkView> page = new ArrayList<>();
+      store.forEachByUser("u", LinkStore.ListFilter.ALL, 0, after, 7, page::add);
+      if (page.isEmpty()) break;
+      page.forEach(l -> seen.add(l.id()));
+      after = page.get(page.size() - 1).id();
+    }
+    assertThat(seen)
+        .hasSize(30)
+        .doesNotHaveDuplicates()
+        .isSortedAccordingTo((a, b) -> Long.compare(b, a));
+    assertThat(store.listByUser("u")).extracting(l -> l.id).containsExactlyElementsOf(seen);
+
+    List<String> exported = new ArrayList<>();
+    store.forEachInIdRange(0, store.maxId(), l -> exported.add(l.code()));
+    assertThat(exported).hasSize(60);
+    store.close();
+  }
+
+  @Test
+  void expiryBatchTakesLeftoverShareFromBusyShard() throws Exception {
+    ShardedLinkStore store = new ShardedLinkStore(base(), 4, DbConfig.defaults());
+    long now = System.currentTimeMillis();
+    int added = 0;
+    for (int i = 0; added < 10; i++) {
+      if (store.shardOf("e" + i) != 2) continue;
+      store.insert(link("u", "e" + i, now - 1));
+      added++;
+    }
+    store.insert(link("u", "live", now + 100000));
+
+    assertThat(store.countExpired(now)).isEqualTo(10);
+    assertThat(store.deleteExpiredBatch(now, 8)).hasSize(8);
+    assertThat(store.deleteExpiredBatch(now, 8)).hasSize(2);
+    assertThat(store.findByCode("live")).isPresent();
+    store.close();
+  }
+
+  @Test
+  void reshardToolCopiesLinksAndSequence() throws Exception {
+    Path dir = Files.createTempDirectory("reshard");
+    LinkRepository single = new LinkRepository(dir.resolve("single.db").toString());
+    long future = System.currentTimeMillis() + 100000;
+    for (int i = 0; i < 500; i++) single.insert(link("u", "r" + i, future));
+    single.deleteByCodes(List.of("r3"));
+    single.leaseCodeBlock(1234);
+
+    ShardedLinkStore three =
+        new ShardedLinkStore(dir.resolve("three.db").toString(), 3, DbConfig.defaults());
+    assertThat(ReshardTool.copy(single, three)).isEqualTo(499);
+    assertThat(ReshardTool.copy(single, three)).isZero();
+    ShardedLinkStore two =
+        new ShardedLinkStore(dir.resolve("two.db").toString(), 2, DbConfig.defaults());
+    assertThat(ReshardTool.copy(three, two)).isEqualTo(499);
+
+    assertThat(two.findByCode("r499").get().originalUrl).isEqualTo("https://example.com/r499");
+    assertThat(two.findByCode("r3")).isEmpty();
+    assertThat(two.leaseCodeBlock(1)).isEqualTo(1234);
+    assertThat(Files.exists(dir.resolve("two-1.db"))).isTrue();
+    single.close();
+    three.close();
+    two.close();
+  }
+
+  @Test
+  void reshardToolRejectsTargetsSharingSourceFiles() {
+    assertThat(ReshardTool.overlaps("shortener.db", 8, "shortener.db", 16)).isTrue();
+    assertThat(ReshardTool.overlaps("shortener.db", 16, "./shortener.db", 8)).isTrue();
+    assertThat(ReshardTool.overlaps("shortener-3.db", 1, "shortener.db", 4)).isTrue();
+    assertThat(ReshardTool.overlaps("shortener.db", 1, "shortener.db", 8)).isFalse();
+    assertThat(ReshardTool.overlaps("shortener.db", 8, "shortener-v2.db", 16)).isFalse();
+  }
+}
@@ -0,0 +1,27 @@
+package org.example.shorter;
+
+import static org.assertj.core.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+public class UrlCanonicalizerTest {
+
+  @Test
+  void normalisesSchemeHostPortAndSlash() {
+    assertThat(UrlCanonicalizer.canonical("HTTPS://Example.COM:443"))
+        .isEqualTo("https://example.com/");
+    assertThat(UrlCanonicalizer.canonical("http://example.com:80/a/b/?q=1#f"))
+        .isEqualTo("http://example.com/a/b?q=1#f");
+    assertThat(UrlCanonicalizer.canonical("http://example.com:8080/A/"))
+        .isEqualTo("http://example.com:8080/A");
+    assertThat(UrlCanonicalizer.canonical("not a url")).isEqualTo("not a url");
+  }
+
+  @Test
+  void hashIgnoresNonCanonicalDifferences() {
+    assertThat(UrlCanonicalizer.hash("https://example.com/a/"))
+        .isEqualTo(UrlCanonicalizer.hash("https://EXAMPLE.com:443/a"));
+    assertThat(UrlCanonicalizer.hash("https://example.com/a"))
+        .isNotEqualTo(UrlCanonicalizer.hash("https://example.com/b"));
+  }
+}
@@ -0,0 +1,34 @@
+package org.example.shorter;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+public class UrlCodecTest {
+
+  @Test
+  void roundTripsAnyUrl() {
+    for (String url :
+        new String[] {
+          "https://www.example.com/",
+          "http://example.com:8080/a/b?x=1&y=2#frag",
+          "https://shop.example.org/products/0012345?id=98765432109876543210123&utm_source=email",
+          "https://пример.рф/путь?q=значение",
+          "ftp://host/\u0001raw",
+          "HTTPS://EXAMPLE.COM",
+          "",
+        }) {
+      assertThat(UrlCodec.decode(UrlCodec.encode(url))).isEqualTo(url);
+    }
+  }
+
+  @Test
+  void trackingLinksShrink() {
+    String url =
+        "https://www.example.com/products/123456789?utm_source=newsletter&utm_medium=email"
+            + "&utm_campaign=spring_sale_2026&gclid=1234567890123";
+    assertThat(UrlCodec.encode(url).length)
+        .isLessThan(url.getBytes(StandardCharsets.UTF_8).length / 2);
+  }
+}